@@ -0,0 +1,419 @@
+package de.jwiegmann.upload.boundary;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest.PayloadRejection;
+import de.jwiegmann.upload.boundary.dto.batch.SessionBatchUploadRequest;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Liest den Body eines Batch-Uploads ({@code [{"seqNo":..,"payload":..},..]}) stückweise vom Request-Stream.
+ * Jedes Item wird zunächst nur strukturell abgetastet (Strings, Klammern) und dabei höchstens bis
+ * {@code max-item-bytes} gepuffert; erst ein vollständiges Item wird mit dem ObjectMapper gelesen. Zu große oder zu
+ * tief verschachtelte Items werden ohne Puffer überlesen und mit {@link PayloadRejection} zurückgegeben, ihre seqNo
+ * wird beim Abtasten mitgelesen. Überschreitet der ganze Body {@code max-batch-bytes}, bricht das Lesen mit 413 ab.
+ * Der Multi-Session-Upload ({@code [{"uploadId":..,"items":[..]},..]}) wird auf dieselbe Weise und mit denselben
+ * Limits gelesen; {@code max-batch-bytes} gilt dabei für den ganzen Request.
+ * Strukturzeichen sind ASCII und kommen in UTF-8-Folgebytes nicht vor, daher genügt das Abtasten byteweise.
+ */
+final class BatchRequestReader {
+
+    private static final byte[] SEQ_NO = "seqNo".getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream in;
+    private final ObjectMapper objectMapper;
+    private final long maxBatchBytes;
+    private final int maxItemBytes;
+    private final int maxDepth;
+
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private long consumed;
+
+    private byte[] item = new byte[1024];
+    private int itemLength;
+
+    private BatchRequestReader(InputStream in, ObjectMapper objectMapper, UploadLimitsProperties limits) {
+        this.in = in;
+        this.objectMapper = objectMapper;
+        this.maxBatchBytes = limits.getMaxBatchBytes().toBytes();
+        this.maxItemBytes = (int) Math.min(limits.getMaxItemBytes().toBytes(), Integer.MAX_VALUE - 8);
+        this.maxDepth = limits.getMaxDepth();
+    }
+
+    /**
+     * @return Die Items in Request-Reihenfolge; Items mit verletztem Limit tragen nur seqNo und Ablehnungsgrund
+     * @throws ResponseStatusException 400 bei ungültigem JSON, 413 wenn der Body max-batch-bytes überschreitet
+     */
+    static List<ItemUploadRequest> read(InputStream in, ObjectMapper objectMapper, UploadLimitsProperties limits)
+            throws IOException {
+        return new BatchRequestReader(in, objectMapper, limits).readBatch();
+    }
+
+    /**
+     * @return Die Batches je Session in Request-Reihenfolge, deren Items wie bei {@link #read} gelesen
+     * @throws ResponseStatusException 400 bei ungültigem JSON, 413 wenn der Body max-batch-bytes überschreitet
+     */
+    static List<SessionBatchUploadRequest> readSessions(InputStream in, ObjectMapper objectMapper,
+                                                        UploadLimitsProperties limits) throws IOException {
+        return new BatchRequestReader(in, objectMapper, limits).readSessionBatches();
+    }
+
+    private List<ItemUploadRequest> readBatch() throws IOException {
+        List<ItemUploadRequest> items = readItems(nextNonWhitespace());
+        expectEnd();
+        return items;
+    }
+
+    private List<SessionBatchUploadRequest> readSessionBatches() throws IOException {
+        if (nextNonWhitespace() != '[') {
+            throw malformed("request must be a JSON array");
+        }
+
+        List<SessionBatchUploadRequest> sessions = new ArrayList<>();
+        int c = nextNonWhitespace();
+        while (c != ']') {
+            if (c != '{') {
+                throw malformed("session batches must be JSON objects");
+            }
+            sessions.add(readSessionBatch());
+
+            c = nextNonWhitespace();
+            if (c == ',') {
+                c = nextNonWhitespace();
+            } else if (c != ']') {
+                throw malformed("expected ',' or ']' after session batch");
+            }
+        }
+
+        expectEnd();
+        return sessions;
+    }
+
+    /**
+     * Liest einen Session-Batch ab dem bereits gelesenen '{'; unbekannte Felder werden überlesen.
+     */
+    private SessionBatchUploadRequest readSessionBatch() throws IOException {
+        SessionBatchUploadRequest session = new SessionBatchUploadRequest();
+        int c = nextNonWhitespace();
+        while (c != '}') {
+            if (c != '"') {
+                throw malformed("expected field name in session batch");
+            }
+            String field = readString();
+            if (nextNonWhitespace() != ':') {
+                throw malformed("expected ':' after field name");
+            }
+
+            c = nextNonWhitespace();
+            switch (field) {
+                case "uploadId" -> session.setUploadId(isNull(c) ? null : readStringValue(c));
+                case "items" -> session.setItems(isNull(c) ? null : readItems(c));
+                default -> skipValue(c);
+            }
+
+            c = nextNonWhitespace();
+            if (c == ',') {
+                c = nextNonWhitespace();
+            } else if (c != '}') {
+                throw malformed("expected ',' or '}' after field");
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Liest ein Array von Items ab dessen erstem Zeichen.
+     */
+    private List<ItemUploadRequest> readItems(int c) throws IOException {
+        if (c != '[') {
+            throw malformed("batch must be a JSON array");
+        }
+
+        List<ItemUploadRequest> items = new ArrayList<>();
+        c = nextNonWhitespace();
+        while (c != ']') {
+            if (c != '{') {
+                throw malformed("batch items must be JSON objects");
+            }
+            items.add(readItem());
+
+            c = nextNonWhitespace();
+            if (c == ',') {
+                c = nextNonWhitespace();
+            } else if (c != ']') {
+                throw malformed("expected ',' or ']' after item");
+            }
+        }
+        return items;
+    }
+
+    private void expectEnd() throws IOException {
+        if (nextNonWhitespace() != -1) {
+            throw malformed("unexpected content after batch");
+        }
+    }
+
+    /**
+     * Tastet ein Item ab dem bereits gelesenen '{' bis zur schließenden Klammer ab.
+     */
+    private ItemUploadRequest readItem() throws IOException {
+        itemLength = 0;
+        append('{');
+
+        PayloadRejection rejection = null;
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+
+        // seqNo auf oberster Ebene mitlesen, falls das Item nicht gepuffert werden kann
+        boolean expectKey = true;
+        boolean capturingKey = false;
+        byte[] key = new byte[SEQ_NO.length];
+        int keyLength = 0;
+        boolean keyIsSeqNo = false;
+        boolean inSeqNo = false;
+        long seqNo = 0;
+        boolean negative = false;
+
+        while (depth > 0) {
+            int c = next();
+            if (c < 0) {
+                throw malformed("unexpected end of batch");
+            }
+            if (rejection == null) {
+                if (itemLength >= maxItemBytes) {
+                    rejection = PayloadRejection.TOO_LARGE;
+                } else {
+                    append(c);
+                }
+            }
+
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (capturingKey) {
+                        capturingKey = false;
+                        keyIsSeqNo = keyLength == SEQ_NO.length && Arrays.equals(key, SEQ_NO);
+                    }
+                } else if (capturingKey) {
+                    if (keyLength < key.length) {
+                        key[keyLength] = (byte) c;
+                    }
+                    keyLength++;
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    if (depth == 1 && expectKey) {
+                        capturingKey = true;
+                        keyLength = 0;
+                    }
+                }
+                case '{', '[' -> {
+                    depth++;
+                    if (depth - 1 > maxDepth && rejection == null) {
+                        rejection = PayloadRejection.TOO_DEEP;
+                    }
+                }
+                case '}', ']' -> depth--;
+                case ':' -> {
+                    if (depth == 1) {
+                        expectKey = false;
+                        inSeqNo = keyIsSeqNo;
+                    }
+                }
+                case ',' -> {
+                    if (depth == 1) {
+                        expectKey = true;
+                        inSeqNo = false;
+                    }
+                }
+                default -> {
+                    if (inSeqNo && depth == 1) {
+                        if (c == '-') {
+                            negative = true;
+                        } else if (c >= '0' && c <= '9') {
+                            seqNo = Math.min(seqNo * 10 + (c - '0'), Integer.MAX_VALUE);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (rejection != null) {
+            return ItemUploadRequest.builder()
+                    .seqNo((int) (negative ? -seqNo : seqNo))
+                    .payloadRejection(rejection)
+                    .build();
+        }
+        try {
+            ItemUploadRequest request = objectMapper.readValue(item, 0, itemLength, ItemUploadRequest.class);
+            request.setRequestBytes(itemLength);
+            return request;
+        } catch (JsonProcessingException e) {
+            throw malformed("invalid batch item: " + e.getOriginalMessage());
+        }
+    }
+
+    private String readStringValue(int c) throws IOException {
+        if (c != '"') {
+            throw malformed("expected string value");
+        }
+        return readString();
+    }
+
+    /**
+     * Liest einen String ab dem bereits gelesenen '"' und dekodiert ihn samt Escapes mit dem ObjectMapper.
+     */
+    private String readString() throws IOException {
+        itemLength = 0;
+        append('"');
+        boolean escaped = false;
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw malformed("unexpected end of batch");
+            }
+            if (itemLength >= maxItemBytes) {
+                throw malformed("string exceeds " + maxItemBytes + " bytes");
+            }
+            append(c);
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                break;
+            }
+        }
+        try {
+            return objectMapper.readValue(item, 0, itemLength, String.class);
+        } catch (JsonProcessingException e) {
+            throw malformed("invalid string: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * @return true, wenn der Wert ab {@code c} das Literal null ist (dann vollständig gelesen)
+     */
+    private boolean isNull(int c) throws IOException {
+        if (c != 'n') {
+            return false;
+        }
+        if (next() != 'u' || next() != 'l' || next() != 'l') {
+            throw malformed("invalid literal");
+        }
+        return true;
+    }
+
+    /**
+     * Überliest einen beliebigen JSON-Wert ab dessen erstem Zeichen, ohne ihn zu puffern.
+     */
+    private void skipValue(int c) throws IOException {
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            // Zahl oder Literal: bis zum nächsten Trennzeichen, das dem Aufrufer gehört
+            while (c >= 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                c = next();
+            }
+            if (c >= 0) {
+                unread();
+            }
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            c = next();
+            switch (c) {
+                case -1 -> throw malformed("unexpected end of batch");
+                case '"' -> skipString();
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                default -> {
+                    // übrige Zeichen gehören zum Wert
+                }
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        boolean escaped = false;
+        while (true) {
+            int c = next();
+            if (c < 0) {
+                throw malformed("unexpected end of batch");
+            }
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                return;
+            }
+        }
+    }
+
+    private void append(int c) {
+        if (itemLength == item.length) {
+            item = Arrays.copyOf(item, (int) Math.min((long) item.length * 2, maxItemBytes));
+        }
+        item[itemLength++] = (byte) c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        if (++consumed > maxBatchBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "batch exceeds " + maxBatchBytes + " bytes");
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    /**
+     * Gibt das zuletzt gelesene Byte zurück; es liegt noch im Puffer, da {@link #next()} vorher keinen Block nachlädt.
+     */
+    private void unread() {
+        position--;
+        consumed--;
+    }
+
+    private static ResponseStatusException malformed(String reason) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
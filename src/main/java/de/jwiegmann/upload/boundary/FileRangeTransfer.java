@@ -0,0 +1,74 @@
+package de.jwiegmann.upload.boundary;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Liefert eine Datei (optional als einzelner Byte-Range) direkt an den Servlet-Response aus.
+ * Übertragen wird per {@link FileChannel#transferTo} innerhalb des Aufrufs, damit der Aufrufer die Datei
+ * danach freigeben darf; sendfile des Connectors läse sie erst nach Ende des Requests.
+ */
+final class FileRangeTransfer {
+
+    private FileRangeTransfer() {
+    }
+
+    static void send(Path file, String contentType, String eTag,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        int status = HttpStatus.OK.value();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, eTag);
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) { // Multipart-Ranges werden nicht unterstützt → vollständige Antwort
+                    start = ranges.getFirst().getRangeStart(length);
+                    end = ranges.getFirst().getRangeEnd(length);
+                    status = HttpStatus.PARTIAL_CONTENT.value();
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        long count = end - start + 1;
+        response.setStatus(status);
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+
+        if (count <= 0) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+}
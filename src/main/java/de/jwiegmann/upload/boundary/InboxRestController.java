@@ -0,0 +1,60 @@
+package de.jwiegmann.upload.boundary;
+
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAck;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAckResponse;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxClaimResponse;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Claim/Ack-Schnittstelle für externe Worker, die Inbox-Items verarbeiten.
+ */
+@RestController
+@RequestMapping("/zahlungsdaten-api/v1/inbox")
+public class InboxRestController {
+
+    private final InboxLeaseService leaseService;
+
+    public InboxRestController(InboxLeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
+    /**
+     * POST /zahlungsdaten-api/v1/inbox/claim?max=N&visibilityTimeout=5m
+     * Verleast bis zu N PENDING Items; ohne Bestätigung werden sie nach dem Timeout wieder PENDING.
+     */
+    @PostMapping("/claim")
+    public ResponseEntity<InboxClaimResponse> claim(
+            @RequestParam(name = "max", defaultValue = "10") int max,
+            @RequestParam(name = "visibilityTimeout", required = false) String visibilityTimeout
+    ) {
+        Duration timeout;
+        try {
+            timeout = visibilityTimeout != null ? DurationStyle.detectAndParse(visibilityTimeout) : null;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid visibilityTimeout: " + visibilityTimeout);
+        }
+
+        return ResponseEntity.ok(InboxClaimResponse.builder()
+                .items(leaseService.claim(max, timeout))
+                .build());
+    }
+
+    /**
+     * POST /zahlungsdaten-api/v1/inbox/ack
+     * Schließt verleaste Items mit DONE oder ERROR ab.
+     */
+    @PostMapping("/ack")
+    public ResponseEntity<InboxAckResponse> ack(@RequestBody List<InboxAck> acks) {
+        return ResponseEntity.ok(InboxAckResponse.builder()
+                .results(leaseService.ack(acks))
+                .build());
+    }
+}
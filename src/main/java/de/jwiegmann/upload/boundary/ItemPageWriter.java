@@ -0,0 +1,75 @@
+package de.jwiegmann.upload.boundary;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Schreibt eine Seite von Inbox-Items direkt per JsonGenerator in den Response-Stream.
+ * Payloads liegen bereits als JSON-String vor und werden unverändert (raw) übernommen.
+ * Format: {"uploadId":..,"items":[..],"nextFromSeq":n|null}
+ */
+final class ItemPageWriter {
+
+    private ItemPageWriter() {
+    }
+
+    static void write(OutputStream out, JsonFactory jsonFactory, String uploadId,
+                      Iterator<UploadInboxItem> items, int limit, boolean includePayload) throws IOException {
+
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("uploadId", uploadId);
+            gen.writeArrayFieldStart("items");
+
+            int written = 0;
+            Integer nextFromSeq = null;
+            while (items.hasNext()) {
+                UploadInboxItem item = items.next();
+                if (written == limit) {
+                    nextFromSeq = item.getSeqNo(); // Cursor: erstes nicht mehr geliefertes Item
+                    break;
+                }
+                writeItem(gen, item, includePayload);
+                written++;
+            }
+
+            gen.writeEndArray();
+            if (nextFromSeq != null) {
+                gen.writeNumberField("nextFromSeq", nextFromSeq);
+            } else {
+                gen.writeNullField("nextFromSeq");
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeItem(JsonGenerator gen, UploadInboxItem item, boolean includePayload) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("seqNo", item.getSeqNo());
+        gen.writeStringField("status", item.getStatus().name());
+        gen.writeStringField("payloadHash", Long.toHexString(item.getPayloadHash()));
+        if (item.getErrorMessage() != null) {
+            gen.writeStringField("errorMessage", item.getErrorMessage());
+        }
+        if (item.getRetryCount() > 0) {
+            gen.writeNumberField("retryCount", item.getRetryCount());
+        }
+        gen.writeStringField("createdAt", String.valueOf(item.getCreatedAt()));
+        gen.writeStringField("updatedAt", String.valueOf(item.getUpdatedAt()));
+        if (includePayload) {
+            gen.writeFieldName("payload");
+            if (item.getPayload() != null) {
+                gen.writeRawValue(item.getPayload());
+            } else {
+                gen.writeNull();
+            }
+        }
+        gen.writeEndObject();
+    }
+}
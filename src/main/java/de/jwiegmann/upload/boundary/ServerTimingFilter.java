@@ -0,0 +1,83 @@
+package de.jwiegmann.upload.boundary;
+
+import de.jwiegmann.upload.control.telemetry.ServerTimings;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Schreibt die im Request erfassten Phasendauern als {@code Server-Timing}-Header, z.B.
+ * {@code Server-Timing: validate;dur=0.120, process;dur=3.412, session;dur=0.051}.
+ * Der Header wird gesetzt, sobald der Body geschrieben wird, da die Header danach bereits versendet sind.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String SERVER_TIMING = "Server-Timing";
+
+    @Value("${upload.server-timing.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ServerTimings.begin();
+        try {
+            chain.doFilter(request, new ServerTimingResponse(response));
+        } finally {
+            ServerTimings.end();
+        }
+    }
+
+    private static final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private boolean written;
+
+        private ServerTimingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        private void writeHeader() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            String value = ServerTimings.headerValue();
+            if (value != null) {
+                setHeader(SERVER_TIMING, value);
+            }
+        }
+    }
+}
@@ -1,73 +1,444 @@
 package de.jwiegmann.upload.boundary;
 
-import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.jwiegmann.upload.boundary.dto.batch.BatchReceipt;
 import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.batch.MultiSessionBatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.SessionBatchUploadRequest;
+import de.jwiegmann.upload.boundary.dto.chunked.ChunkedUploadStatus;
 import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitResponse;
 import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.manifest.UploadManifestResponse;
+import de.jwiegmann.upload.boundary.dto.status.SequenceFormat;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadStatusBatchRequest;
+import de.jwiegmann.upload.boundary.dto.status.UploadStatusBatchResponse;
 import de.jwiegmann.upload.boundary.dto.status.UploadStatusListResponse;
 import de.jwiegmann.upload.boundary.dto.status.UploadStatusResponse;
+import de.jwiegmann.upload.boundary.idempotency.CachedResponse;
+import de.jwiegmann.upload.boundary.idempotency.IdempotencyCache;
+import de.jwiegmann.upload.control.UploadProgressBroadcaster;
 import de.jwiegmann.upload.control.UploadService;
+import de.jwiegmann.upload.control.chunked.ChunkedItemUploadService;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.export.UploadExportService;
+import de.jwiegmann.upload.control.ingest.AsyncBatchIngestService;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/zahlungsdaten-api/v1")
 public class UploadRestController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String PREFER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final Duration DEFAULT_LONG_POLL = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_EVENT_INTERVAL = Duration.ofMillis(500);
+    private static final Duration EVENT_STREAM_TIMEOUT = Duration.ofMinutes(30);
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (?:(\\d+)-(\\d+)|\\*)/(\\d+)");
+
+    @Value("${upload.query.max-limit:10000}")
+    private int maxPageSize;
+
     private final UploadService service;
+    private final UploadProgressBroadcaster progressBroadcaster;
+    private final UploadExportService exportService;
+    private final ChunkedItemUploadService chunkedUploadService;
+    private final AsyncBatchIngestService asyncIngestService;
+    private final IdempotencyCache idempotencyCache;
+    private final ObjectMapper objectMapper;
+    private final UploadLimitsProperties limits;
+
+    // Vorgefertigte Writer je Response-Typ für die gecachten Idempotency-Antworten
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
-    public UploadRestController(UploadService service) {
+    public UploadRestController(UploadService service,
+                                UploadProgressBroadcaster progressBroadcaster,
+                                UploadExportService exportService,
+                                ChunkedItemUploadService chunkedUploadService,
+                                AsyncBatchIngestService asyncIngestService,
+                                IdempotencyCache idempotencyCache,
+                                ObjectMapper objectMapper,
+                                UploadLimitsProperties limits) {
         this.service = service;
+        this.progressBroadcaster = progressBroadcaster;
+        this.exportService = exportService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.asyncIngestService = asyncIngestService;
+        this.idempotencyCache = idempotencyCache;
+        this.objectMapper = objectMapper;
+        this.limits = limits;
     }
 
     /**
      * POST /zahlungsdaten-api/v1/upload
+     * Mit Idempotency-Key wird bei Wiederholungen die ursprüngliche Antwort ausgeliefert.
      */
     @PostMapping("/upload")
-    public ResponseEntity<?> init(@RequestBody UploadInitRequest req) {
+    public ResponseEntity<?> init(@RequestBody UploadInitRequest req,
+                                  @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
 
-        UploadSession s = service.initUpload(req);
+        if (idempotencyKey == null) {
+            return createdResponse(service.initUpload(req));
+        }
 
-        return ResponseEntity
-                .created(URI.create("/zahlungsdaten-api/v1/upload/" + s.getUploadId()))
-                .body(Map.of(
-                        "uploadId", s.getUploadId(),
-                        "status", s.getStatus().name(),
-                        "createdAt", s.getCreatedAt().toString(),
-                        "expiresAt", s.getExpiresAt().toString(),
-                        "vslNummer", s.getVslNummer(),
-                        "expected", s.getExpectedCount()
-                ));
+        return idempotencyCache.execute("POST /upload|" + idempotencyKey, fingerprint(req),
+                        () -> serialize(createdResponse(service.initUpload(req))))
+                .toResponseEntity();
     }
 
     /**
      * PUT /zahlungsdaten-api/v1/upload/{uploadId}/items
+     * Mit Idempotency-Key wird ein wiederholter Batch nicht erneut verarbeitet.
+     * Mit {@code Prefer: respond-async} wird der Batch nur angenommen (202 mit Quittung) und im Hintergrund verarbeitet.
+     * Der Body wird stückweise gelesen, sodass Byte- und Tiefenlimits greifen, bevor ein Item vollständig im Speicher ist.
      */
-    @PutMapping("/upload/{uploadId}/items")
-    public ResponseEntity<BatchUploadResponse> uploadBatch(
+    @PutMapping(path = "/upload/{uploadId}/items", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> uploadBatch(
             @PathVariable String uploadId,
-            @RequestBody java.util.List<ItemUploadRequest> items
-    ) {
-        BatchUploadResponse result = service.uploadBatch(uploadId, items);
-        return ResponseEntity.ok(result);
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER, required = false) String prefer,
+            HttpServletRequest request
+    ) throws IOException {
+        List<ItemUploadRequest> items = BatchRequestReader.read(request.getInputStream(), objectMapper, limits);
+        boolean async = prefer != null && prefer.toLowerCase(Locale.ROOT).contains(RESPOND_ASYNC);
+
+        if (idempotencyKey == null) {
+            return async
+                    ? acceptedResponse(asyncIngestService.submit(uploadId, items))
+                    : ResponseEntity.ok(service.uploadBatch(uploadId, items));
+        }
+
+        return idempotencyCache.execute("PUT /upload/" + uploadId + "/items|" + idempotencyKey, fingerprint(items),
+                        () -> serialize(async
+                                ? acceptedResponse(asyncIngestService.submit(uploadId, items))
+                                : ResponseEntity.ok(service.uploadBatch(uploadId, items))))
+                .toResponseEntity();
     }
 
     /**
-     * GET /zahlungsdaten-api/v1/upload/{uploadId} — Status eines Uploads
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}/batches/{receiptId} — Quittung eines asynchron angenommenen Batches
+     * Status QUEUED, bis der Batch verarbeitet ist; danach PROCESSED mit Ergebnis pro Item oder FAILED.
+     */
+    @GetMapping("/upload/{uploadId}/batches/{receiptId}")
+    public ResponseEntity<BatchReceipt> getBatchReceipt(@PathVariable String uploadId, @PathVariable String receiptId) {
+        return ResponseEntity.ok(asyncIngestService.receipt(uploadId, receiptId));
+    }
+
+    /**
+     * PUT /zahlungsdaten-api/v1/upload/items — Batches für mehrere Sessions in einem Request
+     * Jede Session wird wie ein eigener BatchUpload verarbeitet; Fehler bleiben auf die Session beschränkt.
+     * Der Body wird wie beim einzelnen BatchUpload stückweise und mit denselben Byte- und Tiefenlimits gelesen.
+     */
+    @PutMapping(path = "/upload/items", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<MultiSessionBatchUploadResponse> uploadMultiSessionBatch(HttpServletRequest request)
+            throws IOException {
+        List<SessionBatchUploadRequest> sessions =
+                BatchRequestReader.readSessions(request.getInputStream(), objectMapper, limits);
+        return ResponseEntity.ok(service.uploadMultiSessionBatch(sessions));
+    }
+
+    /**
+     * PUT /zahlungsdaten-api/v1/upload/{uploadId}/items/{seqNo}/content — stückweiser Upload eines großen Items
+     * Body enthält die Bytes aus {@code Content-Range: bytes start-end/total}. Solange Bytes fehlen: 202 mit
+     * {@code Range: bytes=0-n}; mit {@code Content-Range: bytes *}{@code /total} wird nur der Fortschritt abgefragt.
+     * Nach dem letzten Chunk: 200 mit dem Ergebnis der Übernahme.
+     */
+    @PutMapping("/upload/{uploadId}/items/{seqNo}/content")
+    public ResponseEntity<ChunkedUploadStatus> uploadItemContent(
+            @PathVariable String uploadId,
+            @PathVariable int seqNo,
+            @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+            HttpServletRequest request
+    ) throws IOException {
+        Matcher range = CONTENT_RANGE.matcher(contentRange.trim());
+        if (!range.matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid Content-Range: " + contentRange);
+        }
+        long start;
+        long end;
+        long total;
+        try {
+            start = range.group(1) == null ? -1 : Long.parseLong(range.group(1));
+            end = range.group(2) == null ? -1 : Long.parseLong(range.group(2));
+            total = Long.parseLong(range.group(3));
+        } catch (NumberFormatException e) { // mehr Ziffern als in ein long passen
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid Content-Range: " + contentRange);
+        }
+
+        ChunkedUploadStatus status = start < 0
+                ? chunkedUploadService.status(uploadId, seqNo, total)
+                : chunkedUploadService.appendChunk(uploadId, seqNo, start, end, total, request.getInputStream());
+
+        if (status.isComplete()) {
+            return ResponseEntity.ok(status);
+        }
+        ResponseEntity.BodyBuilder accepted = ResponseEntity.accepted();
+        if (status.getReceivedBytes() > 0) {
+            accepted.header(HttpHeaders.RANGE, "bytes=0-" + (status.getReceivedBytes() - 1));
+        }
+        return accepted.body(status);
+    }
+
+    /**
+     * PUT /zahlungsdaten-api/v1/upload/{uploadId}/manifest — Hash-Manifest der Session registrieren oder ersetzen
+     * Body: je seqNo 1..expected der xxHash64 des Payloads als 8 Byte Big-Endian, 0 für seqNos ohne Hash.
+     */
+    @PutMapping(path = "/upload/{uploadId}/manifest", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadManifestResponse> registerManifest(@PathVariable String uploadId,
+                                                                   HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(service.registerManifest(uploadId, request.getInputStream()));
+    }
+
+    /**
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}/manifest — Empfangs- und Verifikations-Bitmap für den Resume
+     * Zwei Bitmaps zu je ceil(expected / 8) Bytes, Bit i (LSB zuerst) steht für seqNo i+1.
+     */
+    @GetMapping(path = "/upload/{uploadId}/manifest", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getManifestBitmap(@PathVariable String uploadId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(service.getManifestBitmap(uploadId));
+    }
+
+    /**
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}?seqFormat=list|ranges|bitmap — Status eines Uploads
+     * Unterstützt If-None-Match (304 ohne Statusberechnung) und Long-Poll über
+     * {@code waitForChangeSince=<version>&timeout=30s}.
      */
     @GetMapping("/upload/{uploadId}")
-    public ResponseEntity<UploadStatusResponse> getStatus(@PathVariable String uploadId) {
-        return ResponseEntity.ok(service.getStatus(uploadId));
+    public ResponseEntity<UploadStatusResponse> getStatus(
+            @PathVariable String uploadId,
+            @RequestParam(name = "seqFormat", required = false) String seqFormat,
+            @RequestParam(name = "waitForChangeSince", required = false) Long waitForChangeSince,
+            @RequestParam(name = "timeout", required = false) String timeout,
+            WebRequest request
+    ) {
+        SequenceFormat format = SequenceFormat.of(seqFormat);
+
+        long version = waitForChangeSince != null
+                ? service.awaitChange(uploadId, waitForChangeSince, parseDuration(timeout, DEFAULT_LONG_POLL))
+                : service.getVersion(uploadId);
+
+        if (request.checkNotModified(statusETag(version, format))) {
+            return null; // 304 Not Modified
+        }
+
+        UploadStatusResponse status = service.getStatus(uploadId, format);
+        return ResponseEntity.ok()
+                .eTag(statusETag(status.getVersion(), format))
+                .body(status);
     }
 
     /**
-     * GET /zahlungsdaten-api/v1/upload — Status aller Uploads
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}/events — SSE-Stream mit Fortschritts-Deltas
+     * Das erste Event enthält den vollständigen Stand, danach nur Änderungen, höchstens alle {@code minInterval}.
+     * Der Stream endet, sobald die Session COMPLETED oder ABORTED ist.
+     */
+    @GetMapping(path = "/upload/{uploadId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(
+            @PathVariable String uploadId,
+            @RequestParam(name = "minInterval", required = false) String minInterval
+    ) {
+        service.getVersion(uploadId); // 404 für unbekannte uploadId
+
+        SseEmitter emitter = new SseEmitter(EVENT_STREAM_TIMEOUT.toMillis());
+        Runnable unsubscribe = progressBroadcaster.subscribe(uploadId, parseDuration(minInterval, DEFAULT_EVENT_INTERVAL), event -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.getVersion()))
+                        .name("progress")
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (UploadSessionStatus.COMPLETED.name().equals(event.getUploadStatus())
+                    || UploadSessionStatus.ABORTED.name().equals(event.getUploadStatus())) {
+                emitter.complete();
+            }
+        });
+
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return emitter;
+    }
+
+    /**
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}/items?status=&fromSeq=&limit=&includePayload=&ready=
+     * Liefert Items seitenweise nach seqNo sortiert; {@code nextFromSeq} der Antwort ist der Cursor der Folgeseite.
+     * Mit {@code ready=received|done} nur den lückenlosen Anfang bis zur jeweiligen Watermark.
+     */
+    @GetMapping(path = "/upload/{uploadId}/items", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryItems(
+            @PathVariable String uploadId,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "fromSeq", defaultValue = "1") int fromSeq,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "includePayload", defaultValue = "true") boolean includePayload,
+            @RequestParam(name = "ready", required = false) String ready
+    ) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be within 1.." + maxPageSize);
+        }
+
+        Iterator<UploadInboxItem> items = ready == null
+                ? service.streamItems(uploadId, fromSeq, parseItemStatus(status)).iterator()
+                : readyPrefix(uploadId, fromSeq, status, ready).iterator();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> ItemPageWriter.write(out, objectMapper.getFactory(), uploadId, items, pageSize, includePayload));
+    }
+
+    /**
+     * GET /zahlungsdaten-api/v1/upload/{uploadId}/export — Payloads einer abgeschlossenen Session als NDJSON
+     * Unterstützt HTTP Range-Requests für fortsetzbare Downloads.
+     */
+    @GetMapping("/upload/{uploadId}/export")
+    public void export(@PathVariable String uploadId,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        try (UploadExportService.ExportFile export = exportService.export(uploadId)) {
+            Path file = export.file();
+            String eTag = "\"" + file.getFileName().toString().replace(".ndjson", "") + "\"";
+            FileRangeTransfer.send(file, NDJSON, eTag, request, response);
+        }
+    }
+
+    /**
+     * GET /zahlungsdaten-api/v1/upload?seqFormat=list|ranges|bitmap — Status aller Uploads
      */
     @GetMapping("/upload")
-    public ResponseEntity<UploadStatusListResponse> getAllStatus() {
-        return ResponseEntity.ok(service.getAllStatus());
+    public ResponseEntity<UploadStatusListResponse> getAllStatus(
+            @RequestParam(name = "seqFormat", required = false) String seqFormat
+    ) {
+        return ResponseEntity.ok(service.getAllStatus(SequenceFormat.of(seqFormat)));
+    }
+
+    /**
+     * POST /zahlungsdaten-api/v1/upload/status:batchGet — Status mehrerer Uploads in einem Request
+     */
+    @PostMapping("/upload/status:batchGet")
+    public ResponseEntity<UploadStatusBatchResponse> batchGetStatus(@RequestBody UploadStatusBatchRequest req) {
+        return ResponseEntity.ok(service.getStatuses(req.getUploadIds(), SequenceFormat.of(req.getSeqFormat())));
+    }
+
+    private Stream<UploadInboxItem> readyPrefix(String uploadId, int fromSeq, String status, String ready) {
+        if (status != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ready cannot be combined with status");
+        }
+        return switch (ready.trim().toLowerCase(Locale.ROOT)) {
+            case "received" -> service.streamReadyPrefix(uploadId, fromSeq, false);
+            case "done" -> service.streamReadyPrefix(uploadId, fromSeq, true);
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ready must be received or done");
+        };
+    }
+
+    private static UploadItemStatus parseItemStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return UploadItemStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown status: " + status);
+        }
+    }
+
+    private static String statusETag(long version, SequenceFormat format) {
+        return "\"" + version + "-" + format.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    private static Duration parseDuration(String value, Duration defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return DurationStyle.detectAndParse(value);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid duration: " + value);
+        }
+    }
+
+    private static ResponseEntity<UploadInitResponse> createdResponse(UploadSession s) {
+        return ResponseEntity
+                .created(URI.create("/zahlungsdaten-api/v1/upload/" + s.getUploadId()))
+                .body(UploadInitResponse.builder()
+                        .uploadId(s.getUploadId())
+                        .status(s.getStatus())
+                        .createdAt(s.getCreatedAt())
+                        .expiresAt(s.getExpiresAt())
+                        .vslNummer(s.getVslNummer())
+                        .expected(s.getExpectedCount())
+                        .build());
+    }
+
+    private static ResponseEntity<BatchReceipt> acceptedResponse(BatchReceipt receipt) {
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/zahlungsdaten-api/v1/upload/" + receipt.getUploadId() + "/batches/" + receipt.getReceiptId()))
+                .body(receipt);
+    }
+
+    /**
+     * SHA-256 über den erneut serialisierten Request; Whitespace und Formatierung des Original-Bodys spielen keine Rolle.
+     */
+    private byte[] fingerprint(Object request) {
+        try {
+            byte[] canonical = writers.computeIfAbsent(request.getClass(), objectMapper::writerFor).writeValueAsBytes(request);
+            return MessageDigest.getInstance("SHA-256").digest(canonical);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("request serialization failed", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private CachedResponse serialize(ResponseEntity<?> response) {
+        Object body = response.getBody();
+        try {
+            return new CachedResponse(
+                    response.getStatusCode().value(),
+                    response.getHeaders().getLocation(),
+                    writers.computeIfAbsent(body.getClass(), objectMapper::writerFor).writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("response serialization failed", e);
+        }
     }
 }
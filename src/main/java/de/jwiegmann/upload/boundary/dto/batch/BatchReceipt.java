@@ -0,0 +1,35 @@
+package de.jwiegmann.upload.boundary.dto.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Quittung für einen asynchron angenommenen Batch-Upload (202 Accepted).
+ * Nach der Verarbeitung enthält sie dieselben Ergebnisse pro Item wie der synchrone BatchUpload.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReceipt {
+    private String receiptId;
+    private String uploadId;
+    private BatchReceiptStatus status;
+    private LocalDateTime acceptedAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime processedAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<BatchUploadResult> results;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private UploadError error;
+}
@@ -0,0 +1,7 @@
+package de.jwiegmann.upload.boundary.dto.batch;
+
+public enum BatchReceiptStatus {
+    QUEUED,     // angenommen, wartet auf Verarbeitung
+    PROCESSED,  // verarbeitet, Ergebnis pro Item liegt vor
+    FAILED      // Batch konnte nicht verarbeitet werden (z.B. Session inzwischen entfernt)
+}
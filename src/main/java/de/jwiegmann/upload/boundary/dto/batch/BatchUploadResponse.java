@@ -1,5 +1,7 @@
 package de.jwiegmann.upload.boundary.dto.batch;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,5 +19,9 @@ import java.util.List;
 public class BatchUploadResponse {
     private String uploadId;
     private List<BatchUploadResult> results;
+
+    // Nur im Multi-Session-Upload: Fehler, der die ganze Session betrifft (z.B. unbekannte uploadId)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private UploadError error;
 }
 
@@ -1,5 +1,6 @@
 package de.jwiegmann.upload.boundary.dto.batch;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -17,5 +18,17 @@ import lombok.NoArgsConstructor;
 public class ItemUploadRequest {
     private int seqNo;
     private JsonNode payload;
+
+    // Nur beim gestreamten Einlesen gesetzt, wenn ein Limit verletzt wurde; payload bleibt dann null
+    @JsonIgnore
+    private PayloadRejection payloadRejection;
+
+    // Nur beim gestreamten Einlesen gesetzt: Größe des Items im Request-Body in Bytes
+    @JsonIgnore
+    private int requestBytes;
+
+    public enum PayloadRejection {
+        TOO_LARGE, TOO_DEEP
+    }
 }
 
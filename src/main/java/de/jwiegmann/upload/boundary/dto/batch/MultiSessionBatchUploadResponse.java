@@ -0,0 +1,19 @@
+package de.jwiegmann.upload.boundary.dto.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response-DTO für den Multi-Session-Upload: ein BatchUploadResponse je Session in Request-Reihenfolge.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultiSessionBatchUploadResponse {
+    private List<BatchUploadResponse> sessions;
+}
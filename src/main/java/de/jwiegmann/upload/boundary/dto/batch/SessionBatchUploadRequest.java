@@ -0,0 +1,20 @@
+package de.jwiegmann.upload.boundary.dto.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request-DTO für den Multi-Session-Upload: die Items einer einzelnen Session.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionBatchUploadRequest {
+    private String uploadId;
+    private List<ItemUploadRequest> items;
+}
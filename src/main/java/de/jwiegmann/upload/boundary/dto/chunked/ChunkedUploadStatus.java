@@ -0,0 +1,30 @@
+package de.jwiegmann.upload.boundary.dto.chunked;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fortschritt eines stückweisen (Content-Range) Uploads eines einzelnen Items.
+ * Sobald alle Bytes vorliegen, wird das Item übernommen und {@code result} ist befüllt.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkedUploadStatus {
+    private String uploadId;
+    private int seqNo;
+    private long receivedBytes;     // lückenlos empfangene Bytes ab Offset 0
+    private long totalBytes;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BatchUploadResult result;
+
+    public boolean isComplete() {
+        return result != null;
+    }
+}
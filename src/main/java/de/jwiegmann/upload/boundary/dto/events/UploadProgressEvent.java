@@ -0,0 +1,32 @@
+package de.jwiegmann.upload.boundary.dto.events;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Fortschritts-Delta einer Upload-Session für den SSE-Stream.
+ * Enthält nur Felder, die sich seit dem letzten an diesen Subscriber gesendeten Event geändert haben;
+ * das erste Event eines Streams ist vollständig.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UploadProgressEvent {
+
+    private String uploadId;
+    private long version;
+    private String uploadStatus;        // nur bei Statuswechsel (z. B. SEALED, COMPLETED)
+    private Integer received;
+    private Integer pending;
+    private Integer processing;
+    private Integer done;
+    private Integer error;
+    private List<Integer> newErrorSeq;  // seit dem letzten Event neu in ERROR
+}
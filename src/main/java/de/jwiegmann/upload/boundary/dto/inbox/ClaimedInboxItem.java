@@ -0,0 +1,28 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ein an einen Worker verleastes Item. Der Worker bestätigt es mit uploadId, seqNo und leaseId,
+ * bevor {@code leaseExpiresAt} erreicht ist; danach wird das Item wieder PENDING.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaimedInboxItem {
+    private String uploadId;
+    private int seqNo;
+    private String leaseId;
+    private LocalDateTime leaseExpiresAt;
+    private int retryCount;  // > 0, wenn das Item nach ERROR serverseitig erneut eingereiht wurde
+
+    @JsonRawValue
+    private String payload;
+}
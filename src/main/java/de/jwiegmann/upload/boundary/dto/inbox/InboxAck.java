@@ -0,0 +1,23 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request-DTO für die Bestätigung eines verleasten Items mit dem Verarbeitungsergebnis.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxAck {
+    private String uploadId;
+    private int seqNo;
+    private String leaseId;
+    private UploadItemStatus status;   // DONE | ERROR
+    private String errorMessage;       // optional, bei ERROR
+    private Boolean retryable;         // optional, bei ERROR: false = fachlicher Fehler, kein serverseitiger Retry
+}
@@ -0,0 +1,19 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response-DTO für die Bestätigung: Ergebnis pro Item in Request-Reihenfolge.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxAckResponse {
+    private List<InboxAckResult> results;
+}
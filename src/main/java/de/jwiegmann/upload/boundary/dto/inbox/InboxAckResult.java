@@ -0,0 +1,25 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ergebnis für eine einzelne Bestätigung.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxAckResult {
+    private String uploadId;
+    private int seqNo;
+    private InboxAckStatus status;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime retryAt;  // nur bei ERROR mit geplantem serverseitigem Retry
+}
@@ -0,0 +1,7 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+public enum InboxAckStatus {
+    ACKED,          // Ergebnis übernommen
+    LEASE_EXPIRED,  // Lease abgelaufen oder von anderem Worker übernommen, Ergebnis verworfen
+    NOT_FOUND       // Item existiert nicht
+}
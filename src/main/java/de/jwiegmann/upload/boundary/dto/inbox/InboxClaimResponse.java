@@ -0,0 +1,19 @@
+package de.jwiegmann.upload.boundary.dto.inbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response-DTO für den Claim: die verleasten Items, ggf. weniger als angefragt.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxClaimResponse {
+    private List<ClaimedInboxItem> items;
+}
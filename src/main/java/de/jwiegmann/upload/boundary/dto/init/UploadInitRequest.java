@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -16,4 +17,5 @@ public class UploadInitRequest {
     private String vslNummer;
     private int anzahlDatensaetzeInsgesamt;
     private LocalDateTime erstellungsdatum;
+    private List<String> payloadHashes;   // optionales Manifest: xxHash64 (hex) je seqNo 1..n, null = kein Hash
 }
@@ -1,12 +1,20 @@
 package de.jwiegmann.upload.boundary.dto.init;
 
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
 import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 @Data
 @Builder
@@ -14,6 +22,15 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class UploadSession {
 
+    private static final AtomicLongFieldUpdater<UploadSession> VERSION =
+            AtomicLongFieldUpdater.newUpdater(UploadSession.class, "version");
+    private static final AtomicIntegerFieldUpdater<UploadSession> PENDING =
+            AtomicIntegerFieldUpdater.newUpdater(UploadSession.class, "pendingCount");
+    private static final AtomicIntegerFieldUpdater<UploadSession> PROCESSING =
+            AtomicIntegerFieldUpdater.newUpdater(UploadSession.class, "processingCount");
+    private static final AtomicIntegerFieldUpdater<UploadSession> ERROR =
+            AtomicIntegerFieldUpdater.newUpdater(UploadSession.class, "errorCount");
+
     private String uploadId;
     private UploadSessionStatus status;   // ACTIVE | SEALED | COMPLETED | ABORTED
 
@@ -27,4 +44,88 @@ public class UploadSession {
     // Fortschritt
     private int expectedCount;   // Anzahl der Datensaetze insgesamt
     private int receivedCount;   // Anzahl bereits angenommener Items
+    private int doneCount;       // Anzahl von Workern als DONE bestätigter Items
+    private long payloadBytes;   // Summe der Payload-Größen angenommener Items (Limit upload.limits.max-session-bytes)
+
+    // Items je Status (ohne DONE, siehe doneCount), gezählt bei jedem Statuswechsel eines Items
+    private volatile int pendingCount;
+    private volatile int processingCount;
+    private volatile int errorCount;
+
+    // Sequenzmengen (Bit n = seqNo n) der angenommenen und der ERROR-Items, gepflegt wie die Statuszähler
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final BitSet receivedSeqs = new BitSet();
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final BitSet errorSeqs = new BitSet();
+
+    // Monoton steigende Version, erhöht bei jeder Änderung an Session oder Items
+    private volatile long version;
+
+    /**
+     * Erhöht die Version atomar, ohne Monitor (virtuelle Threads werden dabei nicht an ihren Carrier gebunden).
+     *
+     * @return Die neue Version
+     */
+    public long incrementVersion() {
+        return VERSION.incrementAndGet(this);
+    }
+
+    /**
+     * Zählt den Statuswechsel eines Items atomar in den Statuszählern und pflegt die Sequenzmengen.
+     * DONE wird nicht hier, sondern über doneCount gezählt.
+     *
+     * @param seqNo Sequenznummer des Items
+     * @param from  Bisheriger Status, null für ein neu angenommenes Item
+     * @param to    Neuer Status
+     */
+    public void countItemTransition(int seqNo, UploadItemStatus from, UploadItemStatus to) {
+        if (from == to) {
+            return;
+        }
+        if (from == null || from == UploadItemStatus.ERROR || to == UploadItemStatus.ERROR) {
+            synchronized (receivedSeqs) {
+                if (from == null) {
+                    receivedSeqs.set(seqNo);
+                }
+                errorSeqs.set(seqNo, to == UploadItemStatus.ERROR);
+            }
+        }
+        AtomicIntegerFieldUpdater<UploadSession> decrement = counter(from);
+        AtomicIntegerFieldUpdater<UploadSession> increment = counter(to);
+        if (increment != null) {
+            increment.incrementAndGet(this);
+        }
+        if (decrement != null) {
+            decrement.decrementAndGet(this);
+        }
+    }
+
+    /**
+     * Kopiert die Sequenzmengen konsistent zueinander in die übergebenen Bitmaps.
+     *
+     * @param received Ziel für die seqNos aller angenommenen Items
+     * @param error    Ziel für die seqNos der ERROR-Items
+     */
+    public void copySequences(BitSet received, BitSet error) {
+        synchronized (receivedSeqs) {
+            received.or(receivedSeqs);
+            error.or(errorSeqs);
+        }
+    }
+
+    private static AtomicIntegerFieldUpdater<UploadSession> counter(UploadItemStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case PENDING -> PENDING;
+            case PROCESSING -> PROCESSING;
+            case ERROR -> ERROR;
+            case DONE -> null;
+        };
+    }
 }
@@ -0,0 +1,20 @@
+package de.jwiegmann.upload.boundary.dto.manifest;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ergebnis der Registrierung eines Hash-Manifests, abgeglichen mit den bereits gespeicherten Items.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadManifestResponse {
+    private String uploadId;
+    private int hashes;       // seqNos mit Hash im Manifest
+    private int verified;     // gespeicherte Items, deren Hash dem Manifest entspricht
+    private int mismatched;   // gespeicherte Items mit abweichendem Hash (vor der Registrierung angenommen)
+}
@@ -0,0 +1,30 @@
+package de.jwiegmann.upload.boundary.dto.status;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Kontrollsumme eines Payload-Feldes über alle gespeicherten Items einer Session.
+ * Items ohne numerischen Wert im Feld zählen nicht mit.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayloadAggregate {
+
+    private long count;
+    private BigDecimal sum;
+
+    // Ohne Werte (count == 0) nicht vorhanden
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal min;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BigDecimal max;
+}
@@ -0,0 +1,27 @@
+package de.jwiegmann.upload.boundary.dto.status;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Locale;
+
+/**
+ * Darstellung der missing/error Sequenzen im Status-Response.
+ */
+public enum SequenceFormat {
+    LIST,     // eine Zahl pro seqNo (Default, abwärtskompatibel)
+    RANGES,   // sortierte [from,to]-Bereiche
+    BITMAP,   // Base64-Bitmap, Bit i (LSB zuerst) steht für seqNo i+1
+    NONE;     // nur Zähler, keine Sequenzen
+
+    public static SequenceFormat of(String value) {
+        if (value == null || value.isBlank()) {
+            return LIST;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown seqFormat: " + value);
+        }
+    }
+}
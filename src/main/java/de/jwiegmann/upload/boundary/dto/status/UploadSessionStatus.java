@@ -4,5 +4,12 @@ public enum UploadSessionStatus {
     ACTIVE,
     SEALED,
     COMPLETED,
-    ABORTED
-}
\ No newline at end of file
+    ABORTED;
+
+    /**
+     * @return true für COMPLETED und ABORTED: die Session nimmt keine Items mehr an
+     */
+    public boolean isEnded() {
+        return this == COMPLETED || this == ABORTED;
+    }
+}
@@ -0,0 +1,20 @@
+package de.jwiegmann.upload.boundary.dto.status;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request-DTO für die Statusabfrage mehrerer Uploads in einem Request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatusBatchRequest {
+    private List<String> uploadIds;
+    private String seqFormat;          // list | ranges | bitmap | none, Default list
+}
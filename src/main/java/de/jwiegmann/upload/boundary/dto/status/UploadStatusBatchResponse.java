@@ -0,0 +1,20 @@
+package de.jwiegmann.upload.boundary.dto.status;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response-DTO für die Statusabfrage mehrerer Uploads.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatusBatchResponse {
+    private List<UploadStatusResponse> items;   // in Request-Reihenfolge
+    private List<String> notFound;              // unbekannte uploadIds
+}
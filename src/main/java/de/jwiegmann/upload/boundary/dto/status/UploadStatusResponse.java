@@ -1,5 +1,6 @@
 package de.jwiegmann.upload.boundary.dto.status;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Response für den Status-Endpunkt.
@@ -20,16 +22,38 @@ public class UploadStatusResponse {
 
     private String uploadId;
     private String uploadStatus; // ACTIVE | SEALED | COMPLETED | ABORTED
+    private long version;        // Session-Version, Basis für ETag und Long-Poll
     private int expected;
     private int received;
     private int pending;
     private int processing;
     private int done;
     private int error;
+    private int receivedWatermark; // höchste seqNo N, bis zu der alle Items 1..N angekommen sind
+    private int doneWatermark;     // höchste seqNo N, bis zu der alle Items 1..N DONE sind
 
+    // Je nach SequenceFormat ist genau eine Darstellung befüllt
     @JsonProperty("missingSeq")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Integer> missingSequence;
 
     @JsonProperty("errorSeq")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Integer> errorSequence;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<int[]> missingRanges;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<int[]> errorRanges;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String missingBitmap;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String errorBitmap;
+
+    // Kontrollsummen je konfiguriertem Payload-Feld (upload.aggregation.fields), sonst nicht vorhanden
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, PayloadAggregate> aggregates;
 }
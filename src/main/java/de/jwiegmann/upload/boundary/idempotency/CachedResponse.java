@@ -0,0 +1,29 @@
+package de.jwiegmann.upload.boundary.idempotency;
+
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+
+/**
+ * Serialisierte HTTP-Antwort eines idempotenten Requests.
+ * Der Body wird als Byte-Array gehalten und bei Wiederholungen unverändert ausgeliefert.
+ */
+@Value
+public class CachedResponse {
+
+    int status;
+    URI location;     // optional, nur bei 201 Created und 202 Accepted
+    byte[] body;
+
+    public ResponseEntity<byte[]> toResponseEntity() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (location != null) {
+            headers.setLocation(location);
+        }
+        return ResponseEntity.status(status).headers(headers).body(body);
+    }
+}
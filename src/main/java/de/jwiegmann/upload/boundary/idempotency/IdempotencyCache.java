@@ -0,0 +1,141 @@
+package de.jwiegmann.upload.boundary.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Begrenzter Antwort-Cache für Requests mit Idempotency-Key.
+ * Die erste Ausführung eines Keys wird zwischengespeichert; Wiederholungen innerhalb der TTL
+ * bekommen dieselbe Antwort, ohne die Repositories erneut zu berühren.
+ * Gleichzeitige Duplikate warten auf die laufende Ausführung statt selbst auszuführen.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Einfügereihenfolge == Ablaufreihenfolge, da alle Einträge dieselbe TTL haben
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    @Value("${upload.idempotency.ttl:PT10M}")
+    private Duration ttl;
+
+    @Value("${upload.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    /**
+     * Führt die Aktion höchstens einmal pro Key aus und liefert bei Wiederholungen die gecachte Antwort.
+     *
+     * @param key         Idempotency-Key inkl. Endpunkt-Scope
+     * @param fingerprint Digest (SHA-256) des kanonisch serialisierten Requests, um Wiederverwendung des Keys mit
+     *                    anderem Inhalt zu erkennen
+     * @param action      Die eigentliche Verarbeitung inkl. Serialisierung der Antwort
+     * @return Die (ggf. wiederholte) serialisierte Antwort
+     * @throws ResponseStatusException 422 wenn der Key mit abweichendem Request wiederverwendet wird
+     */
+    public CachedResponse execute(String key, byte[] fingerprint, Supplier<CachedResponse> action) {
+
+        long now = System.nanoTime();
+        evictExpired(now);
+
+        Entry fresh = new Entry(key, fingerprint, now + ttl.toNanos());
+        Entry existing = entries.putIfAbsent(key, fresh);
+
+        if (existing != null) {
+            if (!existing.isExpired(now)) {
+                if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            "Idempotency-Key reused with different request");
+                }
+                return existing.await();
+            }
+            // Abgelaufener Eintrag, der noch nicht evicted wurde → ersetzen
+            if (!entries.replace(key, existing, fresh)) {
+                return execute(key, fingerprint, action);
+            }
+        }
+
+        insertionOrder.add(fresh);
+        try {
+            CachedResponse response = action.get();
+            fresh.future.complete(response);
+            evictOverflow(fresh);
+            return response;
+        } catch (Throwable e) {
+            // Fehler werden nicht gecacht, ein späterer Retry führt erneut aus; auch ein Error darf
+            // keinen laufenden Eintrag hinterlassen, auf den Duplikate für immer warten
+            entries.remove(key, fresh);
+            fresh.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evictExpired(long now) {
+        Entry head;
+        while ((head = insertionOrder.peek()) != null && head.isExpired(now)) {
+            if (insertionOrder.remove(head)) {
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    /**
+     * Verdrängt die ältesten abgeschlossenen Einträge. Laufende Ausführungen und der gerade eingefügte Eintrag
+     * bleiben erhalten, sonst würde ein gleichzeitiges Duplikat den Request ein zweites Mal ausführen.
+     */
+    private void evictOverflow(Entry inserted) {
+        Iterator<Entry> oldestFirst = insertionOrder.iterator();
+        while (entries.size() > maxEntries && oldestFirst.hasNext()) {
+            Entry entry = oldestFirst.next();
+            if (entry != inserted && entry.future.isDone()) {
+                oldestFirst.remove();
+                entries.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final byte[] fingerprint;
+        private final long expiresAtNanos;
+        private final CompletableFuture<CachedResponse> future = new CompletableFuture<>();
+
+        private Entry(String key, byte[] fingerprint, long expiresAtNanos) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos > 0;
+        }
+
+        private CachedResponse await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.jwiegmann.upload.boundary.json;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registriert zusätzliche Jackson-Module am von Spring Boot erzeugten ObjectMapper.
+ * Blackbird ersetzt reflektive Getter-/Setter-Aufrufe durch generierte Lambdas für alle übrigen DTOs.
+ */
+@Configuration
+public class JacksonConfiguration {
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public Module uploadJsonModule() {
+        return new UploadJsonModule();
+    }
+}
@@ -0,0 +1,201 @@
+package de.jwiegmann.upload.boundary.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitResponse;
+import de.jwiegmann.upload.boundary.dto.status.UploadStatusResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Handgeschriebene Streaming-Serializer für die DTOs, die pro Request serialisiert werden.
+ * Sie schreiben die Felder direkt auf den Generator, ohne Bean-Introspection und Property-Lookup;
+ * das JSON ist identisch zur Standard-Serialisierung (siehe UploadJsonModuleTest).
+ */
+public class UploadJsonModule extends SimpleModule {
+
+    public UploadJsonModule() {
+        super("UploadJsonModule");
+        addSerializer(BatchUploadResponse.class, new BatchUploadResponseSerializer());
+        addSerializer(BatchUploadResult.class, new BatchUploadResultSerializer());
+        addSerializer(UploadError.class, new UploadErrorSerializer());
+        addSerializer(UploadInitResponse.class, new UploadInitResponseSerializer());
+        addSerializer(UploadStatusResponse.class, new UploadStatusResponseSerializer());
+    }
+
+    static final class BatchUploadResponseSerializer extends StdSerializer<BatchUploadResponse> {
+
+        BatchUploadResponseSerializer() {
+            super(BatchUploadResponse.class);
+        }
+
+        @Override
+        public void serialize(BatchUploadResponse value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("uploadId", value.getUploadId());
+            gen.writeFieldName("results");
+            List<BatchUploadResult> results = value.getResults();
+            if (results == null) {
+                gen.writeNull();
+            } else {
+                gen.writeStartArray(results, results.size());
+                for (BatchUploadResult result : results) {
+                    BatchUploadResultSerializer.write(result, gen, provider);
+                }
+                gen.writeEndArray();
+            }
+            if (value.getError() != null) {
+                gen.writeFieldName("error");
+                UploadErrorSerializer.write(value.getError(), gen, provider);
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    static final class BatchUploadResultSerializer extends StdSerializer<BatchUploadResult> {
+
+        BatchUploadResultSerializer() {
+            super(BatchUploadResult.class);
+        }
+
+        @Override
+        public void serialize(BatchUploadResult value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(value, gen, provider);
+        }
+
+        static void write(BatchUploadResult value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (value == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeNumberField("seqNo", value.getSeqNo());
+            writeEnum(gen, "status", value.getStatus());
+            gen.writeFieldName("error");
+            UploadErrorSerializer.write(value.getError(), gen, provider);
+            gen.writeEndObject();
+        }
+    }
+
+    static final class UploadErrorSerializer extends StdSerializer<UploadError> {
+
+        UploadErrorSerializer() {
+            super(UploadError.class);
+        }
+
+        @Override
+        public void serialize(UploadError value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            write(value, gen, provider);
+        }
+
+        static void write(UploadError value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (value == null) {
+                gen.writeNull();
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeStringField("code", value.getCode());
+            gen.writeStringField("message", value.getMessage());
+            // details und timestamp über die konfigurierten Serializer (Map-Inhalte, Datumsformat)
+            provider.defaultSerializeField("details", value.getDetails(), gen);
+            provider.defaultSerializeField("timestamp", value.getTimestamp(), gen);
+            gen.writeEndObject();
+        }
+    }
+
+    static final class UploadInitResponseSerializer extends StdSerializer<UploadInitResponse> {
+
+        UploadInitResponseSerializer() {
+            super(UploadInitResponse.class);
+        }
+
+        @Override
+        public void serialize(UploadInitResponse value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("uploadId", value.getUploadId());
+            writeEnum(gen, "status", value.getStatus());
+            provider.defaultSerializeField("createdAt", value.getCreatedAt(), gen);
+            provider.defaultSerializeField("expiresAt", value.getExpiresAt(), gen);
+            gen.writeStringField("vslNummer", value.getVslNummer());
+            gen.writeNumberField("expected", value.getExpected());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class UploadStatusResponseSerializer extends StdSerializer<UploadStatusResponse> {
+
+        UploadStatusResponseSerializer() {
+            super(UploadStatusResponse.class);
+        }
+
+        @Override
+        public void serialize(UploadStatusResponse value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("uploadId", value.getUploadId());
+            gen.writeStringField("uploadStatus", value.getUploadStatus());
+            gen.writeNumberField("version", value.getVersion());
+            gen.writeNumberField("expected", value.getExpected());
+            gen.writeNumberField("received", value.getReceived());
+            gen.writeNumberField("pending", value.getPending());
+            gen.writeNumberField("processing", value.getProcessing());
+            gen.writeNumberField("done", value.getDone());
+            gen.writeNumberField("error", value.getError());
+            gen.writeNumberField("receivedWatermark", value.getReceivedWatermark());
+            gen.writeNumberField("doneWatermark", value.getDoneWatermark());
+
+            // Sequenzen wie @JsonInclude(NON_NULL): nur die gewählte Darstellung erscheint
+            writeSeqList(gen, "missingSeq", value.getMissingSequence());
+            writeSeqList(gen, "errorSeq", value.getErrorSequence());
+            writeRanges(gen, "missingRanges", value.getMissingRanges());
+            writeRanges(gen, "errorRanges", value.getErrorRanges());
+            if (value.getMissingBitmap() != null) {
+                gen.writeStringField("missingBitmap", value.getMissingBitmap());
+            }
+            if (value.getErrorBitmap() != null) {
+                gen.writeStringField("errorBitmap", value.getErrorBitmap());
+            }
+            if (value.getAggregates() != null) {
+                provider.defaultSerializeField("aggregates", value.getAggregates(), gen);
+            }
+            gen.writeEndObject();
+        }
+
+        private static void writeSeqList(JsonGenerator gen, String name, List<Integer> seqs) throws IOException {
+            if (seqs == null) {
+                return;
+            }
+            gen.writeFieldName(name);
+            gen.writeStartArray(seqs, seqs.size());
+            for (Integer seq : seqs) {
+                gen.writeNumber(seq);
+            }
+            gen.writeEndArray();
+        }
+
+        private static void writeRanges(JsonGenerator gen, String name, List<int[]> ranges) throws IOException {
+            if (ranges == null) {
+                return;
+            }
+            gen.writeFieldName(name);
+            gen.writeStartArray(ranges, ranges.size());
+            for (int[] range : ranges) {
+                gen.writeArray(range, 0, range.length);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    private static void writeEnum(JsonGenerator gen, String name, Enum<?> value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(name);
+        } else {
+            gen.writeStringField(name, value.name());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.jwiegmann.upload.control;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Kodiert Mengen von Sequenznummern (als BitSet, Bit n = seqNo n) für den Status-Response.
+ * Die Laufzeit der Range-Kodierung skaliert mit der Anzahl der Lücken, nicht mit expectedCount.
+ */
+public final class SequenceEncoding {
+
+    private SequenceEncoding() {
+    }
+
+    /**
+     * Alle seqNos aus 1..expected, die nicht in {@code present} gesetzt sind.
+     */
+    public static BitSet complement(BitSet present, int expected) {
+        BitSet missing = new BitSet(expected + 1);
+        missing.set(1, expected + 1);
+        missing.andNot(present);
+        return missing;
+    }
+
+    public static List<Integer> toList(BitSet seqNos) {
+        List<Integer> list = new ArrayList<>(seqNos.cardinality());
+        for (int i = seqNos.nextSetBit(0); i >= 0; i = seqNos.nextSetBit(i + 1)) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    /**
+     * Sortierte, zusammenhängende Bereiche als [from, to] (beide inklusive).
+     */
+    public static List<int[]> toRanges(BitSet seqNos) {
+        List<int[]> ranges = new ArrayList<>();
+        int from = seqNos.nextSetBit(0);
+        while (from >= 0) {
+            int to = seqNos.nextClearBit(from) - 1;
+            ranges.add(new int[]{from, to});
+            from = seqNos.nextSetBit(to + 1);
+        }
+        return ranges;
+    }
+
+    /**
+     * Base64 (RFC 4648) der Bitmap; Bit i (LSB zuerst) steht für seqNo i+1.
+     * Nachlaufende Null-Bytes entfallen.
+     */
+    public static String toBitmap(BitSet seqNos, int expected) {
+        return Base64.getEncoder().encodeToString(seqNos.get(1, expected + 1).toByteArray());
+    }
+}
@@ -40,6 +40,14 @@ public class UploadErrorFactory {
                 .build();
     }
 
+    public static UploadError uploadNotFound(String uploadId) {
+        return UploadError.builder()
+                .code("UPLOAD_NOT_FOUND")
+                .message("uploadId not found")
+                .details(Map.of("uploadId", uploadId))
+                .build();
+    }
+
     public static UploadError uploadSessionNotOpen(String uploadId) {
         return UploadError.builder()
                 .code("UPLOAD_SESSION_NOT_OPEN")
@@ -48,6 +56,48 @@ public class UploadErrorFactory {
                 .build();
     }
 
+    public static UploadError invalidPayload(int seqNo, String field, String reason) {
+        return UploadError.builder()
+                .code("INVALID_PAYLOAD")
+                .message("payload is not valid: " + (field.isEmpty() ? reason : field + " " + reason))
+                .details(Map.of("seqNo", seqNo, "field", field, "reason", reason))
+                .build();
+    }
+
+    public static UploadError payloadTooLarge(int seqNo, long maxBytes) {
+        return UploadError.builder()
+                .code("PAYLOAD_TOO_LARGE")
+                .message("item exceeds " + maxBytes + " bytes")
+                .details(Map.of("seqNo", seqNo, "maxBytes", maxBytes))
+                .build();
+    }
+
+    public static UploadError payloadTooDeep(int seqNo, int maxDepth) {
+        return UploadError.builder()
+                .code("PAYLOAD_TOO_DEEP")
+                .message("payload nesting exceeds depth " + maxDepth)
+                .details(Map.of("seqNo", seqNo, "maxDepth", maxDepth))
+                .build();
+    }
+
+    public static UploadError sessionBytesExceeded(int seqNo, String uploadId, long maxBytes) {
+        return UploadError.builder()
+                .code("SESSION_BYTES_EXCEEDED")
+                .message("upload session exceeds " + maxBytes + " payload bytes")
+                .details(Map.of("seqNo", seqNo, "uploadId", uploadId, "maxBytes", maxBytes))
+                .build();
+    }
+
+    public static UploadError manifestMismatch(int seqNo, long expectedHash, long actualHash) {
+        return UploadError.builder()
+                .code("MANIFEST_MISMATCH")
+                .message("payload hash does not match the manifest")
+                .details(Map.of("seqNo", seqNo,
+                        "expectedHash", Long.toHexString(expectedHash),
+                        "actualHash", Long.toHexString(actualHash)))
+                .build();
+    }
+
     public static UploadError reUploadedFromError(int seqNo) {
         return UploadError.builder()
                 .code("RE_UPLOADED_FROM_ERROR")
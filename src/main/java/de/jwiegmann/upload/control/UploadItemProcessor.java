@@ -5,12 +5,25 @@ import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
 import de.jwiegmann.upload.boundary.dto.init.UploadSession;
 import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
 import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.aggregation.PayloadAggregationService;
 import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.feed.InboxChangeType;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import de.jwiegmann.upload.control.manifest.UploadManifestRegistry;
+import de.jwiegmann.upload.control.payload.ContentAddressedPayloadStore;
+import de.jwiegmann.upload.control.payload.MappedPayloadSegmentStore;
+import de.jwiegmann.upload.control.payload.SpilledPayload;
+import de.jwiegmann.upload.control.payload.XxHash64;
 import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
+import de.jwiegmann.upload.control.watermark.CompletionWatermarkTracker;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -22,26 +35,46 @@ import java.util.Optional;
 public class UploadItemProcessor {
 
     private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final ContentAddressedPayloadStore payloadStore;
+    private final MappedPayloadSegmentStore segmentStore;
+    private final InboxLeaseService inboxLeaseService;
+    private final PayloadAggregationService payloadAggregation;
+    private final CompletionWatermarkTracker watermarks;
+    private final UploadSessionManager uploadSessionManager;
+    private final UploadLimitsProperties limits;
+    private final InboxChangeFeed changeFeed;
+    private final UploadManifestRegistry manifests;
 
     /**
      * Verarbeitet ein bereits existierendes Item basierend auf seinem aktuellen Status.
      *
+     * @param session Die Upload-Session
      * @param existing Das bereits vorhandene Item aus der Inbox
      * @param item Das neue Upload-Request Item
      * @param now Aktueller Zeitstempel
-     * @return BatchUploadResult mit entsprechendem Status (REUPLOADED/CONFLICT)
+     * @return BatchUploadResult mit entsprechendem Status (REUPLOADED/CONFLICT) oder INVALID, wenn ein größerer
+     *         Payload das Byte-Budget der Session überschreiten würde
      */
-    public BatchUploadResult processExistingItem(UploadInboxItem existing, ItemUploadRequest item, LocalDateTime now) {
+    public BatchUploadResult processExistingItem(UploadSession session, UploadInboxItem existing, ItemUploadRequest item, LocalDateTime now) {
 
         int seqNo = item.getSeqNo();
 
         return switch (existing.getStatus()) {
             case ERROR -> {
-                updateExistingItem(existing, item, now);
-                yield BatchUploadResult.builder()
-                        .seqNo(seqNo)
-                        .status(BatchUploadResultStatus.REUPLOADED)
-                        .build(); // Kein error bei REUPLOADED
+                String payload = serializePayload(item);
+                long payloadHash = hashPayload(payload);
+                BatchUploadResult mismatch = verifyManifest(existing.getUploadId(), seqNo, payloadHash);
+                if (mismatch != null) {
+                    yield mismatch;
+                }
+                BatchUploadResult updated = updateExistingItem(session, existing, item, payload, payloadHash, now);
+                yield updated != null
+                        ? updated
+                        : BatchUploadResult.builder()
+                                .seqNo(seqNo)
+                                .status(BatchUploadResultStatus.CONFLICT)
+                                .error(UploadErrorFactory.itemNotFinishedYet(seqNo))
+                                .build();
             }
             case PENDING, PROCESSING -> BatchUploadResult.builder()
                     .seqNo(seqNo)
@@ -62,15 +95,37 @@ public class UploadItemProcessor {
      * @param session Die Upload-Session
      * @param item Das Upload-Request Item
      * @param now Aktueller Zeitstempel
-     * @return BatchUploadResult mit Status ACCEPTED oder CONFLICT bei Race-Conditions
+     * @return BatchUploadResult mit Status ACCEPTED, CONFLICT bei Race-Conditions oder INVALID bei erschöpftem
+     *         Byte-Budget der Session bzw. Abweichung vom Hash-Manifest
      */
     public BatchUploadResult processNewItem(UploadSession session, ItemUploadRequest item, LocalDateTime now) {
         int seqNo = item.getSeqNo();
 
+        String payload = serializePayload(item);
+        // Einmal kodiert: der Hash und das Byte-Budget der Session beziehen sich beide auf die UTF-8 Bytes
+        byte[] utf8 = payload != null ? payload.getBytes(StandardCharsets.UTF_8) : null;
+        long payloadHash = utf8 != null ? XxHash64.hash(utf8) : 0L;
+        BatchUploadResult mismatch = verifyManifest(session.getUploadId(), seqNo, payloadHash);
+        if (mismatch != null) {
+            return mismatch;
+        }
+
+        long payloadBytes = utf8 != null ? utf8.length : 0;
+        if (!uploadSessionManager.reservePayloadBytes(session, payloadBytes)) {
+            return BatchUploadResult.builder()
+                    .seqNo(seqNo)
+                    .status(BatchUploadResultStatus.INVALID)
+                    .error(UploadErrorFactory.sessionBytesExceeded(seqNo, session.getUploadId(),
+                            limits.getMaxSessionBytes().toBytes()))
+                    .build();
+        }
+        String storedPayload = acquirePayload(payloadHash, payload);
+
         UploadInboxItem newUploadInboxItem = UploadInboxItem.builder()
                 .uploadId(session.getUploadId())
                 .seqNo(seqNo)
-                .payload(item.getPayload() != null ? item.getPayload().toString() : null)
+                .payload(storedPayload)
+                .payloadHash(payloadHash)
                 .status(UploadItemStatus.PENDING)
                 .createdAt(now)
                 .updatedAt(now)
@@ -78,11 +133,18 @@ public class UploadItemProcessor {
 
         boolean inserted = inboxItemRepository.saveIfAbsent(newUploadInboxItem);
         if (inserted) {
+            payloadAggregation.add(session.getUploadId(), item.getPayload());
+            watermarks.markReceived(session.getUploadId(), seqNo);
+            uploadSessionManager.itemStatusChanged(newUploadInboxItem, null);
+            changeFeed.itemChanged(InboxChangeType.ITEM_ACCEPTED, newUploadInboxItem); // vor offer: noch kein Claim möglich
+            inboxLeaseService.offer(newUploadInboxItem);
             return BatchUploadResult.builder()
                     .seqNo(seqNo)
                     .status(BatchUploadResultStatus.ACCEPTED)
                     .build();
         } else {
+            releasePayload(payloadHash, storedPayload);
+            uploadSessionManager.releasePayloadBytes(session, payloadBytes);
             return BatchUploadResult.builder()
                     .seqNo(seqNo)
                     .status(BatchUploadResultStatus.CONFLICT)
@@ -95,14 +157,16 @@ public class UploadItemProcessor {
      * Verarbeitet Item-Uploads in einer bereits versiegelten (SEALED) Session.
      * Erlaubt nur Re-Uploads von Items im ERROR-Status.
      *
+     * @param session Die versiegelte Upload-Session
      * @param item Das Upload-Request Item
      * @param existingItem Optional vorhandenes Item
-     * @param uploadId Die Upload-ID für Error-Messages
      * @param now Aktueller Zeitstempel
-     * @return BatchUploadResult mit Status REUPLOADED oder CONFLICT
+     * @return BatchUploadResult mit Status REUPLOADED, CONFLICT oder INVALID bei Abweichung vom Hash-Manifest
+     *         bzw. erschöpftem Byte-Budget der Session
      */
-    public BatchUploadResult processItemInSealedSession(ItemUploadRequest item, Optional<UploadInboxItem> existingItem, String uploadId, LocalDateTime now) {
+    public BatchUploadResult processItemInSealedSession(UploadSession session, ItemUploadRequest item, Optional<UploadInboxItem> existingItem, LocalDateTime now) {
         int seqNo = item.getSeqNo();
+        String uploadId = session.getUploadId();
 
         if (existingItem.isEmpty()) {
             return BatchUploadResult.builder()
@@ -114,11 +178,16 @@ public class UploadItemProcessor {
 
         UploadInboxItem existing = existingItem.get();
         if (existing.getStatus() == UploadItemStatus.ERROR) {
-            updateExistingItem(existing, item, now);
-            return BatchUploadResult.builder()
-                    .seqNo(seqNo)
-                    .status(BatchUploadResultStatus.REUPLOADED)
-                    .build(); // Kein error bei REUPLOADED
+            String payload = serializePayload(item);
+            long payloadHash = hashPayload(payload);
+            BatchUploadResult mismatch = verifyManifest(uploadId, seqNo, payloadHash);
+            if (mismatch != null) {
+                return mismatch;
+            }
+            BatchUploadResult updated = updateExistingItem(session, existing, item, payload, payloadHash, now);
+            if (updated != null) {
+                return updated;
+            }
         }
 
         return BatchUploadResult.builder()
@@ -128,10 +197,103 @@ public class UploadItemProcessor {
                 .build();
     }
 
-    private void updateExistingItem(UploadInboxItem existing, ItemUploadRequest item, LocalDateTime now) {
-        existing.setPayload(item.getPayload() != null ? item.getPayload().toString() : null);
-        existing.setStatus(UploadItemStatus.PENDING);
-        existing.setErrorMessage(null);
-        existing.setUpdatedAt(now);
+    /**
+     * Setzt ein ERROR-Item zurück auf PENDING. Ein byte-identischer Payload wird erkannt
+     * und nicht ersetzt, sodass der Payload-Speicher und die Kontrollsummen unverändert bleiben.
+     * Ein ausgelagerter Payload hält keine Referenz im Payload-Speicher; seine Kopie wird im Segment-Store freigegeben.
+     * Wächst der Payload, wird die Differenz im Byte-Budget der Session reserviert, schrumpft er, wird sie freigegeben.
+     *
+     * @return REUPLOADED, INVALID wenn das Byte-Budget der Session für den größeren Payload nicht reicht (das Item
+     *         bleibt dann ERROR), oder null, wenn ein paralleler Re-Upload das Item bereits zurückgesetzt hat
+     */
+    private BatchUploadResult updateExistingItem(UploadSession session, UploadInboxItem existing, ItemUploadRequest item,
+                                                 String payload, long payloadHash, LocalDateTime now) {
+        int seqNo = existing.getSeqNo();
+        synchronized (existing) {
+            if (existing.getStatus() != UploadItemStatus.ERROR) {
+                return null;
+            }
+
+            String replaced = existing.getPayload();
+            boolean payloadChanged = payloadHash != existing.getPayloadHash()
+                    || !Objects.equals(payload, replaced);
+
+            if (payloadChanged) {
+                SpilledPayload previousSpilled = existing.getSpilledPayload();
+                long previousBytes = previousSpilled != null ? previousSpilled.length() : utf8Length(replaced);
+                long delta = utf8Length(payload) - previousBytes;
+                if (delta > 0 && !uploadSessionManager.reservePayloadBytes(session, delta)) {
+                    return BatchUploadResult.builder()
+                            .seqNo(seqNo)
+                            .status(BatchUploadResultStatus.INVALID)
+                            .error(UploadErrorFactory.sessionBytesExceeded(seqNo, session.getUploadId(),
+                                    limits.getMaxSessionBytes().toBytes()))
+                            .build();
+                }
+
+                String previousPayload = existing.getResidentPayload();
+                long previousHash = existing.getPayloadHash();
+                existing.setPayload(acquirePayload(payloadHash, payload));
+                existing.setPayloadHash(payloadHash);
+                // Erst nach dem Austausch, sonst könnte ein Neuberechnen der Extremwerte den alten Wert wieder aufnehmen
+                payloadAggregation.replace(existing.getUploadId(), replaced, item.getPayload());
+                releasePayload(previousHash, previousPayload);
+                if (previousSpilled != null) {
+                    segmentStore.release(previousSpilled);
+                }
+                if (delta < 0) {
+                    uploadSessionManager.releasePayloadBytes(session, -delta);
+                }
+            }
+
+            existing.setStatus(UploadItemStatus.PENDING);
+            existing.setErrorMessage(null);
+            existing.setRetryCount(0);
+            existing.setUpdatedAt(now);
+            uploadSessionManager.itemStatusChanged(existing, UploadItemStatus.ERROR);
+            changeFeed.itemChanged(InboxChangeType.ITEM_REUPLOADED, existing);
+        }
+        inboxLeaseService.offer(existing);
+        return BatchUploadResult.builder()
+                .seqNo(seqNo)
+                .status(BatchUploadResultStatus.REUPLOADED)
+                .build(); // Kein error bei REUPLOADED
+    }
+
+    /**
+     * @return INVALID-Ergebnis, wenn das Manifest der Session für die seqNo einen anderen Hash erwartet, sonst null
+     */
+    private BatchUploadResult verifyManifest(String uploadId, int seqNo, long payloadHash) {
+        long expectedHash = manifests.expectedHash(uploadId, seqNo);
+        if (expectedHash == 0L || expectedHash == payloadHash) {
+            return null;
+        }
+        return BatchUploadResult.builder()
+                .seqNo(seqNo)
+                .status(BatchUploadResultStatus.INVALID)
+                .error(UploadErrorFactory.manifestMismatch(seqNo, expectedHash, payloadHash))
+                .build();
+    }
+
+    private static String serializePayload(ItemUploadRequest item) {
+        return item.getPayload() != null ? item.getPayload().toString() : null;
+    }
+
+    private static long utf8Length(String payload) {
+        return payload != null ? payload.getBytes(StandardCharsets.UTF_8).length : 0;
+    }
+
+    private static long hashPayload(String payload) {
+        return payload != null ? XxHash64.hash(payload) : 0L;
+    }
+
+    private String acquirePayload(long payloadHash, String payload) {
+        return payload != null ? payloadStore.acquire(payloadHash, payload) : null;
+    }
+
+    private void releasePayload(long payloadHash, String payload) {
+        if (payload != null) {
+            payloadStore.release(payloadHash, payload);
+        }
     }
 }
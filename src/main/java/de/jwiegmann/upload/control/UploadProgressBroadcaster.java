@@ -0,0 +1,219 @@
+package de.jwiegmann.upload.control;
+
+import de.jwiegmann.upload.boundary.dto.events.UploadProgressEvent;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.dto.UploadProgress;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Verteilt Fortschritts-Deltas einer Upload-Session an beliebig viele Subscriber (SSE).
+ * Änderungen markieren die Session nur als "dirty"; ein periodischer Flush liest den Fortschritt
+ * einmal pro Session und Tick aus den Statuszählern der Session und verteilt daraus je Subscriber ein
+ * zusammengefasstes Delta, höchstens einmal pro konfiguriertem Mindestintervall des Subscribers.
+ * Neue ERROR-Items meldet {@link UploadSessionManager#itemStatusChanged} direkt an die Subscriber.
+ * Gesendet wird je Subscriber auf einem eigenen virtuellen Thread; solange ein Event an einen langsamen Client
+ * noch unterwegs ist, wird dieser Subscriber übersprungen und bekommt danach den bis dahin aufgelaufenen Stand.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadProgressBroadcaster {
+
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+    private ExecutorService senders;
+
+    @Value("${upload.events.tick:PT0.1S}")
+    private Duration tick;
+
+    @PostConstruct
+    void start() {
+        senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("upload-progress-sender-", 0).factory());
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("upload-progress-flusher").daemon().factory());
+        flusher.scheduleWithFixedDelay(this::flush, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Registriert einen Subscriber für eine Session. Das erste Event enthält den vollständigen Stand.
+     *
+     * @param uploadId    Die beobachtete Session
+     * @param minInterval Mindestabstand zwischen zwei Events an diesen Subscriber
+     * @param listener    Empfänger der Deltas; wirft er eine Exception, wird der Subscriber entfernt
+     * @return Handle zum Abmelden
+     */
+    public Runnable subscribe(String uploadId, Duration minInterval, Consumer<UploadProgressEvent> listener) {
+        Subscriber subscriber = new Subscriber(minInterval.toNanos(), listener);
+        Channel channel = channels.compute(uploadId, (id, existing) -> {
+            Channel c = existing != null ? existing : new Channel();
+            c.subscribers.add(subscriber);
+            return c;
+        });
+        // Bereits fehlgeschlagene Items einmalig einlesen, spätere meldet itemFailed
+        for (UploadInboxItem item : inboxItemRepository.findMutable(uploadId)) {
+            if (item.getStatus() == UploadItemStatus.ERROR) {
+                subscriber.markFailed(item.getSeqNo());
+            }
+        }
+        channel.dirty = true; // initialen Stand beim nächsten Tick senden
+        return () -> unsubscribe(uploadId, subscriber);
+    }
+
+    /**
+     * Markiert eine Session als geändert. Kostet nichts, wenn niemand zuhört.
+     */
+    public void sessionChanged(String uploadId) {
+        Channel channel = channels.get(uploadId);
+        if (channel != null) {
+            channel.dirty = true;
+        }
+    }
+
+    /**
+     * Merkt ein neu auf ERROR gesetztes Item für das nächste Event aller Subscriber der Session vor.
+     */
+    public void itemFailed(String uploadId, int seqNo) {
+        Channel channel = channels.get(uploadId);
+        if (channel != null) {
+            channel.subscribers.forEach(subscriber -> subscriber.markFailed(seqNo));
+        }
+    }
+
+    private void unsubscribe(String uploadId, Subscriber subscriber) {
+        channels.computeIfPresent(uploadId, (id, channel) -> {
+            channel.subscribers.remove(subscriber);
+            return channel.subscribers.isEmpty() ? null : channel;
+        });
+    }
+
+    private void flush() {
+        long now = System.nanoTime();
+        channels.forEach((uploadId, channel) -> {
+            try {
+                if (channel.dirty) {
+                    channel.dirty = false;
+                    uploadSessionRepository.find(uploadId).ifPresent(session -> channel.latest = capture(session));
+                }
+                if (channel.latest != null) {
+                    for (Subscriber subscriber : channel.subscribers) {
+                        UploadProgressEvent event = subscriber.nextEvent(channel.latest, now);
+                        if (event != null) {
+                            senders.execute(() -> send(uploadId, subscriber, event));
+                        }
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("progress flush failed for upload {}", uploadId, e);
+            }
+        });
+    }
+
+    private void send(String uploadId, Subscriber subscriber, UploadProgressEvent event) {
+        try {
+            subscriber.listener.accept(event);
+        } catch (RuntimeException e) {
+            unsubscribe(uploadId, subscriber);
+        } finally {
+            subscriber.sending = false;
+        }
+    }
+
+    private static UploadProgress capture(UploadSession session) {
+        long version = session.getVersion();
+        return UploadProgress.of(session, version);
+    }
+
+    private static final class Channel {
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private volatile boolean dirty;
+        private volatile UploadProgress latest;
+    }
+
+    private static final class Subscriber {
+
+        private final long minIntervalNanos;
+        private final Consumer<UploadProgressEvent> listener;
+        private final BitSet newErrors = new BitSet();   // unter dem Monitor des Subscribers
+        private volatile boolean sending;
+        private UploadProgress lastSent;   // nur vom Flush-Thread verwendet
+        private long lastSentAt;
+
+        private Subscriber(long minIntervalNanos, Consumer<UploadProgressEvent> listener) {
+            this.minIntervalNanos = minIntervalNanos;
+            this.listener = listener;
+        }
+
+        private synchronized void markFailed(int seqNo) {
+            newErrors.set(seqNo);
+        }
+
+        /**
+         * Baut das Delta seit dem letzten Event, sofern eines fällig ist und kein vorheriges mehr gesendet wird.
+         *
+         * @return das zu sendende Event oder null
+         */
+        private UploadProgressEvent nextEvent(UploadProgress current, long now) {
+            if (sending || lastSent != null && (lastSent.getVersion() >= current.getVersion() || now - lastSentAt < minIntervalNanos)) {
+                return null;
+            }
+            BitSet errors;
+            synchronized (this) {
+                errors = (BitSet) newErrors.clone();
+                newErrors.clear();
+            }
+            UploadProgressEvent event = delta(lastSent, current, errors);
+            sending = true;
+            lastSent = current;
+            lastSentAt = now;
+            return event;
+        }
+
+        private static UploadProgressEvent delta(UploadProgress previous, UploadProgress current, BitSet newErrors) {
+            return UploadProgressEvent.builder()
+                    .uploadId(current.getUploadId())
+                    .version(current.getVersion())
+                    .uploadStatus(previous == null || previous.getStatus() != current.getStatus() ? current.getStatus().name() : null)
+                    .received(changed(previous == null ? null : previous.getReceived(), current.getReceived()))
+                    .pending(changed(previous == null ? null : previous.getPending(), current.getPending()))
+                    .processing(changed(previous == null ? null : previous.getProcessing(), current.getProcessing()))
+                    .done(changed(previous == null ? null : previous.getDone(), current.getDone()))
+                    .error(changed(previous == null ? null : previous.getError(), current.getError()))
+                    .newErrorSeq(newErrors.isEmpty() ? null : SequenceEncoding.toList(newErrors))
+                    .build();
+        }
+
+        private static Integer changed(Integer previous, int current) {
+            return Objects.equals(previous, current) ? null : current;
+        }
+    }
+}
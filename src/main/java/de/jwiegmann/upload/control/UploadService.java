@@ -3,20 +3,42 @@ package de.jwiegmann.upload.control;
 import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
 import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
 import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.batch.MultiSessionBatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.SessionBatchUploadRequest;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
 import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
 import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.manifest.UploadManifestResponse;
 import de.jwiegmann.upload.boundary.dto.status.*;
+import de.jwiegmann.upload.control.aggregation.PayloadAggregationService;
 import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.dto.UploadProgress;
 import de.jwiegmann.upload.control.dto.UploadValidationResult;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.manifest.UploadManifestRegistry;
 import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
 import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.telemetry.ServerTimings;
+import de.jwiegmann.upload.control.telemetry.UploadBatchEvent;
+import de.jwiegmann.upload.control.telemetry.UploadItemEvent;
+import de.jwiegmann.upload.control.telemetry.UploadStatusEvent;
+import de.jwiegmann.upload.control.validation.PayloadValidationService;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
+import de.jwiegmann.upload.control.watermark.CompletionWatermarkTracker;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Hauptservice für das phasenbasierte Upload-System mit Inbox Pattern.
@@ -29,20 +51,48 @@ public class UploadService {
     private final InMemoryUploadInboxItemRepository inboxItemRepository;
     private final UploadItemProcessor uploadItemProcessor;
     private final UploadSessionManager uploadSessionManager;
+    private final UploadSessionChangeTracker changeTracker;
+    private final PayloadValidationService payloadValidation;
+    private final PayloadAggregationService payloadAggregation;
+    private final CompletionWatermarkTracker watermarks;
+    private final UploadLimitsProperties limits;
+    private final InboxChangeFeed changeFeed;
+    private final UploadManifestRegistry manifests;
+
+    @Value("${upload.status.max-batch-ids:1000}")
+    private int maxBatchStatusIds;
+
+    @Value("${upload.max-sessions-per-request:100}")
+    private int maxSessionsPerRequest;
 
     public UploadService(InMemoryUploadSessionRepository uploadSessionRepository,
                          InMemoryUploadInboxItemRepository inboxItemRepository,
                          UploadItemProcessor uploadItemProcessor,
-                         UploadSessionManager uploadSessionManager) {
+                         UploadSessionManager uploadSessionManager,
+                         UploadSessionChangeTracker changeTracker,
+                         PayloadValidationService payloadValidation,
+                         PayloadAggregationService payloadAggregation,
+                         CompletionWatermarkTracker watermarks,
+                         UploadLimitsProperties limits,
+                         InboxChangeFeed changeFeed,
+                         UploadManifestRegistry manifests) {
         this.uploadSessionRepository = uploadSessionRepository;
         this.inboxItemRepository = inboxItemRepository;
         this.uploadItemProcessor = uploadItemProcessor;
         this.uploadSessionManager = uploadSessionManager;
+        this.changeTracker = changeTracker;
+        this.payloadValidation = payloadValidation;
+        this.payloadAggregation = payloadAggregation;
+        this.watermarks = watermarks;
+        this.limits = limits;
+        this.changeFeed = changeFeed;
+        this.manifests = manifests;
     }
 
     /**
      * Initialisiert eine neue Upload-Session für eine VSL-Nummer.
-     * Erstellt eine eindeutige uploadId und setzt Expiry-Zeit.
+     * Erstellt eine eindeutige uploadId und setzt Expiry-Zeit. Enthält der Request {@code payloadHashes},
+     * wird das Manifest vor der Session angelegt, sodass schon das erste Item dagegen geprüft wird.
      *
      * @param req Upload-Initialisierungs-Request mit VSL-Daten
      * @return Neue Upload-Session im ACTIVE Status
@@ -56,6 +106,9 @@ public class UploadService {
                 || req.getAnzahlDatensaetzeInsgesamt() <= 0) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid init payload");
         }
+        long[] manifest = req.getPayloadHashes() != null
+                ? parseManifest(req.getPayloadHashes(), req.getAnzahlDatensaetzeInsgesamt())
+                : null;
 
         // 2. Generiere uploadId und expire date
         String uploadId = UUID.randomUUID().toString();
@@ -74,12 +127,20 @@ public class UploadService {
                 .receivedCount(0)
                 .build();
 
-        return uploadSessionRepository.save(s);
+        if (manifest != null) {
+            manifests.register(uploadId, manifest);
+        }
+        UploadSession saved = uploadSessionRepository.save(s);
+        changeFeed.sessionChanged(saved);
+        return saved;
     }
 
     /**
      * Verarbeitet einen Batch von Upload-Items für eine bestehende Session.
      * Führt Validierungen durch und verarbeitet Items einzeln mit granularer Fehlerbehandlung.
+     * Payloads, die den für bewNr/vslNummer konfigurierten Regeln nicht genügen, werden vor dem
+     * Speichern als INVALID abgewiesen.
+     * Die Phasen (Validierung, Verarbeitung, Session-Update) werden als JFR-Event und Server-Timing erfasst.
      *
      * @param uploadId ID der Upload-Session
      * @param batch    Liste der zu verarbeitenden Items
@@ -88,6 +149,10 @@ public class UploadService {
      */
     public BatchUploadResponse uploadBatch(String uploadId, List<ItemUploadRequest> batch) {
 
+        UploadBatchEvent event = new UploadBatchEvent();
+        event.begin();
+        long started = System.nanoTime();
+
         UploadSession session = uploadSessionRepository.find(uploadId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
 
@@ -105,6 +170,10 @@ public class UploadService {
             return BatchUploadResponse.builder().uploadId(uploadId).results(allInvalid).build();
         }
 
+        // Payload-Regeln vorab (bei großen Batches parallel) prüfen
+        UploadError[] payloadErrors = payloadValidation.validate(session, batch);
+        long validated = System.nanoTime();
+
         // Item-by-Item Processing mit inline Validation
         List<BatchUploadResult> allResults = new ArrayList<>();
         Set<Integer> seenSeqNos = new HashSet<>();
@@ -112,7 +181,8 @@ public class UploadService {
         int newlyAccepted = 0;
         boolean anyChanged = false;
 
-        for (ItemUploadRequest item : batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            ItemUploadRequest item = batch.get(i);
             BatchUploadResult result;
 
             // 1. Duplikat-Check
@@ -133,10 +203,40 @@ public class UploadService {
                         .build();
             }
 
-            // 3. Normale Verarbeitung
+            // 3. Byte-/Tiefenlimit beim Einlesen verletzt, Payload wurde nicht eingelesen
+            else if (item.getPayloadRejection() != null) {
+                result = BatchUploadResult.builder()
+                        .seqNo(item.getSeqNo())
+                        .status(BatchUploadResultStatus.INVALID)
+                        .error(switch (item.getPayloadRejection()) {
+                            case TOO_LARGE -> UploadErrorFactory.payloadTooLarge(item.getSeqNo(), limits.getMaxItemBytes().toBytes());
+                            case TOO_DEEP -> UploadErrorFactory.payloadTooDeep(item.getSeqNo(), limits.getMaxDepth());
+                        })
+                        .build();
+            }
+
+            // 4. Payload-Regeln
+            else if (payloadErrors != null && payloadErrors[i] != null) {
+                result = BatchUploadResult.builder()
+                        .seqNo(item.getSeqNo())
+                        .status(BatchUploadResultStatus.INVALID)
+                        .error(payloadErrors[i])
+                        .build();
+            }
+
+            // 5. Normale Verarbeitung
             else {
                 seenSeqNos.add(item.getSeqNo()); // Merken für Duplikat-Check
+                UploadItemEvent itemEvent = new UploadItemEvent(); // standardmäßig aus, siehe UploadItemEvent
+                itemEvent.begin();
                 result = processSingleItem(session, item, now);
+                itemEvent.end();
+                if (itemEvent.shouldCommit()) {
+                    itemEvent.uploadId = uploadId;
+                    itemEvent.seqNo = item.getSeqNo();
+                    itemEvent.result = result.getStatus().name();
+                    itemEvent.commit();
+                }
 
                 if (result.getStatus() == BatchUploadResultStatus.ACCEPTED) {
                     newlyAccepted++;
@@ -148,11 +248,34 @@ public class UploadService {
 
             allResults.add(result);
         }
+        long processed = System.nanoTime();
 
         // Session updaten falls nötig
         if (anyChanged) {
             uploadSessionManager.updateAfterChanges(session, newlyAccepted, now);
         }
+        long updated = System.nanoTime();
+
+        ServerTimings.record("validate", validated - started);
+        ServerTimings.record("process", processed - validated);
+        ServerTimings.record("session", updated - processed);
+        event.end();
+        if (event.shouldCommit()) {
+            event.uploadId = uploadId;
+            event.batchSize = batch.size();
+            for (BatchUploadResult result : allResults) {
+                switch (result.getStatus()) {
+                    case ACCEPTED -> event.accepted++;
+                    case REUPLOADED -> event.reuploaded++;
+                    case CONFLICT -> event.conflict++;
+                    case INVALID -> event.invalid++;
+                }
+            }
+            event.validationDuration = validated - started;
+            event.processingDuration = processed - validated;
+            event.sessionUpdateDuration = updated - processed;
+            event.commit();
+        }
 
         return BatchUploadResponse.builder()
                 .uploadId(uploadId)
@@ -160,6 +283,60 @@ public class UploadService {
                 .build();
     }
 
+    /**
+     * Verarbeitet Batches für mehrere Upload-Sessions in einem Request.
+     * Jede Session läuft parallel durch {@link #uploadBatch}; Fehler einer Session (z.B. unbekannte uploadId)
+     * landen nur in deren Ergebnis und beeinflussen die übrigen Sessions nicht.
+     *
+     * @param sessions Items gruppiert nach uploadId, jede uploadId höchstens einmal
+     * @return Ein BatchUploadResponse je Session in Request-Reihenfolge
+     * @throws ResponseStatusException 400 bei leerem Request, zu vielen Sessions oder doppelter uploadId
+     */
+    public MultiSessionBatchUploadResponse uploadMultiSessionBatch(List<SessionBatchUploadRequest> sessions) {
+
+        if (sessions == null || sessions.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty request");
+        }
+        if (sessions.size() > maxSessionsPerRequest) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "too many sessions (max " + maxSessionsPerRequest + ")");
+        }
+        Set<String> uploadIds = new HashSet<>();
+        for (SessionBatchUploadRequest session : sessions) {
+            if (session.getUploadId() == null || !uploadIds.add(session.getUploadId())) {
+                // Gleiche Session zweimal parallel zu verarbeiten würde die Duplikat-Prüfung aushebeln
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "missing or duplicate uploadId in request");
+            }
+        }
+
+        // Server-Timing sammelt je Thread: Phasen der Pool-Threads erst nach dem Join auf dem Request-Thread addieren
+        List<ServerTimings.Captured<BatchUploadResponse>> captured = sessions.parallelStream()
+                .map(session -> ServerTimings.capture(() -> uploadSessionBatch(session)))
+                .toList();
+        List<BatchUploadResponse> responses = captured.stream()
+                .map(ServerTimings.Captured::recordAndGet)
+                .toList();
+
+        return MultiSessionBatchUploadResponse.builder()
+                .sessions(responses)
+                .build();
+    }
+
+    private BatchUploadResponse uploadSessionBatch(SessionBatchUploadRequest request) {
+        String uploadId = request.getUploadId();
+        try {
+            return uploadBatch(uploadId, request.getItems() != null ? request.getItems() : List.of());
+        } catch (ResponseStatusException e) {
+            UploadError error = e.getStatusCode() == HttpStatus.NOT_FOUND
+                    ? UploadErrorFactory.uploadNotFound(uploadId)
+                    : UploadErrorFactory.validationFailed(e.getReason());
+            return BatchUploadResponse.builder()
+                    .uploadId(uploadId)
+                    .results(List.of())
+                    .error(error)
+                    .build();
+        }
+    }
+
     /**
      * Liefert detaillierten Status einer Upload-Session inkl. Fortschritt und Diagnose-Daten.
      *
@@ -168,10 +345,171 @@ public class UploadService {
      * @throws ResponseStatusException wenn uploadId nicht existiert
      */
     public UploadStatusResponse getStatus(String uploadId) {
+        return getStatus(uploadId, SequenceFormat.LIST);
+    }
+
+    /**
+     * Liefert detaillierten Status einer Upload-Session mit wählbarer Darstellung der Sequenzen.
+     *
+     * @param uploadId ID der Upload-Session
+     * @param format   Darstellung der missing/error Sequenzen (Liste, Bereiche oder Bitmap)
+     * @return UploadStatusResponse mit Statistiken und fehlenden/fehlerhaften Sequenzen
+     * @throws ResponseStatusException wenn uploadId nicht existiert
+     */
+    public UploadStatusResponse getStatus(String uploadId, SequenceFormat format) {
         UploadSession s = uploadSessionRepository.find(uploadId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
-        List<UploadInboxItem> items = inboxItemRepository.findAll(uploadId);
-        return buildStatusResponse(s, items);
+        return buildStatusResponse(s, format);
+    }
+
+    /**
+     * Liest Items einer Upload-Session aufsteigend nach seqNo ab {@code fromSeqNo}, optional gefiltert nach Status.
+     * Die Items werden nicht kopiert, sondern beim Konsumieren des Streams direkt aus dem Store gelesen.
+     *
+     * @param uploadId  ID der Upload-Session
+     * @param fromSeqNo Erste zu liefernde seqNo (Cursor)
+     * @param status    Optionaler Status-Filter, null für alle
+     * @return Schwach konsistenter, sortierter Stream der Items
+     * @throws ResponseStatusException wenn uploadId nicht existiert
+     */
+    public Stream<UploadInboxItem> streamItems(String uploadId, int fromSeqNo, UploadItemStatus status) {
+        uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        Stream<UploadInboxItem> items = inboxItemRepository.streamOrdered(uploadId, Math.max(fromSeqNo, 1));
+        return status == null ? items : items.filter(i -> i.getStatus() == status);
+    }
+
+    /**
+     * Liest den fertigen Anfang einer Upload-Session ab {@code fromSeqNo}: nur Items bis zur Watermark, also ohne
+     * Lücken davor. Die Watermark wird beim Aufruf einmal gelesen; später nachrückende Items liefert der nächste
+     * Aufruf ab dem zurückgegebenen Cursor.
+     *
+     * @param uploadId  ID der Upload-Session
+     * @param fromSeqNo Erste zu liefernde seqNo (Cursor)
+     * @param done      true: bis zur DONE-Watermark, false: bis zur Empfangs-Watermark
+     * @return Sortierter Stream der Items fromSeqNo..Watermark
+     * @throws ResponseStatusException wenn uploadId nicht existiert
+     */
+    public Stream<UploadInboxItem> streamReadyPrefix(String uploadId, int fromSeqNo, boolean done) {
+        Stream<UploadInboxItem> items = streamItems(uploadId, fromSeqNo, null);
+        int watermark = done ? watermarks.doneWatermark(uploadId) : watermarks.receivedWatermark(uploadId);
+        return items.takeWhile(i -> i.getSeqNo() <= watermark);
+    }
+
+    /**
+     * Registriert das Hash-Manifest einer Session oder ersetzt ein vorhandenes. Der Body enthält je seqNo
+     * 1..expectedCount den xxHash64 des Payloads als 8 Byte Big-Endian, 0 für seqNos ohne Hash.
+     * Ab der Registrierung werden angenommene und erneut hochgeladene Items gegen das Manifest geprüft.
+     *
+     * @param uploadId ID der Upload-Session
+     * @param body     Genau expectedCount * 8 Bytes
+     * @return Anzahl Hashes sowie verifizierte und abweichende bereits gespeicherte Items
+     * @throws ResponseStatusException 404 wenn uploadId nicht existiert, 409 wenn die Session nicht mehr offen ist,
+     *                                 400 bei falscher Länge des Bodys
+     */
+    public UploadManifestResponse registerManifest(String uploadId, InputStream body) throws IOException {
+        UploadSession s = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        if (s.getStatus() != UploadSessionStatus.ACTIVE && s.getStatus() != UploadSessionStatus.SEALED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "upload session is not open");
+        }
+
+        // Nie mehr als expectedCount Hashes lesen, der Body ist damit ohne weiteres Limit begrenzt
+        long[] hashes = new long[s.getExpectedCount()];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+        try {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = in.readLong();
+            }
+        } catch (EOFException e) {
+            throw invalidManifestLength(s.getExpectedCount());
+        }
+        if (in.read() != -1) {
+            throw invalidManifestLength(s.getExpectedCount());
+        }
+        manifests.register(uploadId, hashes);
+        changeTracker.markChanged(s);
+
+        int withHash = 0;
+        for (long hash : hashes) {
+            if (hash != 0L) {
+                withHash++;
+            }
+        }
+        int[] counts = new int[2]; // [0] = verifiziert, [1] = abweichend
+        inboxItemRepository.streamMetadata(uploadId).forEach(item -> {
+            long expectedHash = hashes[item.seqNo() - 1];
+            if (expectedHash != 0L) {
+                counts[expectedHash == item.payloadHash() ? 0 : 1]++;
+            }
+        });
+
+        return UploadManifestResponse.builder()
+                .uploadId(uploadId)
+                .hashes(withHash)
+                .verified(counts[0])
+                .mismatched(counts[1])
+                .build();
+    }
+
+    /**
+     * Liefert in einem Aufruf, welche Items einer Session angekommen und gegen ihr Manifest verifiziert sind.
+     * Zwei Bitmaps zu je ceil(expectedCount / 8) Bytes hintereinander, Bit i (LSB zuerst) steht für seqNo i+1:
+     * zuerst die Empfangs-Bitmap, dann die Verifikations-Bitmap (Hash entspricht dem Manifest). Ein Client muss
+     * danach nur die seqNos ohne Empfangs-Bit senden; ein Empfangs-Bit ohne Verifikations-Bit bei vorhandenem
+     * Manifest-Hash zeigt ein abweichend gespeichertes Item. Eine beendete Session hat ihr Manifest verworfen;
+     * eine leere Verifikations-Bitmap wäre dort nicht von abweichenden Items zu unterscheiden, daher 409.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Beide Bitmaps, auch ohne Manifest (dann ist die zweite leer)
+     * @throws ResponseStatusException wenn uploadId nicht existiert oder die Session beendet ist
+     */
+    public byte[] getManifestBitmap(String uploadId) {
+        UploadSession s = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        if (s.getStatus().isEnded()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "upload session already ended");
+        }
+        int bitmapBytes = (s.getExpectedCount() + 7) >>> 3;
+        long[] hashes = manifests.find(uploadId).orElse(null);
+
+        byte[] bitmaps = new byte[2 * bitmapBytes];
+        inboxItemRepository.streamMetadata(uploadId).forEach(item -> {
+            int bit = item.seqNo() - 1;
+            bitmaps[bit >>> 3] |= (byte) (1 << (bit & 7));
+            if (hashes != null && hashes[bit] != 0L && hashes[bit] == item.payloadHash()) {
+                bitmaps[bitmapBytes + (bit >>> 3)] |= (byte) (1 << (bit & 7));
+            }
+        });
+        return bitmaps;
+    }
+
+    /**
+     * Liefert die aktuelle Version einer Upload-Session, ohne den Status zu berechnen.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Aktuelle Session-Version
+     * @throws ResponseStatusException wenn uploadId nicht existiert
+     */
+    public long getVersion(String uploadId) {
+        return uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"))
+                .getVersion();
+    }
+
+    /**
+     * Wartet (Long-Poll), bis sich die Upload-Session gegenüber {@code sinceVersion} geändert hat.
+     *
+     * @param uploadId     ID der Upload-Session
+     * @param sinceVersion Zuletzt bekannte Version des Clients
+     * @param timeout      Maximale Wartezeit
+     * @return Aktuelle Version nach Änderung oder Timeout
+     * @throws ResponseStatusException wenn uploadId nicht existiert
+     */
+    public long awaitChange(String uploadId, long sinceVersion, Duration timeout) {
+        UploadSession s = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        return changeTracker.awaitChange(s, sinceVersion, timeout);
     }
 
     /**
@@ -180,10 +518,20 @@ public class UploadService {
      * @return UploadStatusListResponse mit Liste aller Upload-Sessions und deren Fortschritt
      */
     public UploadStatusListResponse getAllStatus() {
+        return getAllStatus(SequenceFormat.LIST);
+    }
+
+    /**
+     * Liefert Übersicht über alle Upload-Sessions mit wählbarer Darstellung der Sequenzen.
+     *
+     * @param format Darstellung der missing/error Sequenzen
+     * @return UploadStatusListResponse mit Liste aller Upload-Sessions und deren Fortschritt
+     */
+    public UploadStatusListResponse getAllStatus(SequenceFormat format) {
 
         List<UploadSession> sessions = uploadSessionRepository.findAll();
         List<UploadStatusResponse> items = sessions.stream()
-                .map(s -> buildStatusResponse(s, inboxItemRepository.findAll(s.getUploadId())))
+                .map(s -> buildStatusResponse(s, format))
                 .toList();
 
         return UploadStatusListResponse.builder()
@@ -193,42 +541,132 @@ public class UploadService {
     }
 
     /**
-     * Erstellt Status-Response mit Statistiken aus Session und Items.
-     * Berechnet pending/processing/done/error Counts und identifiziert fehlende Sequenzen.
+     * Liefert den Status mehrerer Upload-Sessions in einem Aufruf. Die Sessions werden parallel berechnet.
+     *
+     * @param uploadIds IDs der Upload-Sessions, Duplikate werden zusammengefasst
+     * @param format    Darstellung der missing/error Sequenzen, NONE für reine Zähler
+     * @return Status je gefundener Session in Request-Reihenfolge sowie die unbekannten uploadIds
+     * @throws ResponseStatusException 400 bei leerer oder zu langer Liste
      */
-    private UploadStatusResponse buildStatusResponse(UploadSession s, List<UploadInboxItem> items) {
-        int expected = s.getExpectedCount();
-        int received = items.size();
-
-        int pending = (int) items.stream().filter(i -> i.getStatus() == UploadItemStatus.PENDING).count();
-        int processing = (int) items.stream().filter(i -> i.getStatus() == UploadItemStatus.PROCESSING).count();
-        int done = (int) items.stream().filter(i -> i.getStatus() == UploadItemStatus.DONE).count();
-        int error = (int) items.stream().filter(i -> i.getStatus() == UploadItemStatus.ERROR).count();
-
-        Set<Integer> present = items.stream().map(UploadInboxItem::getSeqNo).collect(java.util.stream.Collectors.toSet());
-        List<Integer> missing = new java.util.ArrayList<>();
-        for (int i = 1; i <= expected; i++) {
-            if (!present.contains(i)) missing.add(i);
+    public UploadStatusBatchResponse getStatuses(List<String> uploadIds, SequenceFormat format) {
+
+        if (uploadIds == null || uploadIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "uploadIds must not be empty");
+        }
+        if (uploadIds.size() > maxBatchStatusIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "too many uploadIds (max " + maxBatchStatusIds + ")");
         }
 
-        List<Integer> errorSeq = items.stream()
-                .filter(i -> i.getStatus() == UploadItemStatus.ERROR)
-                .map(UploadInboxItem::getSeqNo)
-                .sorted()
+        List<String> distinct = uploadIds.stream().distinct().toList();
+        List<ServerTimings.Captured<Optional<UploadStatusResponse>>> captured = distinct.parallelStream()
+                .map(id -> ServerTimings.capture(() -> uploadSessionRepository.find(id).map(s -> buildStatusResponse(s, format))))
                 .toList();
+        List<Optional<UploadStatusResponse>> statuses = captured.stream()
+                .map(ServerTimings.Captured::recordAndGet)
+                .toList();
+
+        List<UploadStatusResponse> items = new ArrayList<>(distinct.size());
+        List<String> notFound = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i++) {
+            if (statuses.get(i).isPresent()) {
+                items.add(statuses.get(i).get());
+            } else {
+                notFound.add(distinct.get(i));
+            }
+        }
+
+        return UploadStatusBatchResponse.builder()
+                .items(items)
+                .notFound(notFound)
+                .build();
+    }
 
-        return UploadStatusResponse.builder()
+    /**
+     * Erstellt Status-Response aus Zählern und Sequenzmengen der Session, ohne die Items zu lesen.
+     * Fehlende Sequenzen ergeben sich als Komplement der Empfangs-Bitmap; für NONE genügen die Zähler.
+     * Die Version wird vor den Zählern gelesen, damit ein ETag nie einen neueren Stand behauptet.
+     */
+    private UploadStatusResponse buildStatusResponse(UploadSession s, SequenceFormat format) {
+        UploadStatusEvent event = new UploadStatusEvent();
+        event.begin();
+        long started = System.nanoTime();
+
+        long version = s.getVersion();
+        UploadProgress progress = format == SequenceFormat.NONE
+                ? UploadProgress.of(s, version)
+                : UploadProgress.withSequences(s, version);
+
+        int expected = progress.getExpected();
+        BitSet errorSeqs = progress.getErrorSeqs();
+        BitSet missingSeqs = format == SequenceFormat.NONE
+                ? new BitSet()
+                : SequenceEncoding.complement(progress.getPresentSeqs(), expected);
+
+        UploadStatusResponse.UploadStatusResponseBuilder response = UploadStatusResponse.builder()
                 .uploadId(s.getUploadId())
-                .uploadStatus(s.getStatus().name())
+                .uploadStatus(progress.getStatus().name())
+                .version(version)
                 .expected(expected)
-                .received(received)
-                .pending(pending)
-                .processing(processing)
-                .done(done)
-                .error(error)
-                .missingSequence(missing)
-                .errorSequence(errorSeq)
-                .build();
+                .received(progress.getReceived())
+                .pending(progress.getPending())
+                .processing(progress.getProcessing())
+                .done(progress.getDone())
+                .error(progress.getError())
+                .receivedWatermark(watermarks.receivedWatermark(s.getUploadId()))
+                .doneWatermark(watermarks.doneWatermark(s.getUploadId()))
+                .aggregates(payloadAggregation.snapshot(s.getUploadId()));
+
+        switch (format) {
+            case LIST -> response
+                    .missingSequence(SequenceEncoding.toList(missingSeqs))
+                    .errorSequence(SequenceEncoding.toList(errorSeqs));
+            case RANGES -> response
+                    .missingRanges(SequenceEncoding.toRanges(missingSeqs))
+                    .errorRanges(SequenceEncoding.toRanges(errorSeqs));
+            case BITMAP -> response
+                    .missingBitmap(SequenceEncoding.toBitmap(missingSeqs, expected))
+                    .errorBitmap(SequenceEncoding.toBitmap(errorSeqs, expected));
+            case NONE -> {
+            }
+        }
+
+        UploadStatusResponse status = response.build();
+        ServerTimings.record("status", System.nanoTime() - started);
+        event.end();
+        if (event.shouldCommit()) {
+            event.uploadId = s.getUploadId();
+            event.itemCount = progress.getReceived();
+            event.format = format.name();
+            event.commit();
+        }
+        return status;
+    }
+
+    /**
+     * Liest das Manifest aus dem Init-Request: ein Hex-Hash je seqNo, null oder leer für seqNos ohne Hash.
+     */
+    private static long[] parseManifest(List<String> payloadHashes, int expectedCount) {
+        if (payloadHashes.size() != expectedCount) {
+            throw invalidManifestLength(expectedCount);
+        }
+        long[] hashes = new long[expectedCount];
+        for (int i = 0; i < expectedCount; i++) {
+            String hash = payloadHashes.get(i);
+            if (hash == null || hash.isBlank()) {
+                continue;
+            }
+            try {
+                hashes[i] = Long.parseUnsignedLong(hash.trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid payload hash for seqNo " + (i + 1));
+            }
+        }
+        return hashes;
+    }
+
+    private static ResponseStatusException invalidManifestLength(int expectedCount) {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "manifest must contain exactly " + expectedCount + " hashes");
     }
 
     /**
@@ -252,12 +690,12 @@ public class UploadService {
 
         // 3. Handling für item uploads im SEALED zustand
         if (session.getStatus() == UploadSessionStatus.SEALED) {
-            return uploadItemProcessor.processItemInSealedSession(item, existingItem, session.getUploadId(), now);
+            return uploadItemProcessor.processItemInSealedSession(session, item, existingItem, now);
         }
 
         // 4. Normales handling für neue items
         if (existingItem.isPresent()) {
-            return uploadItemProcessor.processExistingItem(existingItem.get(), item, now);
+            return uploadItemProcessor.processExistingItem(session, existingItem.get(), item, now);
         } else {
             return uploadItemProcessor.processNewItem(session, item, now);
         }
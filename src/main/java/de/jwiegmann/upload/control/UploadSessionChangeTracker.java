@@ -0,0 +1,119 @@
+package de.jwiegmann.upload.control;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Führt die Versionsnummer je Upload-Session und benachrichtigt wartende Long-Poll-Requests.
+ * Jede Änderung an Session oder Items erhöht die Version monoton.
+ * Die Version wird atomar ohne Monitor erhöht, wartende Threads blockieren auf einem CompletableFuture,
+ * damit virtuelle Threads dabei nicht an ihren Carrier-Thread gebunden werden. Ein Signal je Session existiert nur,
+ * solange jemand darauf wartet; der letzte Wartende entfernt es wieder.
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadSessionChangeTracker {
+
+    private final UploadProgressBroadcaster progressBroadcaster;
+
+    private final Map<String, ChangeSignal> nextChange = new ConcurrentHashMap<>();
+
+    @Value("${upload.status.max-long-poll:PT60S}")
+    private Duration maxLongPoll;
+
+    /**
+     * Erhöht die Version der Session, weckt alle Requests, die auf eine Änderung warten,
+     * und stößt den Fortschritts-Stream der Session an.
+     *
+     * @param session Die geänderte Session
+     * @return Die neue Version
+     */
+    public long markChanged(UploadSession session) {
+        long version = session.incrementVersion();
+
+        ChangeSignal waiting = nextChange.remove(session.getUploadId());
+        if (waiting != null) {
+            waiting.future.complete(version);
+        }
+        progressBroadcaster.sessionChanged(session.getUploadId());
+        return version;
+    }
+
+    /**
+     * Wartet, bis die Version der Session größer als {@code sinceVersion} ist oder das Timeout abläuft.
+     *
+     * @param session      Die beobachtete Session
+     * @param sinceVersion Zuletzt bekannte Version des Clients
+     * @param timeout      Maximale Wartezeit (begrenzt durch upload.status.max-long-poll)
+     * @return Die aktuelle Version nach Änderung oder Timeout
+     */
+    public long awaitChange(UploadSession session, long sinceVersion, Duration timeout) {
+
+        Duration effective = timeout.compareTo(maxLongPoll) > 0 ? maxLongPoll : timeout;
+        long deadline = System.nanoTime() + effective.toNanos();
+
+        while (true) {
+            // Erst registrieren, dann Version lesen – sonst kann eine Änderung verloren gehen
+            ChangeSignal signal = register(session.getUploadId());
+            try {
+                long current = session.getVersion();
+                if (current > sinceVersion) {
+                    return current;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return current;
+                }
+
+                signal.future.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return session.getVersion();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return session.getVersion();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("change signal failed", e);
+            } finally {
+                unregister(session.getUploadId(), signal);
+            }
+        }
+    }
+
+    /**
+     * Anzahl Sessions, auf deren nächste Änderung gerade jemand wartet.
+     */
+    int waitingSessions() {
+        return nextChange.size();
+    }
+
+    private ChangeSignal register(String uploadId) {
+        return nextChange.compute(uploadId, (id, signal) -> {
+            ChangeSignal registered = signal != null ? signal : new ChangeSignal();
+            registered.waiters++;
+            return registered;
+        });
+    }
+
+    private void unregister(String uploadId, ChangeSignal signal) {
+        // Bereits von markChanged entfernte oder ersetzte Signale bleiben unberührt
+        nextChange.computeIfPresent(uploadId, (id, current) ->
+                current == signal && --current.waiters == 0 ? null : current);
+    }
+
+    private static final class ChangeSignal {
+
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private int waiters;   // nur innerhalb von compute() verändert
+    }
+}
@@ -0,0 +1,11 @@
+package de.jwiegmann.upload.control;
+
+/**
+ * Komponente mit Zustand je Session, die ihn verwirft, sobald die Session endet (COMPLETED oder ABORTED).
+ * Wird vom {@link UploadSessionManager} genau einmal je Session aufgerufen, außerhalb des Session-Monitors.
+ */
+@FunctionalInterface
+public interface UploadSessionEndListener {
+
+    void sessionEnded(String uploadId);
+}
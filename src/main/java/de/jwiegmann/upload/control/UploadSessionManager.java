@@ -4,9 +4,13 @@ import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
 import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
 import de.jwiegmann.upload.boundary.dto.init.UploadSession;
 import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
 import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
 import de.jwiegmann.upload.control.dto.UploadValidationResult;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
 import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -24,6 +28,11 @@ import java.util.List;
 public class UploadSessionManager {
 
     private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final UploadSessionChangeTracker changeTracker;
+    private final UploadLimitsProperties limits;
+    private final InboxChangeFeed changeFeed;
+    private final UploadProgressBroadcaster progressBroadcaster;
+    private final List<UploadSessionEndListener> endListeners;
 
     @Value("${upload.session.idle-timeout:PT2H}")
     private Duration sessionIdleTimeout;
@@ -33,7 +42,7 @@ public class UploadSessionManager {
 
     /**
      * Aktualisiert Session nach erfolgreichen Item-Uploads.
-     * Erhöht receivedCount, prüft Auto-Sealing und erneuert Expiry-Zeit.
+     * Erhöht receivedCount, prüft Auto-Sealing und Abschluss, erneuert Expiry-Zeit und erhöht die Session-Version.
      *
      * @param session       Die zu aktualisierende Session
      * @param newlyAccepted Anzahl neu akzeptierter Items
@@ -41,22 +50,121 @@ public class UploadSessionManager {
      */
     public void updateAfterChanges(UploadSession session, int newlyAccepted, LocalDateTime now) {
 
-        if (newlyAccepted > 0) {
-            session.setReceivedCount(session.getReceivedCount() + newlyAccepted);
+        boolean ended;
+        // Parallele Batches derselben Session dürfen sich beim Hochzählen nicht überschreiben
+        synchronized (session) {
+            if (newlyAccepted > 0) {
+                session.setReceivedCount(session.getReceivedCount() + newlyAccepted);
+            }
+
+            ended = advanceStatus(session);
+            session.setExpiresAt(now.plus(sessionIdleTimeout));
+            uploadSessionRepository.save(session);
+        }
+        changeTracker.markChanged(session);
+        if (ended) {
+            sessionEnded(session);
+        }
+    }
+
+    /**
+     * Aktualisiert Session nach Bestätigungen durch Worker.
+     * Erhöht doneCount und schließt die Session ab, sobald sie versiegelt ist und alle Items DONE sind.
+     *
+     * @param session   Die zu aktualisierende Session
+     * @param newlyDone Anzahl neu als DONE bestätigter Items
+     */
+    public void updateAfterProcessing(UploadSession session, int newlyDone) {
+
+        boolean ended;
+        synchronized (session) {
+            session.setDoneCount(session.getDoneCount() + newlyDone);
+            ended = advanceStatus(session);
+            uploadSessionRepository.save(session);
+        }
+        changeTracker.markChanged(session);
+        if (ended) {
+            sessionEnded(session);
         }
+    }
 
+    /**
+     * Schaltet den Session-Status anhand der Zähler weiter: ACTIVE → SEALED, sobald alle Items angenommen sind,
+     * SEALED → COMPLETED, sobald alle DONE sind. Beide Übergänge können in einem Aufruf erfolgen, weil Items schon
+     * vor dem Versiegeln geclaimt und bestätigt werden können. Muss unter dem Monitor der Session aufgerufen werden.
+     *
+     * @return true, wenn die Session damit abgeschlossen wurde
+     */
+    private boolean advanceStatus(UploadSession session) {
         if (session.getStatus() == UploadSessionStatus.ACTIVE
                 && session.getReceivedCount() >= session.getExpectedCount()) {
             session.setStatus(UploadSessionStatus.SEALED);
+            changeFeed.sessionChanged(session);
+        }
+        if (session.getStatus() == UploadSessionStatus.SEALED
+                && session.getDoneCount() >= session.getExpectedCount()) {
+            session.setStatus(UploadSessionStatus.COMPLETED);
+            changeFeed.sessionChanged(session);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lässt die Komponenten mit Zustand je Session diesen verwerfen. Wird genau einmal je Session aufgerufen,
+     * vom Thread, der sie nach COMPLETED oder ABORTED geschaltet hat.
+     */
+    private void sessionEnded(UploadSession session) {
+        for (UploadSessionEndListener listener : endListeners) {
+            listener.sessionEnded(session.getUploadId());
+        }
+    }
+
+    /**
+     * Zählt einen Statuswechsel eines Items in den Statuszählern und Sequenzmengen seiner Session und meldet neue ERROR-Items
+     * an die Fortschritts-Subscriber. Unter dem Monitor des Items oder vor dessen Bereitstellung für Claims
+     * aufzurufen, damit die Zähler dieselbe Reihenfolge der Übergänge sehen wie das Item.
+     *
+     * @param item     Das Item mit seinem neuen Status
+     * @param previous Bisheriger Status, null für ein neu angenommenes Item
+     */
+    public void itemStatusChanged(UploadInboxItem item, UploadItemStatus previous) {
+        uploadSessionRepository.find(item.getUploadId())
+                .ifPresent(session -> session.countItemTransition(item.getSeqNo(), previous, item.getStatus()));
+        if (item.getStatus() == UploadItemStatus.ERROR) {
+            progressBroadcaster.itemFailed(item.getUploadId(), item.getSeqNo());
+        }
+    }
+
+    /**
+     * Reserviert Platz im Byte-Budget der Session für einen neuen Payload.
+     *
+     * @param session Die Session
+     * @param bytes   Größe des Payloads
+     * @return false, wenn das Budget (upload.limits.max-session-bytes) damit überschritten würde
+     */
+    public boolean reservePayloadBytes(UploadSession session, long bytes) {
+        synchronized (session) {
+            if (session.getPayloadBytes() + bytes > limits.getMaxSessionBytes().toBytes()) {
+                return false;
+            }
+            session.setPayloadBytes(session.getPayloadBytes() + bytes);
+            return true;
         }
+    }
 
-        session.setExpiresAt(now.plus(sessionIdleTimeout));
-        uploadSessionRepository.save(session);
+    /**
+     * Gibt eine Reservierung zurück, deren Item doch nicht gespeichert wurde.
+     */
+    public void releasePayloadBytes(UploadSession session, long bytes) {
+        synchronized (session) {
+            session.setPayloadBytes(session.getPayloadBytes() - bytes);
+        }
     }
 
     /**
      * Validiert Session-Level-Constraints vor Batch-Verarbeitung.
-     * Prüft Expiry, Batch-Größe und markiert abgelaufene Sessions als ABORTED.
+     * Prüft Expiry, Batch-Größe und markiert abgelaufene ACTIVE/SEALED Sessions als ABORTED.
      *
      * @param session Die zu validierende Session
      * @param items   Der Batch von Items
@@ -66,8 +174,19 @@ public class UploadSessionManager {
 
         // Expiry prüfen
         if (session.getExpiresAt() != null && LocalDateTime.now().isAfter(session.getExpiresAt())) {
-            session.setStatus(UploadSessionStatus.ABORTED);
-            uploadSessionRepository.save(session);
+            boolean aborted = false;
+            synchronized (session) {
+                if (!session.getStatus().isEnded()) { // COMPLETED bleibt COMPLETED, ABORTED ist es schon
+                    aborted = true;
+                    session.setStatus(UploadSessionStatus.ABORTED);
+                    changeFeed.sessionChanged(session);
+                    uploadSessionRepository.save(session);
+                }
+            }
+            if (aborted) {
+                changeTracker.markChanged(session);
+                sessionEnded(session);
+            }
             return UploadValidationResult.invalid("upload session expired");
         }
 
@@ -0,0 +1,30 @@
+package de.jwiegmann.upload.control.aggregation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Konfiguration der Kontrollsummen je Session über numerische Payload-Felder.
+ * <pre>
+ * upload.aggregation.fields:
+ *   - name: betrag              # Schlüssel in der Status-Response
+ *     field: /betrag            # JSON Pointer in den Payload
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.aggregation")
+public class PayloadAggregationProperties {
+
+    private List<Field> fields = new ArrayList<>();
+
+    @Data
+    public static class Field {
+        private String name;
+        private String field;
+    }
+}
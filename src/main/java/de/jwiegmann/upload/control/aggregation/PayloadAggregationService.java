@@ -0,0 +1,176 @@
+package de.jwiegmann.upload.control.aggregation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.boundary.dto.status.PayloadAggregate;
+import de.jwiegmann.upload.control.UploadSessionEndListener;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Führt je Session Kontrollsummen (Anzahl, Summe, Minimum, Maximum) über die konfigurierten Payload-Felder.
+ * Die Summen werden beim Annehmen und beim Re-Upload eines Items fortgeschrieben (der ersetzte Payload wird
+ * abgezogen), sodass die Status-Response sie ohne Durchlauf über alle Payloads liefert. Nur wenn ein ersetzter
+ * Wert Minimum oder Maximum war, werden diese beim nächsten Lesen einmal aus den gespeicherten Payloads ermittelt.
+ * Mit dem Ende einer Session werden ihre Summen einmal als unveränderlicher Endstand festgehalten und der
+ * veränderliche Zustand verworfen; Abfragen danach liefern den Endstand ohne Durchlauf über die Payloads.
+ */
+@Component
+@RequiredArgsConstructor
+public class PayloadAggregationService implements UploadSessionEndListener {
+
+    private final PayloadAggregationProperties properties;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, SessionAggregates> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, PayloadAggregate>> endedSessions = new ConcurrentHashMap<>();
+
+    private final List<String> names = new ArrayList<>();
+    private final List<JsonPointer> pointers = new ArrayList<>();
+
+    @PostConstruct
+    void compileFields() {
+        for (PayloadAggregationProperties.Field field : properties.getFields()) {
+            if (names.contains(field.getName())) {
+                throw new IllegalStateException("duplicate aggregation field " + field.getName());
+            }
+            names.add(field.getName());
+            pointers.add(JsonPointer.compile(field.getField()));
+        }
+    }
+
+    /**
+     * Rechnet den Payload eines neu angenommenen Items ein.
+     */
+    public void add(String uploadId, JsonNode payload) {
+        if (pointers.isEmpty()) {
+            return;
+        }
+        aggregatesOf(uploadId).add(values(payload));
+    }
+
+    /**
+     * Ersetzt den Beitrag eines erneut hochgeladenen Items. Erst nach dem Austausch des Payloads am Item
+     * aufzurufen, damit ein Neuberechnen der Extremwerte den ersetzten Wert nicht wieder aufnimmt.
+     *
+     * @param previousPayload Bisher gespeicherter Payload (serialisiert), null wenn keiner vorhanden war
+     * @param payload         Neuer Payload
+     */
+    public void replace(String uploadId, String previousPayload, JsonNode payload) {
+        if (pointers.isEmpty()) {
+            return;
+        }
+        SessionAggregates aggregates = aggregatesOf(uploadId);
+        synchronized (aggregates) {
+            aggregates.remove(values(parse(previousPayload)));
+            aggregates.add(values(payload));
+        }
+    }
+
+    /**
+     * Liefert die Kontrollsummen einer Session je Feldname, null wenn keine Felder konfiguriert sind.
+     */
+    public Map<String, PayloadAggregate> snapshot(String uploadId) {
+        if (pointers.isEmpty()) {
+            return null;
+        }
+        Map<String, PayloadAggregate> ended = endedSessions.get(uploadId);
+        return ended != null ? ended : compute(uploadId);
+    }
+
+    private Map<String, PayloadAggregate> compute(String uploadId) {
+        SessionAggregates aggregates = sessions.get(uploadId);
+        if (aggregates == null) {
+            aggregates = aggregate(uploadId); // noch keine Items angenommen
+        }
+        Map<String, PayloadAggregate> snapshot = new LinkedHashMap<>();
+        synchronized (aggregates) {
+            if (aggregates.extremesStale()) {
+                // Parallel angenommene Items warten hier; ob der Scan sie schon sieht, ist für Min/Max egal
+                aggregates.resetExtremes();
+                try (Stream<UploadInboxItem> items = inboxItemRepository.streamOrdered(uploadId, 1)) {
+                    items.forEach(item -> aggregates.includeExtremes(values(parse(item.getPayload()))));
+                }
+            }
+            for (int i = 0; i < names.size(); i++) {
+                snapshot.put(names.get(i), aggregates.snapshot(i));
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Berechnet die Kontrollsummen einer Session vollständig aus ihren gespeicherten Payloads neu,
+     * etwa nach dem Wiederherstellen der Items aus einem Snapshot beim Start.
+     */
+    public void rebuild(String uploadId) {
+        if (pointers.isEmpty()) {
+            return;
+        }
+        sessions.put(uploadId, aggregate(uploadId));
+    }
+
+    /**
+     * Hält den Endstand fest, bevor der veränderliche Zustand verworfen wird; eine beendete Session nimmt
+     * keine Items mehr an, der Endstand ändert sich also nicht mehr.
+     */
+    @Override
+    public void sessionEnded(String uploadId) {
+        if (pointers.isEmpty()) {
+            return;
+        }
+        endedSessions.put(uploadId, Collections.unmodifiableMap(compute(uploadId)));
+        sessions.remove(uploadId);
+    }
+
+    private SessionAggregates aggregate(String uploadId) {
+        SessionAggregates aggregates = new SessionAggregates(pointers.size());
+        try (Stream<UploadInboxItem> items = inboxItemRepository.streamAll(uploadId)) {
+            items.forEach(item -> aggregates.add(values(parse(item.getPayload()))));
+        }
+        return aggregates;
+    }
+
+    private SessionAggregates aggregatesOf(String uploadId) {
+        return sessions.computeIfAbsent(uploadId, id -> new SessionAggregates(pointers.size()));
+    }
+
+    private BigDecimal[] values(JsonNode payload) {
+        BigDecimal[] values = new BigDecimal[pointers.size()];
+        if (payload != null) {
+            for (int i = 0; i < values.length; i++) {
+                JsonNode value = payload.at(pointers.get(i));
+                if (value.isNumber()) {
+                    values[i] = value.decimalValue();
+                }
+            }
+        }
+        return values;
+    }
+
+    private JsonNode parse(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("stored payload is not valid JSON", e);
+        }
+    }
+}
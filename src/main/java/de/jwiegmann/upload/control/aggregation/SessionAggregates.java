@@ -0,0 +1,93 @@
+package de.jwiegmann.upload.control.aggregation;
+
+import de.jwiegmann.upload.boundary.dto.status.PayloadAggregate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Laufende Kontrollsummen einer Session, ein Eintrag je konfiguriertem Feld.
+ * Anzahl und Summe werden beim Ersetzen eines Payloads exakt zurückgerechnet. Minimum und Maximum lassen sich
+ * nicht zurückrechnen: Fällt ein entfernter Wert auf ein Extremum, gelten sie als veraltet, bis sie neu aus den
+ * gespeicherten Payloads ermittelt wurden ({@link #resetExtremes()} und erneutes {@link #includeExtremes}).
+ * Alle Methoden laufen unter dem Monitor des Objekts.
+ */
+final class SessionAggregates {
+
+    private final long[] counts;
+    private final BigDecimal[] sums;
+    private final BigDecimal[] mins;
+    private final BigDecimal[] maxs;
+    private boolean extremesStale;
+
+    SessionAggregates(int fields) {
+        this.counts = new long[fields];
+        this.sums = new BigDecimal[fields];
+        this.mins = new BigDecimal[fields];
+        this.maxs = new BigDecimal[fields];
+        Arrays.fill(sums, BigDecimal.ZERO);
+    }
+
+    /**
+     * @param values Wert je Feld, null wenn der Payload dort keine Zahl enthält
+     */
+    synchronized void add(BigDecimal[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                counts[i]++;
+                sums[i] = sums[i].add(values[i]);
+            }
+        }
+        includeExtremes(values);
+    }
+
+    synchronized void remove(BigDecimal[] values) {
+        for (int i = 0; i < values.length; i++) {
+            BigDecimal value = values[i];
+            if (value != null) {
+                counts[i]--;
+                sums[i] = sums[i].subtract(value);
+                if (mins[i] == null || value.compareTo(mins[i]) == 0 || value.compareTo(maxs[i]) == 0) {
+                    extremesStale = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Nimmt Werte nur in Minimum/Maximum auf; mehrfaches Aufnehmen desselben Items ist daher unschädlich.
+     */
+    synchronized void includeExtremes(BigDecimal[] values) {
+        for (int i = 0; i < values.length; i++) {
+            BigDecimal value = values[i];
+            if (value != null) {
+                if (mins[i] == null || value.compareTo(mins[i]) < 0) {
+                    mins[i] = value;
+                }
+                if (maxs[i] == null || value.compareTo(maxs[i]) > 0) {
+                    maxs[i] = value;
+                }
+            }
+        }
+    }
+
+    synchronized boolean extremesStale() {
+        return extremesStale;
+    }
+
+    synchronized void resetExtremes() {
+        Arrays.fill(mins, null);
+        Arrays.fill(maxs, null);
+        extremesStale = false;
+    }
+
+    synchronized PayloadAggregate snapshot(int field) {
+        boolean empty = counts[field] == 0;
+        return PayloadAggregate.builder()
+                .count(counts[field])
+                .sum(sums[field])
+                .min(empty ? null : mins[field])
+                .max(empty ? null : maxs[field])
+                .build();
+    }
+}
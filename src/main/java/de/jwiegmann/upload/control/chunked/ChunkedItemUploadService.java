@@ -0,0 +1,285 @@
+package de.jwiegmann.upload.control.chunked;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.chunked.ChunkedUploadStatus;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
+import de.jwiegmann.upload.control.UploadErrorFactory;
+import de.jwiegmann.upload.control.UploadService;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.validation.UploadLimitsProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stückweiser Upload einzelner, sehr großer Items über Content-Range.
+ * Chunks werden per NIO in eine temporäre Spool-Datei je (uploadId, seqNo) geschrieben. Ein Chunk muss
+ * an der bereits lückenlos empfangenen Position beginnen (Überlappungen werden übersprungen), sodass
+ * Clients nach einem Abbruch ab dem gemeldeten Offset fortsetzen können. Liegen alle Bytes vor, wird
+ * der Payload geparst und über den normalen Batch-Pfad atomar als PENDING-Item übernommen.
+ * Statt upload.limits.max-item-bytes gilt hier upload.chunked.max-item-bytes; Tiefenlimit und Byte-Budget
+ * der Session greifen wie im Batch-Upload.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChunkedItemUploadService {
+
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final UploadService uploadService;
+    private final ObjectMapper objectMapper;
+    private final UploadLimitsProperties limits;
+
+    private final Map<String, Spool> spools = new ConcurrentHashMap<>();
+
+    @Value("${upload.chunked.dir:${java.io.tmpdir}/upload-chunks}")
+    private Path spoolDir;
+
+    @Value("${upload.chunked.max-item-bytes:104857600}")
+    private long maxItemBytes;
+
+    @Value("${upload.chunked.spool-ttl:PT2H}")
+    private Duration spoolTtl;
+
+    private JsonFactory payloadFactory;
+
+    @PostConstruct
+    void init() {
+        // Bricht schon beim Parsen ab, statt einen zu tief verschachtelten Baum erst aufzubauen
+        payloadFactory = objectMapper.getFactory().copy();
+        payloadFactory.setStreamReadConstraints(StreamReadConstraints.builder()
+                .maxNestingDepth(limits.getMaxDepth())
+                .build());
+    }
+
+    /**
+     * Liefert den Fortschritt eines stückweisen Uploads (für {@code Content-Range: bytes *}{@code /total}).
+     */
+    public ChunkedUploadStatus status(String uploadId, int seqNo, long totalBytes) {
+        validateTarget(uploadId, seqNo, totalBytes);
+        Spool spool = spools.get(key(uploadId, seqNo));
+        long received = spool != null && spool.totalBytes == totalBytes ? spool.received : 0;
+        return progress(uploadId, seqNo, received, totalBytes);
+    }
+
+    /**
+     * Schreibt einen Chunk in die Spool-Datei und übernimmt das Item, sobald es vollständig ist.
+     *
+     * @param uploadId   ID der Upload-Session
+     * @param seqNo      Sequenznummer des Items
+     * @param start      Erstes Byte des Chunks (inklusive)
+     * @param end        Letztes Byte des Chunks (inklusive)
+     * @param totalBytes Gesamtgröße des Payloads
+     * @param body       Request-Body mit genau den Bytes start..end
+     * @return Fortschritt; bei vollständigem Upload inkl. Ergebnis der Übernahme
+     * @throws ResponseStatusException 404 bei unbekannter uploadId, 400 bei ungültiger seqNo/Range,
+     *                                 413 bei zu großem Payload, 409 wenn der Chunk nicht am empfangenen Offset anschließt
+     */
+    public ChunkedUploadStatus appendChunk(String uploadId, int seqNo, long start, long end, long totalBytes, InputStream body) {
+
+        validateTarget(uploadId, seqNo, totalBytes);
+        if (start < 0 || end < start || end >= totalBytes) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid Content-Range");
+        }
+        evictAbandonedSpools();
+
+        String key = key(uploadId, seqNo);
+        Spool spool = spools.computeIfAbsent(key, k -> Spool.create(spoolDir, k, totalBytes));
+
+        spool.lock.lock();
+        try {
+            if (spool.closed) {
+                // Parallel abgeschlossen oder verworfen → mit frischem Spool erneut versuchen
+                return appendChunk(uploadId, seqNo, start, end, totalBytes, body);
+            }
+            if (spool.totalBytes != totalBytes) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "total size differs from running upload (" + spool.totalBytes + ")");
+            }
+            if (start > spool.received) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "chunk must start at offset " + spool.received);
+            }
+
+            spool.append(start, end, body);
+
+            if (spool.received < totalBytes) {
+                return progress(uploadId, seqNo, spool.received, totalBytes);
+            }
+
+            ChunkedUploadStatus committed = progress(uploadId, seqNo, totalBytes, totalBytes);
+            committed.setResult(commit(uploadId, seqNo, spool));
+            discard(key, spool);
+            return committed;
+        } catch (IOException e) {
+            discard(key, spool);
+            throw new UncheckedIOException("chunk spooling failed for " + key, e);
+        } finally {
+            spool.lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void cleanup() {
+        spools.forEach(this::discard);
+    }
+
+    private BatchUploadResult commit(String uploadId, int seqNo, Spool spool) throws IOException {
+        ItemUploadRequest item;
+        try (InputStream in = Channels.newInputStream(spool.channel.position(0));
+             JsonParser parser = payloadFactory.createParser(in)) {
+            JsonNode payload = objectMapper.readTree(parser);
+            item = ItemUploadRequest.builder().seqNo(seqNo).payload(payload).build();
+        } catch (StreamConstraintsException e) {
+            // Wie im Batch-Upload als PAYLOAD_TOO_DEEP über den Batch-Pfad melden
+            item = ItemUploadRequest.builder().seqNo(seqNo).payloadRejection(ItemUploadRequest.PayloadRejection.TOO_DEEP).build();
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            return BatchUploadResult.builder()
+                    .seqNo(seqNo)
+                    .status(BatchUploadResultStatus.INVALID)
+                    .error(UploadErrorFactory.invalidPayload(seqNo, "", e.getOriginalMessage()))
+                    .build();
+        }
+
+        return uploadService.uploadBatch(uploadId, List.of(item)).getResults().getFirst();
+    }
+
+    private void validateTarget(String uploadId, int seqNo, long totalBytes) {
+        UploadSession session = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        if (seqNo < 1 || seqNo > session.getExpectedCount()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "seqNo out of range (1.." + session.getExpectedCount() + ")");
+        }
+        if (totalBytes <= 0 || totalBytes > maxItemBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "item size must be within 1.." + maxItemBytes + " bytes");
+        }
+    }
+
+    private void evictAbandonedSpools() {
+        long deadline = System.nanoTime() - spoolTtl.toNanos();
+        spools.forEach((key, spool) -> {
+            if (spool.lastTouched - deadline < 0 && spool.lock.tryLock()) {
+                try {
+                    discard(key, spool);
+                } finally {
+                    spool.lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void discard(String key, Spool spool) {
+        spools.remove(key, spool);
+        spool.close();
+    }
+
+    private static ChunkedUploadStatus progress(String uploadId, int seqNo, long received, long total) {
+        return ChunkedUploadStatus.builder()
+                .uploadId(uploadId)
+                .seqNo(seqNo)
+                .receivedBytes(received)
+                .totalBytes(total)
+                .build();
+    }
+
+    private static String key(String uploadId, int seqNo) {
+        return uploadId + "-" + seqNo;
+    }
+
+    /**
+     * Temporäre Datei eines laufenden Uploads. Zugriff nur unter {@link #lock}.
+     */
+    private static final class Spool {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Path file;
+        private final FileChannel channel;
+        private final long totalBytes;
+        private long received;
+        private volatile long lastTouched = System.nanoTime();
+        private boolean closed;
+
+        private Spool(Path file, FileChannel channel, long totalBytes) {
+            this.file = file;
+            this.channel = channel;
+            this.totalBytes = totalBytes;
+        }
+
+        private static Spool create(Path dir, String key, long totalBytes) {
+            try {
+                Files.createDirectories(dir);
+                Path file = Files.createTempFile(dir, key, ".part");
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                return new Spool(file, channel, totalBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot create spool file", e);
+            }
+        }
+
+        /**
+         * Überträgt den Chunk per transferFrom in die Datei; bereits empfangene Bytes werden übersprungen.
+         */
+        private void append(long start, long end, InputStream body) throws IOException {
+            ReadableByteChannel source = Channels.newChannel(body);
+            skip(source, received - start);
+
+            long remaining = end + 1 - received;
+            while (remaining > 0) {
+                long transferred = channel.transferFrom(source, received, remaining);
+                if (transferred <= 0) {
+                    break; // Body kürzer als angekündigt – Client setzt ab received fort
+                }
+                received += transferred;
+                remaining -= transferred;
+            }
+            lastTouched = System.nanoTime();
+        }
+
+        private static void skip(ReadableByteChannel source, long bytes) throws IOException {
+            ByteBuffer scratch = ByteBuffer.allocate(8192);
+            while (bytes > 0) {
+                scratch.clear().limit((int) Math.min(scratch.capacity(), bytes));
+                int read = source.read(scratch);
+                if (read < 0) {
+                    return;
+                }
+                bytes -= read;
+            }
+        }
+
+        private void close() {
+            closed = true;
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // temporäre Datei, Aufräumen ist best effort
+            }
+        }
+    }
+}
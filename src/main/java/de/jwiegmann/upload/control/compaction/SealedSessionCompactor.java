@@ -0,0 +1,74 @@
+package de.jwiegmann.upload.control.compaction;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.payload.PayloadSpiller;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kompaktiert abgeschlossene Sessions im Hintergrund: Die DONE-Items einer COMPLETED Session werden einmal
+ * in eine unveränderliche, spaltenweise gepackte Struktur überführt, ihre Payloads zuvor in Segment-Files
+ * ausgelagert. Ein Lauf findet danach keine veränderlichen Items mehr vor, die Spalten werden also nicht
+ * bei jedem Lauf neu kopiert. {@link #compact} packt auf Anfrage auch die DONE-Items einer offenen Session.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SealedSessionCompactor {
+
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final PayloadSpiller payloadSpiller;
+
+    private ScheduledExecutorService compactor;
+
+    @Value("${upload.compaction.interval:PT30S}")
+    private Duration interval;
+
+    @PostConstruct
+    void start() {
+        compactor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("sealed-session-compactor").daemon().factory());
+        compactor.scheduleWithFixedDelay(this::compactCompletedSessions, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        compactor.shutdownNow();
+    }
+
+    /**
+     * Lagert die Heap-Payloads einer Session aus und packt danach ihre DONE-Items.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Anzahl neu gepackter Items
+     */
+    public int compact(String uploadId) {
+        payloadSpiller.spillSession(uploadId);
+        return inboxItemRepository.compact(uploadId).size();
+    }
+
+    void compactCompletedSessions() {
+        for (UploadSession session : uploadSessionRepository.findAll()) {
+            if (session.getStatus() != UploadSessionStatus.COMPLETED) {
+                continue;
+            }
+            try {
+                compact(session.getUploadId());
+            } catch (Throwable e) { // ein Error darf den Scheduler nicht beenden, sonst endet jede weitere Kompaktierung
+                log.warn("compaction failed for upload {}", session.getUploadId(), e);
+            }
+        }
+    }
+}
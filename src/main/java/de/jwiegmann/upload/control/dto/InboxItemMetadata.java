@@ -0,0 +1,19 @@
+package de.jwiegmann.upload.control.dto;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+
+/**
+ * Metadaten eines Inbox-Items ohne Payload. Für Durchläufe, die nur seqNo, Status oder Hash brauchen:
+ * kompaktierte Items liefern sie direkt aus ihren Spalten, ohne ein Item-Objekt zu bauen oder den Payload
+ * zu dekodieren.
+ *
+ * @param seqNo       Sequenznummer
+ * @param status      Status des Items
+ * @param payloadHash xxHash64 des Payloads, 0 ohne Payload
+ */
+public record InboxItemMetadata(int seqNo, UploadItemStatus status, long payloadHash) {
+
+    public static InboxItemMetadata of(UploadInboxItem item) {
+        return new InboxItemMetadata(item.getSeqNo(), item.getStatus(), item.getPayloadHash());
+    }
+}
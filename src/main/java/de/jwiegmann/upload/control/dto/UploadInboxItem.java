@@ -1,16 +1,24 @@
 package de.jwiegmann.upload.control.dto;
 
 import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.payload.SpilledPayload;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
 /**
  * Ein einzelner Datensatz innerhalb einer UploadSession.
  * Identifiziert über (uploadId, sequenceNumber).
+ * Der Payload liegt entweder auf dem Heap oder wurde in ein Segment-File ausgelagert;
+ * {@link #getPayload()} lädt ihn in diesem Fall transparent nach. Beide Felder werden nur unter dem Monitor
+ * des Items gewechselt und gehen nicht in toString/equals/hashCode ein (die über den Hash vergleichen).
  */
 @Data
 @Builder
@@ -20,9 +28,67 @@ public class UploadInboxItem {
 
     private String uploadId;
     private int seqNo;                // laufende Nummer 1..expectedCount
-    private String payload;           // JSON-Blob als String im PoC
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile String payload;  // JSON-Blob als String im PoC, null wenn ausgelagert
+    private long payloadHash;         // xxHash64 der Payload-Bytes (UTF-8)
     private UploadItemStatus status;  // PENDING, PROCESSING, DONE, ERROR
     private String errorMessage;      // optional, wenn ERROR
+    private int retryCount;           // serverseitige Retries seit dem letzten Upload
+    private String leaseId;           // nur während PROCESSING, vergeben beim Claim
+    private LocalDateTime leaseExpiresAt;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile SpilledPayload spilledPayload;  // gesetzt, solange der Payload ausgelagert ist
+
+    public String getPayload() {
+        String resident = payload;
+        if (resident != null) {
+            return resident;
+        }
+        SpilledPayload spilled = spilledPayload;
+        if (spilled == null) {
+            // Beide leer gelesen: entweder gibt es keinen Payload, oder setPayload()/spill() liefen zwischen
+            // den Lesezugriffen. Unter dem Monitor, unter dem beide wechseln, ist der Stand konsistent.
+            synchronized (this) {
+                resident = payload;
+                spilled = spilledPayload;
+            }
+            if (resident != null) {
+                return resident;
+            }
+        }
+        return spilled != null ? spilled.load() : null;
+    }
+
+    /**
+     * Ersetzt den Payload; eine bisherige ausgelagerte Kopie muss der Aufrufer im Segment-Store freigeben.
+     */
+    public void setPayload(String payload) {
+        this.payload = payload;
+        this.spilledPayload = null;
+    }
+
+    /**
+     * @return der Payload, falls er auf dem Heap liegt, sonst null (ohne nachzuladen)
+     */
+    public String getResidentPayload() {
+        return payload;
+    }
+
+    public boolean isSpilled() {
+        return spilledPayload != null;
+    }
+
+    /**
+     * Ersetzt den Heap-Payload durch die Referenz auf seine ausgelagerte Kopie.
+     */
+    public void spill(SpilledPayload spilled) {
+        this.spilledPayload = spilled;
+        this.payload = null;
+    }
 }
@@ -0,0 +1,65 @@
+package de.jwiegmann.upload.control.dto;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import lombok.Getter;
+
+import java.util.BitSet;
+
+/**
+ * Momentaufnahme des Fortschritts einer Upload-Session.
+ * Zähler und Sequenzmengen (Bit n = seqNo n) werden aus der Session übernommen, ohne die Items zu lesen;
+ * die Sequenzmengen nur auf Wunsch, da sie mit der Größe der Session wachsen.
+ */
+@Getter
+public class UploadProgress {
+
+    private final String uploadId;
+    private final long version;
+    private final UploadSessionStatus status;
+    private final int expected;
+    private final int received;
+    private final int pending;
+    private final int processing;
+    private final int done;
+    private final int error;
+    private final BitSet presentSeqs;
+    private final BitSet errorSeqs;
+
+    private UploadProgress(UploadSession session, long version, BitSet presentSeqs, BitSet errorSeqs) {
+        this.uploadId = session.getUploadId();
+        this.version = version;
+        this.status = session.getStatus();
+        this.expected = session.getExpectedCount();
+        this.received = session.getReceivedCount();
+        this.pending = session.getPendingCount();
+        this.processing = session.getProcessingCount();
+        this.done = session.getDoneCount();
+        this.error = session.getErrorCount();
+        this.presentSeqs = presentSeqs;
+        this.errorSeqs = errorSeqs;
+    }
+
+    /**
+     * Fortschritt aus den Zählern der Session, ohne die Items zu lesen. Die Sequenzmengen bleiben leer.
+     *
+     * @param session Die Session
+     * @param version Session-Version, gelesen <em>bevor</em> die Zähler gelesen wurden
+     */
+    public static UploadProgress of(UploadSession session, long version) {
+        return new UploadProgress(session, version, new BitSet(), new BitSet());
+    }
+
+    /**
+     * Fortschritt aus den Zählern und Sequenzmengen der Session, ohne die Items zu lesen.
+     *
+     * @param session Die Session
+     * @param version Session-Version, gelesen <em>bevor</em> Zähler und Sequenzmengen gelesen wurden
+     */
+    public static UploadProgress withSequences(UploadSession session, long version) {
+        BitSet presentSeqs = new BitSet(session.getExpectedCount() + 1);
+        BitSet errorSeqs = new BitSet();
+        session.copySequences(presentSeqs, errorSeqs);
+        return new UploadProgress(session, version, presentSeqs, errorSeqs);
+    }
+}
@@ -0,0 +1,248 @@
+package de.jwiegmann.upload.control.export;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exportiert die Payloads einer abgeschlossenen Upload-Session in seqNo-Reihenfolge als NDJSON-Datei.
+ * Die Items werden direkt aus dem sortierten Inbox-Store gestreamt, ohne die Session im Speicher
+ * zu materialisieren. Die Datei wird je Session-Version einmal erzeugt und danach wiederverwendet.
+ * Jede Auslieferung hält die Datei über ein {@link ExportFile} offen; veraltete Versionen werden erst gelöscht,
+ * wenn ihr letzter Leser fertig ist.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NEWLINE = '\n';
+
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+
+    // Export-Datei → laufende Erzeugung; der Eintrag wird nach Abschluss entfernt
+    private final Map<Path, CompletableFuture<Void>> creating = new ConcurrentHashMap<>();
+    // Export-Datei → Anzahl laufender Auslieferungen, ohne Eintrag für ungelesene Dateien
+    private final Map<Path, Integer> readers = new ConcurrentHashMap<>();
+
+    @Value("${upload.export.dir:${java.io.tmpdir}/upload-exports}")
+    private Path exportDir;
+
+    /**
+     * Liefert die Export-Datei der Session und erzeugt sie bei Bedarf. Die Datei bleibt bestehen, bis das
+     * zurückgegebene Handle geschlossen ist, auch wenn inzwischen eine neuere Version exportiert wurde.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Handle auf die NDJSON-Datei (eine Zeile pro Item, aufsteigend nach seqNo), nach dem Senden zu schließen
+     * @throws ResponseStatusException 404 wenn uploadId nicht existiert,
+     *                                 409 wenn die Session nicht SEALED/COMPLETED ist oder Items noch nicht DONE sind
+     */
+    public ExportFile export(String uploadId) {
+
+        UploadSession session = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+
+        if (session.getStatus() != UploadSessionStatus.SEALED && session.getStatus() != UploadSessionStatus.COMPLETED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "upload session not sealed");
+        }
+
+        while (true) {
+            Path target = fileFor(session);
+            ExportFile export = acquire(uploadId, target);
+            if (Files.exists(target)) {
+                return export;
+            }
+            export.close();
+            create(session, target);
+        }
+    }
+
+    /**
+     * Erzeugt die Datei genau einmal; parallele Aufrufe für dieselbe Datei warten auf das Ergebnis.
+     */
+    private void create(UploadSession session, Path target) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> running = creating.putIfAbsent(target, created);
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            return;
+        }
+
+        try {
+            if (!Files.exists(target)) {
+                Files.createDirectories(exportDir);
+                Path tmp = Files.createTempFile(exportDir, session.getUploadId(), ".tmp");
+                try {
+                    writeOrdered(session, tmp);
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                deleteOutdatedExports(session.getUploadId(), target);
+            }
+            created.complete(null);
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("export failed for upload " + session.getUploadId(), e);
+            created.completeExceptionally(failure);
+            throw failure;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            creating.remove(target);
+        }
+    }
+
+    /**
+     * Schreibt die Payloads lückenlos von 1..expectedCount; bricht ab, sobald ein Item fehlt oder nicht DONE ist.
+     */
+    private void writeOrdered(UploadSession session, Path file) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        int nextSeqNo = 1;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Iterator<UploadInboxItem> items = inboxItemRepository.streamOrdered(session.getUploadId(), 1).iterator();
+            while (items.hasNext()) {
+                UploadInboxItem item = items.next();
+                if (item.getSeqNo() != nextSeqNo || item.getStatus() != UploadItemStatus.DONE) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT, "export not ready: seqNo " + nextSeqNo + " not DONE");
+                }
+
+                // Ein Item ohne Payload wird als JSON-Literal null exportiert, damit Zeile n weiterhin seqNo n ist
+                String payload = item.getPayload();
+                byte[] line = (payload != null ? payload : "null").getBytes(StandardCharsets.UTF_8);
+                if (line.length + 1 > buffer.remaining()) {
+                    drain(buffer, channel);
+                }
+                if (line.length + 1 > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(line), channel);
+                } else {
+                    buffer.put(line);
+                }
+                buffer.put(NEWLINE);
+                nextSeqNo++;
+            }
+
+            if (nextSeqNo - 1 != session.getExpectedCount()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "export not ready: seqNo " + nextSeqNo + " missing");
+            }
+            drain(buffer, channel);
+        }
+    }
+
+    private void deleteOutdatedExports(String uploadId, Path current) throws IOException {
+        try (DirectoryStream<Path> outdated = Files.newDirectoryStream(exportDir, uploadId + "-v*.ndjson")) {
+            for (Path file : outdated) {
+                if (!file.equals(current)) {
+                    readers.compute(file, (f, count) -> {
+                        if (count == null) {
+                            deleteQuietly(f); // sonst löscht der letzte Leser
+                        }
+                        return count;
+                    });
+                }
+            }
+        }
+    }
+
+    private Path fileFor(UploadSession session) {
+        return exportDir.resolve(session.getUploadId() + "-v" + session.getVersion() + ".ndjson");
+    }
+
+    private ExportFile acquire(String uploadId, Path file) {
+        readers.merge(file, 1, Integer::sum);
+        return new ExportFile(uploadId, file);
+    }
+
+    private void release(String uploadId, Path file) {
+        Path current = uploadSessionRepository.find(uploadId).map(this::fileFor).orElse(null);
+        readers.compute(file, (f, count) -> {
+            if (count != null && count > 1) {
+                return count - 1;
+            }
+            if (!f.equals(current)) {
+                deleteQuietly(f); // veraltet und nun ungelesen
+            }
+            return null;
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("could not delete outdated export {}", file, e);
+        }
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        writeFully(buffer, channel);
+        buffer.clear();
+    }
+
+    private static void writeFully(ByteBuffer buffer, FileChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Eine Export-Datei während ihrer Auslieferung; solange das Handle offen ist, wird sie nicht gelöscht.
+     */
+    public final class ExportFile implements AutoCloseable {
+
+        private final String uploadId;
+        private final Path file;
+        private boolean closed;
+
+        private ExportFile(String uploadId, Path file) {
+            this.uploadId = uploadId;
+            this.file = file;
+        }
+
+        public Path file() {
+            return file;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(uploadId, file);
+            }
+        }
+    }
+}
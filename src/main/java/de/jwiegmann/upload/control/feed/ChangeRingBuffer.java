@@ -0,0 +1,93 @@
+package de.jwiegmann.upload.control.feed;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Lock-freier Broadcast-Ringpuffer für viele Produzenten und beliebig viele Konsumenten mit eigenem Cursor.
+ * Produzenten reservieren eine Sequenz per {@code getAndIncrement} und veröffentlichen den Slot über
+ * {@code published} (seq + 1 = lesbar, -(seq + 1) = wird gerade geschrieben). Produzenten warten nie auf
+ * Konsumenten: ein zu langsamer Konsument wird überholt und erkennt das an einer neueren Sequenz im Slot.
+ * Lesen ist ein Seqlock: Slot-Sequenz vor und nach dem Lesen des Werts muss übereinstimmen.
+ * Die Kapazität wird auf die nächste Zweierpotenz aufgerundet.
+ */
+final class ChangeRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray published;
+    private final int size;
+    private final int mask;
+    private final long start;
+    private final AtomicLong next;
+
+    /**
+     * @param capacity Anzahl Slots
+     * @param start    Erste zu vergebende Sequenz (nach einem Neustart die Fortsetzung des Durable Tails)
+     */
+    ChangeRingBuffer(int capacity, long start) {
+        this.size = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(capacity, 2) - 1));
+        this.slots = new AtomicReferenceArray<>(size);
+        this.published = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.start = start;
+        this.next = new AtomicLong(start);
+    }
+
+    /**
+     * Reserviert die nächste Sequenz und veröffentlicht den dafür erzeugten Wert.
+     *
+     * @param factory Erzeugt den Wert zur reservierten Sequenz
+     * @return die vergebene Sequenz
+     */
+    long publish(LongFunction<T> factory) {
+        long seq = next.getAndIncrement();
+        int index = (int) seq & mask;
+        T value = factory.apply(seq);
+
+        // Der Produzent der Vorrunde desselben Slots muss fertig sein, sonst überschreibt er uns.
+        // yield statt Spinnen: er kann ein verdrängter (virtueller) Thread auf demselben Carrier sein
+        long previous = seq - size < start ? 0 : seq - size + 1;
+        while (published.get(index) != previous) {
+            Thread.yield();
+        }
+        published.set(index, -(seq + 1));
+        slots.set(index, value);
+        published.set(index, seq + 1);
+        return seq;
+    }
+
+    /**
+     * @return der Wert zur Sequenz oder null, wenn er noch nicht veröffentlicht oder bereits überschrieben ist
+     */
+    T read(long seq) {
+        int index = (int) seq & mask;
+        if (published.get(index) != seq + 1) {
+            return null;
+        }
+        T value = slots.get(index);
+        return published.get(index) == seq + 1 ? value : null;
+    }
+
+    /**
+     * @return true, wenn die Sequenz nicht mehr im Puffer liegt (überschrieben oder vor dem Start)
+     */
+    boolean isOverwritten(long seq) {
+        return seq < start || Math.abs(published.get((int) seq & mask)) > seq + 1;
+    }
+
+    /**
+     * Älteste Sequenz, die noch im Puffer liegen kann.
+     */
+    long oldest() {
+        return Math.max(start, next.get() - size);
+    }
+
+    /**
+     * Nächste zu vergebende Sequenz.
+     */
+    long head() {
+        return next.get();
+    }
+}
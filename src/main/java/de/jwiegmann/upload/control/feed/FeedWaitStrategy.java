@@ -0,0 +1,11 @@
+package de.jwiegmann.upload.control.feed;
+
+/**
+ * Wie ein Konsument auf neue Events wartet, wenn er den Ringpuffer eingeholt hat.
+ */
+public enum FeedWaitStrategy {
+    BLOCKING,   // parkt auf einer Condition, Produzenten wecken nur, wenn jemand wartet (Default)
+    SLEEPING,   // kurz spinnen, dann yield, dann parkNanos – kein Signal auf Produzentenseite
+    YIELDING,   // spinnen, dann Thread.yield() – niedrige Latenz, belegt einen Kern teilweise
+    BUSY_SPIN   // nur Thread.onSpinWait() – geringste Latenz, belegt einen Kern vollständig
+}
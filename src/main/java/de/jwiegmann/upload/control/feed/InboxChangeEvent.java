@@ -0,0 +1,25 @@
+package de.jwiegmann.upload.control.feed;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Eine Änderung an einem Inbox-Item oder einer Upload-Session, wie sie im Change-Feed veröffentlicht wird.
+ * Die Sequenz ist über alle Sessions fortlaufend und bleibt mit Durable Tail auch über Neustarts eindeutig.
+ */
+@Value
+@Builder
+public class InboxChangeEvent {
+
+    long sequence;
+    InboxChangeType type;
+    String uploadId;
+    int seqNo;                          // 0 bei Session-Events
+    UploadItemStatus itemStatus;        // nur bei Item-Events
+    UploadSessionStatus sessionStatus;  // nur bei Session-Events
+    LocalDateTime timestamp;
+}
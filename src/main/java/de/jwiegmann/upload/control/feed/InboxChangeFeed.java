@@ -0,0 +1,306 @@
+package de.jwiegmann.upload.control.feed;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-Process Change-Feed aller Inbox-Änderungen (Annahme, Re-Upload, Statuswechsel von Items und Sessions).
+ * Produzenten schreiben lock-frei in einen {@link ChangeRingBuffer} und warten nie auf Konsumenten.
+ * Jede Subscription hat einen eigenen Thread und Cursor, liest gebündelt und wartet gemäß
+ * {@code upload.feed.wait-strategy}. Mit Durable Tail schreibt eine interne Subscription alle Events in ein
+ * Journal; daraus holen überholte oder nach einem Neustart wieder anmeldende Konsumenten ihren Rückstand nach.
+ * Statuswechsel werden unter dem Monitor des Items bzw. der Session veröffentlicht, sodass die Events eines
+ * Items in der Reihenfolge seiner Übergänge im Feed stehen.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InboxChangeFeed {
+
+    /**
+     * Startposition für {@link #subscribe}: nur Events, die nach der Anmeldung veröffentlicht werden.
+     */
+    public static final long LATEST = -1;
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final InboxChangeFeedProperties properties;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private ChangeRingBuffer<InboxChangeEvent> ring;
+    private InboxChangeJournal journal;
+    private Subscription journalSubscription;
+
+    @PostConstruct
+    void start() throws IOException {
+        long start = 0;
+        if (properties.getDurableTail().getDir() != null) {
+            journal = new InboxChangeJournal(properties.getDurableTail().getDir(),
+                    properties.getDurableTail().getMaxBytes().toBytes());
+            start = journal.lastSequence() + 1;
+        }
+        ring = new ChangeRingBuffer<>(properties.getCapacity(), start);
+
+        if (journal != null) {
+            journalSubscription = subscribe("journal", start, events -> {
+                try {
+                    journal.append(events);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        List<Subscription> active = new ArrayList<>(subscriptions);
+        active.remove(journalSubscription);
+        active.forEach(Subscription::close);
+        active.forEach(Subscription::join);
+        if (journal != null) {
+            // Was bis hierher veröffentlicht wurde, soll nach dem Neustart im Journal stehen
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (journalSubscription.cursor < ring.head() && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            journalSubscription.close();
+            journalSubscription.join();
+            journal.close();
+        }
+    }
+
+    /**
+     * Veröffentlicht eine Item-Änderung mit dem aktuellen Status des Items.
+     */
+    public void itemChanged(InboxChangeType type, UploadInboxItem item) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ring.publish(seq -> InboxChangeEvent.builder()
+                .sequence(seq)
+                .type(type)
+                .uploadId(item.getUploadId())
+                .seqNo(item.getSeqNo())
+                .itemStatus(item.getStatus())
+                .timestamp(now)
+                .build());
+        signal();
+    }
+
+    /**
+     * Veröffentlicht einen Statuswechsel der Session.
+     */
+    public void sessionChanged(UploadSession session) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ring.publish(seq -> InboxChangeEvent.builder()
+                .sequence(seq)
+                .type(InboxChangeType.SESSION_STATUS_CHANGED)
+                .uploadId(session.getUploadId())
+                .sessionStatus(session.getStatus())
+                .timestamp(now)
+                .build());
+        signal();
+    }
+
+    /**
+     * Nächste zu vergebende Sequenz; ein Konsument, der sich diese merkt, verpasst danach kein Event.
+     */
+    public long headSequence() {
+        return ring.head();
+    }
+
+    /**
+     * Meldet einen Konsumenten an. Er läuft in einem eigenen Thread, bis die Subscription geschlossen wird
+     * oder der Listener eine Exception wirft.
+     *
+     * @param name          Name für Thread und Logging
+     * @param fromSequence  Erste zu liefernde Sequenz (z.B. der gespeicherte Cursor nach einem Neustart)
+     *                      oder {@link #LATEST}
+     * @param listener      Empfänger der Events
+     * @return Handle mit dem aktuellen Cursor, zum Abmelden schließen
+     */
+    public Subscription subscribe(String name, long fromSequence, InboxChangeListener listener) {
+        Subscription subscription = new Subscription(name, fromSequence == LATEST ? ring.head() : fromSequence, listener);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private void signal() {
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Eine angemeldete Subscription. {@link #cursor()} ist die nächste noch nicht gelieferte Sequenz.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final String name;
+        private final InboxChangeListener listener;
+        private final Thread thread;
+        private volatile long cursor;
+        private volatile boolean running = true;
+
+        private Subscription(String name, long fromSequence, InboxChangeListener listener) {
+            this.name = name;
+            this.listener = listener;
+            this.cursor = fromSequence;
+            this.thread = Thread.ofPlatform().name("inbox-feed-" + name).daemon().unstarted(this::run);
+        }
+
+        public long cursor() {
+            return cursor;
+        }
+
+        @Override
+        public void close() {
+            running = false;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+        }
+
+        private void join() {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            int maxBatch = Math.max(1, properties.getMaxBatchSize());
+            List<InboxChangeEvent> batch = new ArrayList<>(maxBatch);
+            int idle = 0;
+            try {
+                while (running) {
+                    long next = cursor;
+                    InboxChangeEvent event;
+                    while (batch.size() < maxBatch && (event = ring.read(next)) != null) {
+                        batch.add(event);
+                        next++;
+                    }
+
+                    if (!batch.isEmpty()) {
+                        listener.onEvents(List.copyOf(batch));
+                        batch.clear();
+                        cursor = next;
+                        idle = 0;
+                    } else if (ring.isOverwritten(next)) {
+                        cursor = catchUp(next, maxBatch);
+                    } else {
+                        idle = await(next, idle);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("inbox feed subscription {} stopped at sequence {}", name, cursor, e);
+                close();
+            }
+        }
+
+        /**
+         * Holt überschriebene Events aus dem Journal nach; was auch dort fehlt, wird als Lücke gemeldet.
+         *
+         * @return der neue Cursor
+         */
+        private long catchUp(long from, int maxBatch) {
+            long oldest = ring.oldest();
+            long next = from;
+            if (journal != null) {
+                try {
+                    next = journal.replay(from, oldest, maxBatch, events -> {
+                        listener.onEvents(events);
+                        cursor = events.getLast().getSequence() + 1;
+                    });
+                } catch (IOException e) {
+                    log.warn("inbox feed subscription {} could not replay journal from {}", name, from, e);
+                }
+            }
+            if (next < oldest) {
+                log.warn("inbox feed subscription {} was overrun, events {}..{} are lost", name, next, oldest - 1);
+                listener.onGap(next, oldest);
+                next = oldest;
+            }
+            return next;
+        }
+
+        private int await(long next, int idle) {
+            switch (properties.getWaitStrategy()) {
+                case BUSY_SPIN -> Thread.onSpinWait();
+                case YIELDING -> {
+                    if (idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+                case SLEEPING -> {
+                    if (idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(SLEEP_NANOS);
+                    }
+                }
+                case BLOCKING -> block(next);
+            }
+            return idle + 1;
+        }
+
+        /**
+         * Wartet unter dem Lock auf das Signal eines Produzenten. Weil der Zähler vor der Prüfung erhöht wird und
+         * Produzenten erst nach dem Veröffentlichen auf ihn schauen, geht kein Signal verloren.
+         */
+        private void block(long next) {
+            lock.lock();
+            waiting.incrementAndGet();
+            try {
+                if (running && ring.read(next) == null && !ring.isOverwritten(next)) {
+                    published.awaitNanos(BLOCK_NANOS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                waiting.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package de.jwiegmann.upload.control.feed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * Konfiguration des Change-Feeds.
+ * <pre>
+ * upload.feed:
+ *   enabled: true
+ *   capacity: 65536             # Slots im Ringpuffer (Zweierpotenz), ältere Events werden überschrieben
+ *   wait-strategy: BLOCKING     # BLOCKING, SLEEPING, YIELDING, BUSY_SPIN
+ *   max-batch-size: 256         # Events je Listener-Aufruf
+ *   durable-tail:
+ *     dir: /var/lib/upload/feed # ohne Angabe kein Durable Tail
+ *     max-bytes: 64MB           # danach wird die Datei rotiert (eine Vorgängerdatei bleibt erhalten)
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.feed")
+public class InboxChangeFeedProperties {
+
+    private boolean enabled = true;
+    private int capacity = 65_536;
+    private FeedWaitStrategy waitStrategy = FeedWaitStrategy.BLOCKING;
+    private int maxBatchSize = 256;
+    private DurableTail durableTail = new DurableTail();
+
+    @Data
+    public static class DurableTail {
+        private Path dir;
+        private DataSize maxBytes = DataSize.ofMegabytes(64);
+    }
+}
@@ -0,0 +1,233 @@
+package de.jwiegmann.upload.control.feed;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Durable Tail des Change-Feeds: hängt Events binär an {@code inbox-changes.log} an, ab {@code max-bytes} wird die
+ * Datei nach {@code inbox-changes.1.log} rotiert (eine ältere Vorgängerdatei wird dabei verworfen).
+ * Geschrieben wird nur von einem Thread (der Journal-Subscription des Feeds), gelesen beim Nachholen überholter
+ * Konsumenten. Ein beim Absturz halb geschriebener letzter Eintrag wird beim Öffnen abgeschnitten.
+ * <p>
+ * Eintrag: sequence (long), type (byte), uploadId (UTF), seqNo (int), itemStatus (byte, -1 = keiner),
+ * sessionStatus (byte, -1 = keiner), timestamp (long Epoch-Sekunden UTC, int Nanos).
+ */
+final class InboxChangeJournal implements Closeable {
+
+    private static final String CURRENT = "inbox-changes.log";
+    private static final String PREVIOUS = "inbox-changes.1.log";
+    private static final InboxChangeType[] TYPES = InboxChangeType.values();
+    private static final UploadItemStatus[] ITEM_STATUSES = UploadItemStatus.values();
+    private static final UploadSessionStatus[] SESSION_STATUSES = UploadSessionStatus.values();
+
+    private final Path current;
+    private final Path previous;
+    private final long maxBytes;
+    private final long lastSequence;
+
+    private DataOutputStream out;
+    private long bytesBefore; // Dateigröße beim Öffnen, out.size() zählt nur die seither geschriebenen Bytes
+
+    InboxChangeJournal(Path dir, long maxBytes) throws IOException {
+        Files.createDirectories(dir);
+        this.current = dir.resolve(CURRENT);
+        this.previous = dir.resolve(PREVIOUS);
+        this.maxBytes = maxBytes;
+
+        long[] last = {-1};
+        long validBytes = scan(current, event -> last[0] = event.getSequence());
+        if (last[0] < 0) {
+            scan(previous, event -> last[0] = event.getSequence());
+        }
+        this.lastSequence = last[0];
+
+        if (Files.exists(current)) {
+            try (FileChannel channel = FileChannel.open(current, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        this.out = open();
+    }
+
+    /**
+     * Höchste beim Öffnen vorgefundene Sequenz, -1 bei leerem Journal.
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Hängt die Events an und schreibt sie aus dem Puffer in die Datei (ohne fsync).
+     */
+    synchronized void append(List<InboxChangeEvent> events) throws IOException {
+        for (InboxChangeEvent event : events) {
+            write(out, event);
+        }
+        out.flush();
+        if (bytesBefore + out.size() >= maxBytes) {
+            out.close();
+            Files.move(current, previous, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            out = open();
+        }
+    }
+
+    /**
+     * Liest die Events {@code [fromSequence, toSequence)}, soweit sie im Journal liegen, in Batches von
+     * höchstens {@code batchSize}.
+     *
+     * @return die Sequenz nach dem letzten gelieferten Event, {@code fromSequence} wenn nichts gefunden wurde
+     */
+    long replay(long fromSequence, long toSequence, int batchSize, Consumer<List<InboxChangeEvent>> batches)
+            throws IOException {
+        List<InputStream> files = new ArrayList<>(2);
+        synchronized (this) {
+            // Beide Dateien öffnen, bevor eine Rotation sie verschieben kann
+            for (Path file : List.of(previous, current)) {
+                if (Files.exists(file)) {
+                    files.add(Files.newInputStream(file));
+                }
+            }
+        }
+
+        long nextSequence = fromSequence;
+        List<InboxChangeEvent> batch = new ArrayList<>(batchSize);
+        try {
+            for (InputStream file : files) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+                InboxChangeEvent event;
+                while ((event = read(in)) != null && event.getSequence() < toSequence) {
+                    if (event.getSequence() != nextSequence) {
+                        continue; // vor fromSequence oder hinter einer Lücke
+                    }
+                    batch.add(event);
+                    nextSequence++;
+                    if (batch.size() == batchSize) {
+                        batches.accept(List.copyOf(batch));
+                        batch.clear();
+                    }
+                }
+            }
+        } finally {
+            for (InputStream file : files) {
+                file.close();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.accept(List.copyOf(batch));
+        }
+        return nextSequence;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private DataOutputStream open() throws IOException {
+        bytesBefore = Files.exists(current) ? Files.size(current) : 0;
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(current,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * @return Anzahl Bytes bis zum Ende des letzten vollständigen Eintrags
+     */
+    private static long scan(Path file, Consumer<InboxChangeEvent> events) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (CountingInput counting = new CountingInput(Files.newInputStream(file))) {
+            DataInputStream in = new DataInputStream(counting);
+            long valid = 0;
+            InboxChangeEvent event;
+            while ((event = read(in)) != null) {
+                events.accept(event);
+                valid = counting.count;
+            }
+            return valid;
+        }
+    }
+
+    private static void write(DataOutputStream out, InboxChangeEvent event) throws IOException {
+        out.writeLong(event.getSequence());
+        out.writeByte(event.getType().ordinal());
+        out.writeUTF(event.getUploadId());
+        out.writeInt(event.getSeqNo());
+        out.writeByte(event.getItemStatus() != null ? event.getItemStatus().ordinal() : -1);
+        out.writeByte(event.getSessionStatus() != null ? event.getSessionStatus().ordinal() : -1);
+        out.writeLong(event.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(event.getTimestamp().getNano());
+    }
+
+    /**
+     * @return das nächste Event oder null am (ggf. abgeschnittenen) Dateiende
+     */
+    private static InboxChangeEvent read(DataInputStream in) throws IOException {
+        try {
+            long sequence = in.readLong();
+            InboxChangeType type = TYPES[in.readByte()];
+            String uploadId = in.readUTF();
+            int seqNo = in.readInt();
+            byte itemStatus = in.readByte();
+            byte sessionStatus = in.readByte();
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            return InboxChangeEvent.builder()
+                    .sequence(sequence)
+                    .type(type)
+                    .uploadId(uploadId)
+                    .seqNo(seqNo)
+                    .itemStatus(itemStatus >= 0 ? ITEM_STATUSES[itemStatus] : null)
+                    .sessionStatus(sessionStatus >= 0 ? SESSION_STATUSES[sessionStatus] : null)
+                    .timestamp(timestamp)
+                    .build();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static final class CountingInput extends BufferedInputStream {
+
+        private long count;
+
+        private CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
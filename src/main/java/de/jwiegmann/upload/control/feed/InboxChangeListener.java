@@ -0,0 +1,24 @@
+package de.jwiegmann.upload.control.feed;
+
+import java.util.List;
+
+/**
+ * Konsument des Change-Feeds. Wird je Subscription immer vom selben Thread aufgerufen, Events kommen
+ * lückenlos in Sequenz-Reihenfolge und gebündelt (alles bis {@code upload.feed.max-batch-size}, was bereits
+ * veröffentlicht ist).
+ */
+@FunctionalInterface
+public interface InboxChangeListener {
+
+    /**
+     * @param events Mindestens ein Event, aufsteigend nach Sequenz
+     */
+    void onEvents(List<InboxChangeEvent> events);
+
+    /**
+     * Der Konsument wurde vom Ringpuffer überholt und die Events {@code [fromSequence, toSequence)} sind
+     * auch im Durable Tail nicht (mehr) vorhanden. Danach geht es ab {@code toSequence} weiter.
+     */
+    default void onGap(long fromSequence, long toSequence) {
+    }
+}
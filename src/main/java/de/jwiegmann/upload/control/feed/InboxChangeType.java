@@ -0,0 +1,12 @@
+package de.jwiegmann.upload.control.feed;
+
+/**
+ * Art einer Änderung im Change-Feed.
+ */
+public enum InboxChangeType {
+    ITEM_ACCEPTED,          // neues Item gespeichert (PENDING)
+    ITEM_REUPLOADED,        // ERROR-Item erneut hochgeladen (→ PENDING)
+    ITEM_STATUS_CHANGED,    // Claim, Ack oder abgelaufener Lease
+    SESSION_STATUS_CHANGED, // ACTIVE, SEALED, COMPLETED, ABORTED
+    ITEM_RETRIED            // ERROR-Item serverseitig erneut eingereiht (→ PENDING)
+}
@@ -0,0 +1,125 @@
+package de.jwiegmann.upload.control.inbox;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.UploadSessionEndListener;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.feed.InboxChangeType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plant Retries für Items, die ein Worker mit ERROR bestätigt hat. Die Wartezeit wächst exponentiell je Versuch
+ * ({@code initial-delay * 2^retryCount}, höchstens {@code max-delay}) und wird zur Hälfte zufällig gestreut,
+ * damit gleichzeitig gescheiterte Items nicht gleichzeitig zurückkommen. Jede Session hat ein Retry-Budget;
+ * ist es aufgebraucht oder hat das Item {@code max-attempts} erreicht, bleibt es ERROR bis zum Re-Upload.
+ * Mit dem Ende der Session wird ihr Budget verworfen. Fällige Retries setzt der Reaper des {@link InboxLeaseService} zurück und stellt sie wieder für Claims bereit.
+ */
+@Component
+@RequiredArgsConstructor
+public class ErrorRetryScheduler implements UploadSessionEndListener {
+
+    private final InboxRetryProperties properties;
+    private final InboxChangeFeed changeFeed;
+
+    private final DelayQueue<Retry> retries = new DelayQueue<>();
+    private final Map<String, AtomicInteger> usedBudget = new ConcurrentHashMap<>();
+
+    /**
+     * Plant einen Retry für das gerade auf ERROR gesetzte Item. Muss unter dem Monitor des Items aufgerufen werden.
+     *
+     * @return der Zeitpunkt des Retries oder null, wenn keiner geplant wurde
+     */
+    LocalDateTime schedule(UploadInboxItem item) {
+        if (!properties.isEnabled() || item.getRetryCount() >= properties.getMaxAttempts()) {
+            return null;
+        }
+        AtomicInteger used = usedBudget.computeIfAbsent(item.getUploadId(), k -> new AtomicInteger());
+        if (used.getAndIncrement() >= properties.getSessionBudget()) {
+            used.decrementAndGet();
+            return null;
+        }
+
+        long delayNanos = backoffNanos(item.getRetryCount());
+        retries.add(new Retry(item, item.getUpdatedAt(), System.nanoTime() + delayNanos));
+        return item.getUpdatedAt().plusNanos(delayNanos);
+    }
+
+    /**
+     * Setzt die Items aller fälligen Retries zurück auf PENDING (ERROR → PENDING, retryCount + 1).
+     * Ein zwischenzeitlich erneut hochgeladenes Item hat ein neueres {@code updatedAt} und wird übersprungen.
+     *
+     * @return die zurückgesetzten Items, die wieder für Claims bereitzustellen sind
+     */
+    List<UploadInboxItem> requeueDue(LocalDateTime now) {
+        List<UploadInboxItem> requeued = new ArrayList<>();
+        Retry retry;
+        while ((retry = retries.poll()) != null) {
+            UploadInboxItem item = retry.item;
+            synchronized (item) {
+                if (item.getStatus() != UploadItemStatus.ERROR || !retry.erroredAt.equals(item.getUpdatedAt())) {
+                    continue;
+                }
+                item.setStatus(UploadItemStatus.PENDING);
+                item.setRetryCount(item.getRetryCount() + 1);
+                item.setErrorMessage(null);
+                item.setUpdatedAt(now);
+                changeFeed.itemChanged(InboxChangeType.ITEM_RETRIED, item);
+            }
+            requeued.add(item);
+        }
+        return requeued;
+    }
+
+    /**
+     * Anzahl geplanter, noch nicht fälliger Retries.
+     */
+    public int scheduledCount() {
+        return retries.size();
+    }
+
+    /**
+     * Anzahl bisher verbrauchter Retries der Session.
+     */
+    public int usedBudget(String uploadId) {
+        AtomicInteger used = usedBudget.get(uploadId);
+        return used != null ? used.get() : 0;
+    }
+
+    @Override
+    public void sessionEnded(String uploadId) {
+        usedBudget.remove(uploadId);
+    }
+
+    private long backoffNanos(int retryCount) {
+        long initial = properties.getInitialDelay().toNanos();
+        long max = properties.getMaxDelay().toNanos();
+        long delay = retryCount >= 62 || initial > max >> retryCount ? max : initial << retryCount;
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+
+    private record Retry(UploadInboxItem item, LocalDateTime erroredAt, long dueNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueNanos, ((Retry) other).dueNanos);
+        }
+    }
+}
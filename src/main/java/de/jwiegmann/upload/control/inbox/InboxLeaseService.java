@@ -0,0 +1,272 @@
+package de.jwiegmann.upload.control.inbox;
+
+import de.jwiegmann.upload.boundary.dto.inbox.ClaimedInboxItem;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAck;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAckResult;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAckStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.UploadSessionChangeTracker;
+import de.jwiegmann.upload.control.UploadSessionManager;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.feed.InboxChangeType;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.watermark.CompletionWatermarkTracker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Pull-basierte Verteilung von Inbox-Items an externe Worker (Claim/Ack mit Visibility-Timeout).
+ * Items werden beim Übergang nach PENDING in eine Warteschlange gestellt; ein Claim entnimmt sie und
+ * setzt PENDING → PROCESSING unter dem Monitor des Items, sodass jedes Item höchstens einmal verleast wird.
+ * Nicht bestätigte Leases laufen ab und stellen das Item wieder als PENDING bereit; mit ERROR bestätigte Items
+ * stellt der {@link ErrorRetryScheduler} nach einer Wartezeit erneut bereit.
+ */
+@Component
+@RequiredArgsConstructor
+public class InboxLeaseService {
+
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final UploadSessionManager uploadSessionManager;
+    private final UploadSessionChangeTracker changeTracker;
+    private final CompletionWatermarkTracker watermarks;
+    private final InboxChangeFeed changeFeed;
+    private final ErrorRetryScheduler retryScheduler;
+
+    // Kann veraltete Einträge enthalten (Item inzwischen nicht mehr PENDING), diese werden beim Claim verworfen
+    private final Queue<UploadInboxItem> pending = new ConcurrentLinkedQueue<>();
+    private final DelayQueue<Lease> leases = new DelayQueue<>();
+    private ScheduledExecutorService reaper;
+
+    @Value("${upload.inbox.visibility-timeout:PT5M}")
+    private Duration defaultVisibilityTimeout;
+
+    @Value("${upload.inbox.max-visibility-timeout:PT1H}")
+    private Duration maxVisibilityTimeout;
+
+    @Value("${upload.inbox.max-claim:1000}")
+    private int maxClaim;
+
+    @Value("${upload.inbox.reap-interval:PT1S}")
+    private Duration reapInterval;
+
+    @PostConstruct
+    void start() {
+        reaper = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("inbox-lease-reaper").daemon().factory());
+        reaper.scheduleWithFixedDelay(this::reapExpiredLeases, reapInterval.toMillis(), reapInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        reaper.shutdownNow();
+    }
+
+    /**
+     * Stellt ein Item, das gerade nach PENDING gewechselt ist, für Claims bereit.
+     */
+    public void offer(UploadInboxItem item) {
+        pending.add(item);
+    }
+
+    /**
+     * Verleast bis zu {@code max} PENDING Items (→ PROCESSING).
+     *
+     * @param max               Maximale Anzahl Items, begrenzt auf upload.inbox.max-claim
+     * @param visibilityTimeout Dauer des Leases, null für upload.inbox.visibility-timeout
+     * @return Verleaste Items, leer wenn nichts ansteht
+     * @throws ResponseStatusException 400 bei ungültigem max oder Timeout
+     */
+    public List<ClaimedInboxItem> claim(int max, Duration visibilityTimeout) {
+
+        Duration timeout = visibilityTimeout != null ? visibilityTimeout : defaultVisibilityTimeout;
+        if (max < 1 || max > maxClaim) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "max must be within 1.." + maxClaim);
+        }
+        if (timeout.isNegative() || timeout.isZero() || timeout.compareTo(maxVisibilityTimeout) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "visibilityTimeout must be within (0, " + maxVisibilityTimeout + "]");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long expiresAtNanos = System.nanoTime() + timeout.toNanos();
+        List<ClaimedInboxItem> claimed = new ArrayList<>();
+        Set<String> changedSessions = new HashSet<>();
+
+        UploadInboxItem item;
+        while (claimed.size() < max && (item = pending.poll()) != null) {
+            if (!isClaimable(item.getUploadId())) {
+                continue;
+            }
+            synchronized (item) {
+                if (item.getStatus() != UploadItemStatus.PENDING) {
+                    continue;
+                }
+                String leaseId = UUID.randomUUID().toString();
+                item.setStatus(UploadItemStatus.PROCESSING);
+                item.setLeaseId(leaseId);
+                item.setLeaseExpiresAt(now.plus(timeout));
+                item.setUpdatedAt(now);
+                uploadSessionManager.itemStatusChanged(item, UploadItemStatus.PENDING);
+                leases.add(new Lease(item, leaseId, expiresAtNanos));
+                changeFeed.itemChanged(InboxChangeType.ITEM_STATUS_CHANGED, item);
+
+                claimed.add(ClaimedInboxItem.builder()
+                        .uploadId(item.getUploadId())
+                        .seqNo(item.getSeqNo())
+                        .leaseId(leaseId)
+                        .leaseExpiresAt(item.getLeaseExpiresAt())
+                        .retryCount(item.getRetryCount())
+                        .payload(item.getPayload())
+                        .build());
+            }
+            changedSessions.add(item.getUploadId());
+        }
+
+        changedSessions.forEach(this::markChanged);
+        return claimed;
+    }
+
+    /**
+     * Übernimmt die Verarbeitungsergebnisse der Worker. Nur der Inhaber des aktuellen Leases kann ein Item
+     * abschließen; verspätete Bestätigungen nach Ablauf werden als LEASE_EXPIRED verworfen.
+     * Für ERROR ohne {@code retryable=false} wird ein serverseitiger Retry geplant, soweit Versuche und Budget reichen.
+     *
+     * @param acks Ergebnisse (DONE oder ERROR) je Item
+     * @return Ergebnis je Bestätigung in Request-Reihenfolge
+     * @throws ResponseStatusException 400 bei leerem Request oder anderem Status als DONE/ERROR
+     */
+    public List<InboxAckResult> ack(List<InboxAck> acks) {
+
+        if (acks == null || acks.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty ack");
+        }
+        for (InboxAck ack : acks) {
+            if (ack.getStatus() != UploadItemStatus.DONE && ack.getStatus() != UploadItemStatus.ERROR) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ack status must be DONE or ERROR");
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<InboxAckResult> results = new ArrayList<>(acks.size());
+        Map<String, Integer> newlyDone = new HashMap<>();
+
+        for (InboxAck ack : acks) {
+            UploadInboxItem item = inboxItemRepository.find(ack.getUploadId(), ack.getSeqNo()).orElse(null);
+            InboxAckStatus status = InboxAckStatus.NOT_FOUND;
+            LocalDateTime retryAt = null;
+            if (item != null) {
+                synchronized (item) {
+                    status = complete(item, ack, now) ? InboxAckStatus.ACKED : InboxAckStatus.LEASE_EXPIRED;
+                    // Items abgebrochener Sessions werden nicht mehr geclaimt, ein Retry legte nur neues Budget an
+                    if (status == InboxAckStatus.ACKED && ack.getStatus() == UploadItemStatus.ERROR
+                            && !Boolean.FALSE.equals(ack.getRetryable()) && isClaimable(ack.getUploadId())) {
+                        retryAt = retryScheduler.schedule(item);
+                    }
+                }
+            }
+
+            if (status == InboxAckStatus.ACKED) {
+                if (ack.getStatus() == UploadItemStatus.DONE) {
+                    watermarks.markDone(ack.getUploadId(), ack.getSeqNo());
+                }
+                newlyDone.merge(ack.getUploadId(), ack.getStatus() == UploadItemStatus.DONE ? 1 : 0, Integer::sum);
+            }
+            results.add(InboxAckResult.builder()
+                    .uploadId(ack.getUploadId())
+                    .seqNo(ack.getSeqNo())
+                    .status(status)
+                    .retryAt(retryAt)
+                    .build());
+        }
+
+        newlyDone.forEach((uploadId, done) -> uploadSessionRepository.find(uploadId)
+                .ifPresent(session -> uploadSessionManager.updateAfterProcessing(session, done)));
+        return results;
+    }
+
+    /**
+     * Gibt Items mit abgelaufenem Lease und Items mit fälligem Retry wieder als PENDING frei.
+     */
+    void reapExpiredLeases() {
+        Set<String> changedSessions = new HashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        Lease lease;
+        while ((lease = leases.poll()) != null) {
+            UploadInboxItem item = lease.item;
+            synchronized (item) {
+                if (item.getStatus() != UploadItemStatus.PROCESSING || !lease.leaseId.equals(item.getLeaseId())) {
+                    continue; // bereits bestätigt
+                }
+                item.setStatus(UploadItemStatus.PENDING);
+                item.setLeaseId(null);
+                item.setLeaseExpiresAt(null);
+                item.setUpdatedAt(now);
+                uploadSessionManager.itemStatusChanged(item, UploadItemStatus.PROCESSING);
+                changeFeed.itemChanged(InboxChangeType.ITEM_STATUS_CHANGED, item);
+            }
+            pending.add(item);
+            changedSessions.add(item.getUploadId());
+        }
+
+        for (UploadInboxItem item : retryScheduler.requeueDue(now)) {
+            uploadSessionManager.itemStatusChanged(item, UploadItemStatus.ERROR); // vor add: noch kein Claim möglich
+            pending.add(item);
+            changedSessions.add(item.getUploadId());
+        }
+
+        changedSessions.forEach(this::markChanged);
+    }
+
+    /**
+     * Muss unter dem Monitor des Items aufgerufen werden.
+     */
+    private boolean complete(UploadInboxItem item, InboxAck ack, LocalDateTime now) {
+        if (item.getStatus() != UploadItemStatus.PROCESSING || !Objects.equals(ack.getLeaseId(), item.getLeaseId())) {
+            return false;
+        }
+        item.setStatus(ack.getStatus());
+        item.setErrorMessage(ack.getStatus() == UploadItemStatus.ERROR ? ack.getErrorMessage() : null);
+        item.setLeaseId(null);
+        item.setLeaseExpiresAt(null);
+        item.setUpdatedAt(now);
+        uploadSessionManager.itemStatusChanged(item, UploadItemStatus.PROCESSING);
+        changeFeed.itemChanged(InboxChangeType.ITEM_STATUS_CHANGED, item);
+        return true;
+    }
+
+    private boolean isClaimable(String uploadId) {
+        return uploadSessionRepository.find(uploadId)
+                .map(s -> s.getStatus() != UploadSessionStatus.ABORTED)
+                .orElse(false);
+    }
+
+    private void markChanged(String uploadId) {
+        uploadSessionRepository.find(uploadId).ifPresent(changeTracker::markChanged);
+    }
+
+    private record Lease(UploadInboxItem item, String leaseId, long expiresAtNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtNanos, ((Lease) other).expiresAtNanos);
+        }
+    }
+}
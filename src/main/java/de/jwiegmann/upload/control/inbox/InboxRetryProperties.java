@@ -0,0 +1,30 @@
+package de.jwiegmann.upload.control.inbox;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Serverseitige Wiederholung von ERROR-Items aus dem gespeicherten Payload.
+ * <pre>
+ * upload.retry:
+ *   enabled: true
+ *   initial-delay: PT10S     # Wartezeit vor dem ersten Retry, verdoppelt sich je Versuch
+ *   max-delay: PT10M         # Obergrenze der Wartezeit
+ *   max-attempts: 5          # Retries je Item, danach bleibt es ERROR
+ *   session-budget: 1000     # Retries je Session insgesamt
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.retry")
+public class InboxRetryProperties {
+
+    private boolean enabled = true;
+    private Duration initialDelay = Duration.ofSeconds(10);
+    private Duration maxDelay = Duration.ofMinutes(10);
+    private int maxAttempts = 5;
+    private int sessionBudget = 1000;
+}
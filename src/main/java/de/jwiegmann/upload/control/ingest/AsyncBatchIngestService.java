@@ -0,0 +1,240 @@
+package de.jwiegmann.upload.control.ingest;
+
+import de.jwiegmann.upload.boundary.dto.batch.BatchReceipt;
+import de.jwiegmann.upload.boundary.dto.batch.BatchReceiptStatus;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.control.UploadErrorFactory;
+import de.jwiegmann.upload.control.UploadService;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchrone Annahme von Batch-Uploads: Der Request legt den Batch nur in einen begrenzten Ringpuffer
+ * und bekommt sofort eine Quittung; eigene Consumer-Threads verarbeiten die Batches über den normalen
+ * Batch-Pfad. Jede uploadId ist fest einem Consumer zugeordnet, dadurch werden die Batches einer Session
+ * in Annahme-Reihenfolge verarbeitet. Abgeschlossene Quittungen bleiben für die konfigurierte TTL abrufbar.
+ * Neben der Anzahl der Batches je Puffer ist die Summe der wartenden Item-Bytes über alle Puffer begrenzt.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AsyncBatchIngestService {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final UploadService uploadService;
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+
+    private final Map<String, BatchReceipt> receipts = new ConcurrentHashMap<>();
+
+    // Abschlussreihenfolge == Ablaufreihenfolge, da alle Quittungen dieselbe TTL haben
+    private final Queue<Expiry> completionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private Lane[] lanes;
+
+    @Value("${upload.async.consumers:2}")
+    private int consumers;
+
+    @Value("${upload.async.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${upload.async.queue-bytes:64MB}")
+    private DataSize queueBytes;
+
+    @Value("${upload.async.receipt-ttl:PT10M}")
+    private Duration receiptTtl;
+
+    @Value("${upload.max-items-per-request:100}")
+    private int maxItemsPerRequest;
+
+    @PostConstruct
+    void start() {
+        lanes = new Lane[Math.max(consumers, 1)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(new IngestRingBuffer<>(queueCapacity));
+            lanes[i].thread = Thread.ofPlatform().name("upload-ingest-" + i).daemon().start(lanes[i]::run);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        for (Lane lane : lanes) {
+            lane.running = false;
+            LockSupport.unpark(lane.thread);
+        }
+    }
+
+    /**
+     * Nimmt einen Batch zur späteren Verarbeitung an.
+     *
+     * @param uploadId ID der Upload-Session
+     * @param batch    Liste der zu verarbeitenden Items
+     * @return Quittung im Status QUEUED
+     * @throws ResponseStatusException 404 bei unbekannter uploadId, 400 bei leerem oder zu großem Batch sowie bei
+     *                                 doppelten oder außerhalb 1..expectedCount liegenden seqNos,
+     *                                 503 wenn der Ingest-Puffer voll ist oder upload.async.queue-bytes erreicht sind
+     */
+    public BatchReceipt submit(String uploadId, List<ItemUploadRequest> batch) {
+
+        evictExpired(System.nanoTime());
+
+        UploadSession session = uploadSessionRepository.find(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "uploadId not found"));
+        validateFrame(session, batch);
+
+        long bytes = batch.stream().mapToLong(ItemUploadRequest::getRequestBytes).sum();
+        if (queuedBytes.addAndGet(bytes) > queueBytes.toBytes()) {
+            queuedBytes.addAndGet(-bytes);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "ingest queue full, retry later");
+        }
+
+        BatchReceipt receipt = BatchReceipt.builder()
+                .receiptId(UUID.randomUUID().toString())
+                .uploadId(uploadId)
+                .status(BatchReceiptStatus.QUEUED)
+                .acceptedAt(LocalDateTime.now())
+                .build();
+        receipts.put(receipt.getReceiptId(), receipt);
+
+        Lane lane = lanes[Math.floorMod(uploadId.hashCode(), lanes.length)];
+        if (!lane.buffer.offer(new Task(receipt, batch, bytes))) {
+            receipts.remove(receipt.getReceiptId());
+            queuedBytes.addAndGet(-bytes);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "ingest queue full, retry later");
+        }
+        LockSupport.unpark(lane.thread);
+        return receipt;
+    }
+
+    /**
+     * Prüft den Batch-Rahmen wie der synchrone Batch-Pfad, aber für den ganzen Batch: Ein Batch, der dort nur
+     * INVALID-Ergebnisse erzeugen würde, wird gar nicht erst quittiert.
+     */
+    private void validateFrame(UploadSession session, List<ItemUploadRequest> batch) {
+        if (batch == null || batch.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty batch");
+        }
+        if (batch.size() > maxItemsPerRequest) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "batch too large (max " + maxItemsPerRequest + ")");
+        }
+        Set<Integer> seqNos = new HashSet<>();
+        for (ItemUploadRequest item : batch) {
+            if (item.getSeqNo() < 1 || item.getSeqNo() > session.getExpectedCount()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "seqNo " + item.getSeqNo() + " out of range (1.." + session.getExpectedCount() + ")");
+            }
+            if (!seqNos.add(item.getSeqNo())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "duplicate seqNo " + item.getSeqNo() + " in request");
+            }
+        }
+    }
+
+    /**
+     * Liefert die Quittung eines asynchron angenommenen Batches.
+     *
+     * @param uploadId  ID der Upload-Session
+     * @param receiptId ID der Quittung
+     * @return Quittung, nach der Verarbeitung mit Ergebnis pro Item
+     * @throws ResponseStatusException 404 wenn die Quittung unbekannt, abgelaufen oder einer anderen Session zugeordnet ist
+     */
+    public BatchReceipt receipt(String uploadId, String receiptId) {
+        BatchReceipt receipt = receipts.get(receiptId);
+        if (receipt == null || !receipt.getUploadId().equals(uploadId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "receiptId not found");
+        }
+        return receipt;
+    }
+
+    private void process(Task task) {
+        BatchReceipt queued = task.receipt;
+        BatchReceipt.BatchReceiptBuilder done = BatchReceipt.builder()
+                .receiptId(queued.getReceiptId())
+                .uploadId(queued.getUploadId())
+                .acceptedAt(queued.getAcceptedAt());
+
+        try {
+            BatchUploadResponse response = uploadService.uploadBatch(queued.getUploadId(), task.batch);
+            done.status(BatchReceiptStatus.PROCESSED).results(response.getResults());
+        } catch (ResponseStatusException e) {
+            done.status(BatchReceiptStatus.FAILED).error(failure(queued.getUploadId(), e));
+        } catch (Throwable e) { // auch ein Error darf den Consumer nicht beenden, die Quittung bliebe sonst QUEUED
+            log.warn("async batch {} for upload {} failed", queued.getReceiptId(), queued.getUploadId(), e);
+            done.status(BatchReceiptStatus.FAILED).error(UploadErrorFactory.validationFailed("batch processing failed"));
+        }
+
+        receipts.put(queued.getReceiptId(), done.processedAt(LocalDateTime.now()).build());
+        completionOrder.add(new Expiry(queued.getReceiptId(), System.nanoTime() + receiptTtl.toNanos()));
+    }
+
+    private static UploadError failure(String uploadId, ResponseStatusException e) {
+        return e.getStatusCode() == HttpStatus.NOT_FOUND
+                ? UploadErrorFactory.uploadNotFound(uploadId)
+                : UploadErrorFactory.validationFailed(e.getReason());
+    }
+
+    private void evictExpired(long now) {
+        Expiry head;
+        while ((head = completionOrder.peek()) != null && now - head.expiresAtNanos > 0) {
+            if (completionOrder.remove(head)) {
+                receipts.remove(head.receiptId);
+            }
+        }
+    }
+
+    private record Task(BatchReceipt receipt, List<ItemUploadRequest> batch, long bytes) {
+    }
+
+    private record Expiry(String receiptId, long expiresAtNanos) {
+    }
+
+    private final class Lane {
+
+        private final IngestRingBuffer<Task> buffer;
+        private volatile boolean running = true;
+        private Thread thread;
+
+        private Lane(IngestRingBuffer<Task> buffer) {
+            this.buffer = buffer;
+        }
+
+        private void run() {
+            while (running) {
+                Task task = buffer.poll();
+                if (task == null) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS); // submit() weckt den Consumer per unpark
+                    continue;
+                }
+                try {
+                    process(task);
+                } finally {
+                    queuedBytes.addAndGet(-task.bytes);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package de.jwiegmann.upload.control.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Begrenzter, lock-freier Ringpuffer für viele Produzenten und genau einen Konsumenten.
+ * Jeder Slot trägt eine Sequenznummer: Produzenten reservieren per CAS auf {@code tail} und veröffentlichen
+ * den Slot durch Setzen der Sequenz, der Konsument gibt ihn auf dieselbe Weise für die nächste Runde frei.
+ * Die Kapazität wird auf die nächste Zweierpotenz aufgerundet.
+ */
+final class IngestRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // nur vom Konsumenten-Thread verwendet
+
+    IngestRingBuffer(int capacity) {
+        int size = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(capacity, 2) - 1));
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false, wenn der Puffer voll ist
+     */
+    boolean offer(T value) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, value);
+                    sequences.set(index, pos + 1); // veröffentlicht den Slot für den Konsumenten
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // Slot der Vorrunde noch nicht konsumiert
+            } else {
+                pos = tail.get(); // anderer Produzent war schneller
+            }
+        }
+    }
+
+    /**
+     * Entnimmt das älteste Element. Darf nur vom Konsumenten-Thread aufgerufen werden.
+     *
+     * @return das Element oder null, wenn nichts veröffentlicht ist
+     */
+    T poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        T value = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, head + mask + 1); // Slot für die nächste Runde freigeben
+        head++;
+        return value;
+    }
+}
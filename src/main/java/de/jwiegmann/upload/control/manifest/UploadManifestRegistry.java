@@ -0,0 +1,47 @@
+package de.jwiegmann.upload.control.manifest;
+
+import de.jwiegmann.upload.control.UploadSessionEndListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash-Manifeste der Sessions: je seqNo der vom Client erwartete xxHash64 des Payloads (Index seqNo - 1,
+ * 0 = kein Hash für diese seqNo). Ein Manifest wird nie verändert, sondern nur als Ganzes ersetzt, daher lesen
+ * Annahme und Bitmap-Abfrage ohne Lock. Items, die vor der Registrierung angenommen wurden, werden nicht
+ * nachträglich abgewiesen, sondern nur in der Bitmap als nicht verifiziert ausgewiesen. Mit dem Ende der Session
+ * wird ihr Manifest verworfen, da danach keine Items mehr angenommen werden.
+ */
+@Component
+public class UploadManifestRegistry implements UploadSessionEndListener {
+
+    private final Map<String, long[]> manifests = new ConcurrentHashMap<>();
+
+    /**
+     * Registriert das Manifest einer Session oder ersetzt ein vorhandenes.
+     *
+     * @param hashes Erwarteter Hash je seqNo, Länge = expectedCount der Session; wird nicht kopiert
+     */
+    public void register(String uploadId, long[] hashes) {
+        manifests.put(uploadId, hashes);
+    }
+
+    @Override
+    public void sessionEnded(String uploadId) {
+        manifests.remove(uploadId);
+    }
+
+    public Optional<long[]> find(String uploadId) {
+        return Optional.ofNullable(manifests.get(uploadId));
+    }
+
+    /**
+     * @return erwarteter Hash der seqNo, 0 wenn die Session kein Manifest oder das Manifest keinen Hash dafür hat
+     */
+    public long expectedHash(String uploadId, int seqNo) {
+        long[] hashes = manifests.get(uploadId);
+        return hashes != null && seqNo >= 1 && seqNo <= hashes.length ? hashes[seqNo - 1] : 0L;
+    }
+}
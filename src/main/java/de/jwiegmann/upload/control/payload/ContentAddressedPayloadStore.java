@@ -0,0 +1,83 @@
+package de.jwiegmann.upload.control.payload;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inhaltsadressierter Payload-Speicher mit Referenzzählung.
+ * Identische Payloads (gleicher Hash und gleicher Inhalt) werden über alle Items und Sessions
+ * hinweg nur einmal gehalten; Items referenzieren die kanonische Instanz.
+ * Bei Hash-Kollisionen mit abweichendem Inhalt wird schlicht nicht dedupliziert.
+ * Die Zeichen aller gehaltenen Payloads werden beim Aufnehmen und Entfernen mitgezählt, jeder Payload einmal.
+ */
+@Component
+public class ContentAddressedPayloadStore {
+
+    private final Map<Long, StoredPayload> store = new ConcurrentHashMap<>();
+    private final AtomicLong residentChars = new AtomicLong();
+
+    /**
+     * Liefert die kanonische Instanz des Payloads und erhöht deren Referenzzähler.
+     *
+     * @param hash    xxHash64 des Payloads
+     * @param payload Der Payload als String
+     * @return Die gespeicherte Instanz (oder der übergebene Payload bei Hash-Kollision)
+     */
+    public String acquire(long hash, String payload) {
+        StoredPayload stored = store.compute(hash, (h, existing) -> {
+            if (existing == null) {
+                residentChars.addAndGet(payload.length());
+                return new StoredPayload(payload);
+            }
+            if (existing.payload.equals(payload)) {
+                existing.references++;
+            }
+            return existing;
+        });
+        return stored.payload.equals(payload) ? stored.payload : payload;
+    }
+
+    /**
+     * Gibt eine Referenz frei; der Payload wird entfernt, sobald keine Referenz mehr besteht.
+     */
+    public void release(long hash, String payload) {
+        store.computeIfPresent(hash, (h, existing) -> {
+            if (!existing.payload.equals(payload)) {
+                return existing; // Kollisions-Payload, wurde nie gezählt
+            }
+            if (--existing.references > 0) {
+                return existing;
+            }
+            residentChars.addAndGet(-payload.length());
+            return null;
+        });
+    }
+
+    /**
+     * Anzahl eindeutiger, aktuell gehaltener Payloads.
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Zeichen aller aktuell gehaltenen Payloads, gemeinsam genutzte einmal gezählt
+     * (Zeichen als Näherung für Bytes, Compact Strings).
+     */
+    public long residentChars() {
+        return residentChars.get();
+    }
+
+    private static final class StoredPayload {
+
+        private final String payload;
+        private int references = 1;   // nur innerhalb von compute() verändert
+
+        private StoredPayload(String payload) {
+            this.payload = payload;
+        }
+    }
+}
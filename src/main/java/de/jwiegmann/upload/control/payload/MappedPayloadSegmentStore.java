@@ -0,0 +1,112 @@
+package de.jwiegmann.upload.control.payload;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Auslagerungsspeicher für Payloads: append-only Segment-Files, die per mmap gelesen werden.
+ * Jeder Payload wird einmal angehängt und danach nur noch gelesen; ein Payload, der größer als ein
+ * Segment ist, bekommt ein eigenes Segment passender Größe. Ein Segment-File wird gelöscht, sobald kein
+ * Item mehr auf einen seiner Payloads verweist und nichts mehr angehängt wird; die übrigen beim Herunterfahren.
+ */
+@Component
+public class MappedPayloadSegmentStore {
+
+    private final List<PayloadSegment> segments = new CopyOnWriteArrayList<>();
+    private PayloadSegment current;
+
+    @Value("${upload.storage.spill-dir:${java.io.tmpdir}/upload-spill}")
+    private Path spillDir;
+
+    @Value("${upload.storage.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(spillDir);
+    }
+
+    @PreDestroy
+    void cleanup() {
+        segments.forEach(MappedPayloadSegmentStore::delete);
+    }
+
+    /**
+     * Hängt den Payload an das aktuelle Segment an und liefert die Referenz zum späteren Nachladen.
+     */
+    public synchronized SpilledPayload append(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        PayloadSegment segment = segmentFor(bytes.length);
+        int offset = segment.append(bytes);
+        return new SpilledPayload(segment, offset, bytes.length);
+    }
+
+    /**
+     * Gibt die Referenz eines Items auf seinen ausgelagerten Payload frei, z. B. wenn ein Re-Upload ihn ersetzt.
+     * Ein Leser, der die Referenz noch hält, liest weiterhin korrekt: das Mapping bleibt gültig, bis es
+     * eingesammelt wird, auch wenn das File bereits gelöscht ist.
+     */
+    public synchronized void release(SpilledPayload spilled) {
+        PayloadSegment segment = spilled.segment();
+        if (segment.release() && segment != current) {
+            remove(segment);
+        }
+    }
+
+    /**
+     * Anzahl vorhandener Segment-Files.
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    private PayloadSegment segmentFor(int length) {
+        int capacity = (int) Math.min(segmentSize.toBytes(), Integer.MAX_VALUE);
+        if (length > capacity) {
+            return newSegment(length); // Übergroßer Payload: eigenes Segment, current bleibt
+        }
+        if (current == null || current.remaining() < length) {
+            PayloadSegment full = current;
+            current = newSegment(capacity);
+            if (full != null && !full.isReferenced()) {
+                remove(full);
+            }
+        }
+        return current;
+    }
+
+    private void remove(PayloadSegment segment) {
+        segments.remove(segment);
+        delete(segment);
+    }
+
+    private static void delete(PayloadSegment segment) {
+        try {
+            Files.deleteIfExists(segment.file());
+        } catch (IOException ignored) {
+            // Aufräumen ist best effort
+        }
+    }
+
+    private PayloadSegment newSegment(int capacity) {
+        try {
+            PayloadSegment segment = new PayloadSegment(
+                    Files.createTempFile(spillDir, "payloads-", ".seg"), capacity);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot create payload segment in " + spillDir, e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.jwiegmann.upload.control.payload;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only Segment-File fester Größe, vollständig in den Speicher gemappt.
+ * Geschrieben wird nur vom Segment-Store (unter dessen Lock), gelesen wird mit absoluten Zugriffen
+ * von beliebigen Threads; bereits geschriebene Bereiche werden nie verändert. Der Store zählt die
+ * lebenden Referenzen je Segment, um nicht mehr benötigte Segment-Files zu löschen.
+ */
+final class PayloadSegment {
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private int writePosition; // nur unter dem Lock des Segment-Stores verändert
+    private int references;    // lebende SpilledPayloads, nur unter dem Lock des Segment-Stores verändert
+
+    PayloadSegment(Path file, int capacity) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    int remaining() {
+        return buffer.capacity() - writePosition;
+    }
+
+    /**
+     * @return Offset der geschriebenen Bytes im Segment
+     */
+    int append(byte[] bytes) {
+        int offset = writePosition;
+        buffer.put(offset, bytes);
+        writePosition += bytes.length;
+        references++;
+        return offset;
+    }
+
+    /**
+     * @return true, wenn danach keine Referenz auf das Segment mehr lebt
+     */
+    boolean release() {
+        return --references == 0;
+    }
+
+    boolean isReferenced() {
+        return references > 0;
+    }
+
+    void read(int offset, byte[] target) {
+        buffer.get(offset, target);
+    }
+
+    Path file() {
+        return file;
+    }
+}
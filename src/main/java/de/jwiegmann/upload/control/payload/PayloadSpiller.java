@@ -0,0 +1,113 @@
+package de.jwiegmann.upload.control.payload;
+
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lagert Payloads vom Heap in gemappte Segment-Files aus; die Item-Metadaten bleiben im Speicher.
+ * Ein periodischer Lauf verdrängt zuerst die Payloads von Sessions, die länger als {@code spill-idle-after}
+ * nicht benutzt wurden, und danach – am längsten nicht benutzte Sessions zuerst – so viele Payloads,
+ * bis die Heap-Payloads wieder unter {@code heap-budget} liegen. Gemessen wird am Dedup-Speicher, der jeden
+ * gemeinsam genutzten Payload einmal zählt. Kompaktierte Items halten ihre Payloads bereits in Segment-Files.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PayloadSpiller {
+
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final ContentAddressedPayloadStore payloadStore;
+    private final MappedPayloadSegmentStore segmentStore;
+
+    private ScheduledExecutorService spiller;
+
+    @Value("${upload.storage.spill-interval:PT10S}")
+    private Duration spillInterval;
+
+    @Value("${upload.storage.spill-idle-after:PT10M}")
+    private Duration spillIdleAfter;
+
+    @Value("${upload.storage.heap-budget:256MB}")
+    private DataSize heapBudget;
+
+    @PostConstruct
+    void start() {
+        spiller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("payload-spiller").daemon().factory());
+        spiller.scheduleWithFixedDelay(this::spill, spillInterval.toMillis(), spillInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        spiller.shutdownNow();
+    }
+
+    /**
+     * Lagert alle Heap-Payloads einer Session aus.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Anzahl ausgelagerter Zeichen
+     */
+    public long spillSession(String uploadId) {
+        long spilled = 0;
+        for (UploadInboxItem item : inboxItemRepository.findMutable(uploadId)) {
+            spilled += spillItem(item);
+        }
+        return spilled;
+    }
+
+    void spill() {
+        try {
+            long now = System.nanoTime();
+            long budget = heapBudget.toBytes();
+            // Am längsten nicht benutzte Sessions zuerst: nach der ersten nicht ruhenden Session folgt keine mehr
+            for (String uploadId : inboxItemRepository.findUploadIdsByLastAccess()) {
+                boolean idle = inboxItemRepository.findLastAccessNanos(uploadId)
+                        .map(last -> now - last > spillIdleAfter.toNanos())
+                        .orElse(false);
+                if (!idle && payloadStore.residentChars() <= budget) {
+                    return;
+                }
+                for (UploadInboxItem item : inboxItemRepository.findMutable(uploadId)) {
+                    if (!idle && payloadStore.residentChars() <= budget) {
+                        return;
+                    }
+                    spillItem(item);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("payload spill failed", e);
+        }
+    }
+
+    /**
+     * @return Länge des ausgelagerten Payloads, 0 wenn nichts auf dem Heap lag
+     */
+    private long spillItem(UploadInboxItem item) {
+        String payload;
+        long payloadHash;
+        synchronized (item) {
+            payload = item.getResidentPayload();
+            if (payload == null || !inboxItemRepository.containsMutable(item)) {
+                return 0; // bereits ausgelagert oder inzwischen kompaktiert (der Compactor gibt den Payload frei)
+            }
+            payloadHash = item.getPayloadHash();
+            item.spill(segmentStore.append(payload));
+        }
+        // Die Referenz im Dedup-Speicher freigeben, sonst bliebe der Payload auf dem Heap erreichbar
+        payloadStore.release(payloadHash, payload);
+        return payload.length();
+    }
+}
@@ -0,0 +1,36 @@
+package de.jwiegmann.upload.control.payload;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Referenz auf einen in ein Segment-File ausgelagerten Payload (UTF-8 Bytes an fester Position).
+ */
+public final class SpilledPayload {
+
+    private final PayloadSegment segment;
+    private final int offset;
+    private final int length;
+
+    SpilledPayload(PayloadSegment segment, int offset, int length) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Liest den Payload aus dem gemappten Segment; fehlende Seiten lädt das Betriebssystem nach.
+     */
+    public String load() {
+        byte[] bytes = new byte[length];
+        segment.read(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    PayloadSegment segment() {
+        return segment;
+    }
+}
@@ -0,0 +1,145 @@
+package de.jwiegmann.upload.control.repository;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.dto.InboxItemMetadata;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.payload.SpilledPayload;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unveränderliche, spaltenweise gepackte DONE-Items einer abgeschlossenen Session.
+ * Statt eines Objekts pro Item gibt es je Feld ein Array (sortierte seqNos, Hashes, Zeitstempel als
+ * Epoch-Millis) sowie je Item die Referenz auf seinen Payload im Segment-File; auf dem Heap liegt kein
+ * Payload. Lesezugriffe erzeugen jeweils ein neues {@link UploadInboxItem}; da DONE ein Endzustand ist,
+ * werden diese Objekte nie verändert.
+ */
+final class CompactedItems {
+
+    private static final CompactedItems EMPTY = new CompactedItems(
+            new int[0], new long[0], new long[0], new long[0], new SpilledPayload[0]);
+
+    private final int[] seqNos;
+    private final long[] payloadHashes;
+    private final long[] createdAtMillis;
+    private final long[] updatedAtMillis;
+    private final SpilledPayload[] spilled; // null-Eintrag für Items ohne Payload
+
+    private CompactedItems(int[] seqNos, long[] payloadHashes, long[] createdAtMillis, long[] updatedAtMillis,
+                           SpilledPayload[] spilled) {
+        this.seqNos = seqNos;
+        this.payloadHashes = payloadHashes;
+        this.createdAtMillis = createdAtMillis;
+        this.updatedAtMillis = updatedAtMillis;
+        this.spilled = spilled;
+    }
+
+    static CompactedItems empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Packt die bisherigen Spalten zusammen mit weiteren DONE-Items (aufsteigend nach seqNo, ohne
+     * Überschneidung mit den bisherigen seqNos) in eine neue Instanz. Die Payloads der Items müssen bereits
+     * ausgelagert sein, siehe {@link #isPackable}.
+     */
+    CompactedItems merge(List<UploadInboxItem> added) {
+        int size = seqNos.length + added.size();
+        int[] newSeqNos = new int[size];
+        long[] newHashes = new long[size];
+        long[] newCreated = new long[size];
+        long[] newUpdated = new long[size];
+        SpilledPayload[] newSpilled = new SpilledPayload[size];
+
+        int existing = 0;
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            boolean takeExisting = next >= added.size()
+                    || (existing < seqNos.length && seqNos[existing] < added.get(next).getSeqNo());
+            if (takeExisting) {
+                newSeqNos[i] = seqNos[existing];
+                newHashes[i] = payloadHashes[existing];
+                newCreated[i] = createdAtMillis[existing];
+                newUpdated[i] = updatedAtMillis[existing];
+                newSpilled[i] = spilled[existing];
+                existing++;
+            } else {
+                UploadInboxItem item = added.get(next++);
+                newSeqNos[i] = item.getSeqNo();
+                newHashes[i] = item.getPayloadHash();
+                newCreated[i] = toMillis(item.getCreatedAt());
+                newUpdated[i] = toMillis(item.getUpdatedAt());
+                synchronized (item) { // der PayloadSpiller setzt die Referenz unter dem Monitor des Items
+                    newSpilled[i] = item.getSpilledPayload();
+                }
+            }
+        }
+
+        return new CompactedItems(newSeqNos, newHashes, newCreated, newUpdated, newSpilled);
+    }
+
+    /**
+     * @return true, wenn das Item DONE ist und keinen Payload mehr auf dem Heap hält
+     */
+    static boolean isPackable(UploadInboxItem item) {
+        synchronized (item) {
+            return item.getStatus() == UploadItemStatus.DONE && item.getResidentPayload() == null;
+        }
+    }
+
+    int size() {
+        return seqNos.length;
+    }
+
+    boolean contains(int seqNo) {
+        return Arrays.binarySearch(seqNos, seqNo) >= 0;
+    }
+
+    /**
+     * @return Index der ersten seqNo {@code >= seqNo}
+     */
+    int indexFrom(int seqNo) {
+        int index = Arrays.binarySearch(seqNos, seqNo);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    int seqNoAt(int index) {
+        return seqNos[index];
+    }
+
+    UploadInboxItem find(String uploadId, int seqNo) {
+        int index = Arrays.binarySearch(seqNos, seqNo);
+        return index >= 0 ? itemAt(uploadId, index) : null;
+    }
+
+    UploadInboxItem itemAt(String uploadId, int index) {
+        return UploadInboxItem.builder()
+                .uploadId(uploadId)
+                .seqNo(seqNos[index])
+                .spilledPayload(spilled[index])
+                .payloadHash(payloadHashes[index])
+                .status(UploadItemStatus.DONE)
+                .createdAt(toDateTime(createdAtMillis[index]))
+                .updatedAt(toDateTime(updatedAtMillis[index]))
+                .build();
+    }
+
+    /**
+     * Metadaten direkt aus den Spalten, ohne den Payload zu dekodieren.
+     */
+    InboxItemMetadata metadataAt(int index) {
+        return new InboxItemMetadata(seqNos[index], UploadItemStatus.DONE, payloadHashes[index]);
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.toInstant(ZoneOffset.UTC).toEpochMilli() : Long.MIN_VALUE;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return millis != Long.MIN_VALUE ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC) : null;
+    }
+}
@@ -1,27 +1,49 @@
 package de.jwiegmann.upload.control.repository;
 
 import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.dto.InboxItemMetadata;
 import de.jwiegmann.upload.control.dto.UploadInboxItem;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Einfaches In-Memory Repository für InboxItems.
- * Map Struktur: Map<uploadId, Map<sequenceNumber, InboxItem>>.
+ * Map Struktur: Map<uploadId, SessionItems>, je Session eine NavigableMap<sequenceNumber, InboxItem> mit den
+ * veränderlichen Items und optional die kompaktierten DONE-Items einer versiegelten Session (siehe {@link #compact}).
+ * Die Items einer Session sind nach seqNo sortiert, sodass sie ohne Kopie in Reihenfolge gelesen werden können.
+ * Schreib- und Payload-Zugriffe merken sich je Session den Zeitpunkt, danach wählt der PayloadSpiller aus,
+ * welche Payloads ausgelagert werden (zuletzt benutzte Sessions zuletzt).
  */
 @Repository
 public class InMemoryUploadInboxItemRepository {
 
-    private final Map<String, Map<Integer, UploadInboxItem>> store = new ConcurrentHashMap<>();
+    private final Map<String, SessionItems> store = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAccessNanos = new ConcurrentHashMap<>();
 
     public Optional<UploadInboxItem> find(String uploadId, int sequenceNumber) {
-        return Optional.ofNullable(store.getOrDefault(uploadId, Map.of()).get(sequenceNumber));
+        SessionItems items = store.get(uploadId);
+        if (items == null) {
+            return Optional.empty();
+        }
+        touch(uploadId);
+        UploadInboxItem item = items.mutable.get(sequenceNumber);
+        return Optional.ofNullable(item != null ? item : items.compacted.find(uploadId, sequenceNumber));
     }
 
     /**
@@ -29,17 +51,242 @@ public class InMemoryUploadInboxItemRepository {
      * Gibt true zurück, wenn gespeichert wurde, false wenn bereits vorhanden.
      */
     public boolean saveIfAbsent(UploadInboxItem item) {
-        return store.computeIfAbsent(item.getUploadId(), k -> new ConcurrentHashMap<>())
-                .putIfAbsent(item.getSeqNo(), item) == null;
+        String uploadId = item.getUploadId();
+        int seqNo = item.getSeqNo();
+        boolean saved = false;
+        SessionItems items;
+        do {
+            items = store.computeIfAbsent(uploadId, k -> SessionItems.empty());
+            if (!saved) {
+                if (items.compacted.contains(seqNo) || items.mutable.putIfAbsent(seqNo, item) != null) {
+                    return false;
+                }
+                saved = true;
+            } else if (!items.compacted.contains(seqNo)) {
+                items.mutable.putIfAbsent(seqNo, item);
+            }
+        } while (store.get(uploadId) != items); // parallel kompaktiert → auch im neuen Stand ablegen
+        touch(uploadId);
+        return true;
     }
 
     public List<UploadInboxItem> findAll(String uploadId) {
-        return new ArrayList<>(store.getOrDefault(uploadId, Map.of()).values());
+        SessionItems items = store.get(uploadId);
+        if (items == null) {
+            return new ArrayList<>();
+        }
+        if (items.compacted.size() == 0) {
+            return new ArrayList<>(items.mutable.values());
+        }
+        List<UploadInboxItem> all = new ArrayList<>(items.compacted.size() + items.mutable.size());
+        orderedItems(uploadId, items, 1).forEachRemaining(all::add);
+        return all;
     }
 
     public List<UploadInboxItem> findByStatus(String uploadId, UploadItemStatus status) {
-        return store.getOrDefault(uploadId, Map.of()).values().stream()
+        if (status == UploadItemStatus.DONE) {
+            return findAll(uploadId).stream()
+                    .filter(i -> i.getStatus() == status)
+                    .collect(Collectors.toList());
+        }
+        // Kompaktierte Items sind immer DONE, für alle anderen Status genügen die veränderlichen Items
+        return findMutable(uploadId).stream()
                 .filter(i -> i.getStatus() == status)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Liefert nur die als veränderliche Objekte gehaltenen Items einer Session, ohne kompaktierte Items.
+     */
+    public List<UploadInboxItem> findMutable(String uploadId) {
+        SessionItems items = store.get(uploadId);
+        return items == null ? new ArrayList<>() : new ArrayList<>(items.mutable.values());
+    }
+
+    /**
+     * Prüft, ob genau dieses Objekt noch als veränderliches Item im Repository liegt (also nicht kompaktiert wurde).
+     */
+    public boolean containsMutable(UploadInboxItem item) {
+        SessionItems items = store.get(item.getUploadId());
+        return items != null && items.mutable.get(item.getSeqNo()) == item;
+    }
+
+    /**
+     * Liest die Items einer Session ab {@code fromSeqNo} aufsteigend nach seqNo, ohne sie zu kopieren.
+     * Der Stream ist schwach konsistent: parallel eingefügte Items können, müssen aber nicht enthalten sein.
+     */
+    public Stream<UploadInboxItem> streamOrdered(String uploadId, int fromSeqNo) {
+        SessionItems items = store.get(uploadId);
+        if (items == null) {
+            return Stream.empty();
+        }
+        touch(uploadId);
+        return stream(uploadId, items, fromSeqNo);
+    }
+
+    /**
+     * Wie {@link #streamOrdered} ab seqNo 1, zählt aber nicht als Zugriff auf die Session. Für Hintergrundjobs
+     * (Snapshots), die alle Sessions lesen und dabei die Auslagerungsreihenfolge nicht verfälschen sollen.
+     */
+    public Stream<UploadInboxItem> streamAll(String uploadId) {
+        SessionItems items = store.get(uploadId);
+        return items == null ? Stream.empty() : stream(uploadId, items, 1);
+    }
+
+    /**
+     * Liest seqNo, Status und Hash aller Items einer Session aufsteigend nach seqNo, ohne Item-Objekte für
+     * kompaktierte Items zu bauen oder Payloads zu dekodieren. Zählt nicht als Zugriff auf die Session, da
+     * keine Payloads gelesen werden. Schwach konsistent wie {@link #streamOrdered}.
+     */
+    public Stream<InboxItemMetadata> streamMetadata(String uploadId) {
+        SessionItems items = store.get(uploadId);
+        if (items == null) {
+            return Stream.empty();
+        }
+        if (items.compacted.size() == 0) {
+            return items.mutable.values().stream().map(InboxItemMetadata::of);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new OrderedItems<>(items, 1, items.compacted::metadataAt, InboxItemMetadata::of),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Setzt die Items einer Session beim Start aus einem Snapshot, ein vorhandener Stand wird ersetzt.
+     *
+     * @param items Veränderliche Items der Session, aufsteigend nach seqNo
+     */
+    public void restore(String uploadId, List<UploadInboxItem> items) {
+        SessionItems restored = SessionItems.empty();
+        for (UploadInboxItem item : items) {
+            restored.mutable.put(item.getSeqNo(), item);
+        }
+        store.put(uploadId, restored);
+        touch(uploadId);
+    }
+
+    /**
+     * Packt alle DONE-Items einer Session, deren Payload bereits ausgelagert ist, spaltenweise in eine
+     * unveränderliche Struktur. Alle übrigen Items (insbesondere ERROR-Items, die noch erneut hochgeladen werden
+     * können) bleiben veränderliche Objekte. Der neue Stand wird atomar ersetzt; laufende Leser sehen weiterhin
+     * den bisherigen, vollständigen Stand.
+     *
+     * @param uploadId ID der Upload-Session
+     * @return Die frisch gepackten Items (deren Objekte nicht mehr im Repository liegen), leer wenn nichts zu tun war
+     */
+    public List<UploadInboxItem> compact(String uploadId) {
+        SessionItems current = store.get(uploadId);
+        if (current == null) {
+            return List.of();
+        }
+
+        List<UploadInboxItem> done = new ArrayList<>();
+        NavigableMap<Integer, UploadInboxItem> remaining = new ConcurrentSkipListMap<>();
+        for (UploadInboxItem item : current.mutable.values()) {
+            if (CompactedItems.isPackable(item)) {
+                done.add(item); // DONE ist ein Endzustand, das Objekt ändert sich nicht mehr
+            } else {
+                remaining.put(item.getSeqNo(), item);
+            }
+        }
+        if (done.isEmpty()) {
+            return List.of();
+        }
+
+        SessionItems next = new SessionItems(current.compacted.merge(done), remaining);
+        if (!store.replace(uploadId, current, next)) {
+            return List.of();
+        }
+        // Items, die während des Packens noch in den alten Stand eingefügt wurden, übernehmen
+        for (UploadInboxItem item : current.mutable.values()) {
+            if (!next.compacted.contains(item.getSeqNo())) {
+                next.mutable.putIfAbsent(item.getSeqNo(), item);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Liefert die uploadIds aller Sessions mit Items, am längsten nicht benutzte zuerst.
+     */
+    public List<String> findUploadIdsByLastAccess() {
+        return lastAccessNanos.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a - b, 0)))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Zeitpunkt ({@link System#nanoTime()}) des letzten Schreib- oder Payload-Zugriffs auf die Session.
+     */
+    public Optional<Long> findLastAccessNanos(String uploadId) {
+        return Optional.ofNullable(lastAccessNanos.get(uploadId));
+    }
+
+    private static Stream<UploadInboxItem> stream(String uploadId, SessionItems items, int fromSeqNo) {
+        if (items.compacted.size() == 0) {
+            return items.mutable.tailMap(fromSeqNo, true).values().stream();
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(orderedItems(uploadId, items, fromSeqNo),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.NONNULL), false);
+    }
+
+    private static OrderedItems<UploadInboxItem> orderedItems(String uploadId, SessionItems items, int fromSeqNo) {
+        return new OrderedItems<>(items, fromSeqNo, index -> items.compacted.itemAt(uploadId, index), Function.identity());
+    }
+
+    private void touch(String uploadId) {
+        if (store.containsKey(uploadId)) {
+            lastAccessNanos.put(uploadId, System.nanoTime());
+        }
+    }
+
+    private record SessionItems(CompactedItems compacted, NavigableMap<Integer, UploadInboxItem> mutable) {
+
+        static SessionItems empty() {
+            return new SessionItems(CompactedItems.empty(), new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * Führt kompaktierte und veränderliche Items aufsteigend nach seqNo zusammen und bildet sie dabei ab.
+     */
+    private static final class OrderedItems<T> implements Iterator<T> {
+
+        private final CompactedItems compacted;
+        private final IntFunction<T> compactedAt;
+        private final Function<UploadInboxItem, T> mutableAs;
+        private final Iterator<UploadInboxItem> mutable;
+        private int compactedIndex;
+        private UploadInboxItem nextMutable;
+
+        private OrderedItems(SessionItems items, int fromSeqNo,
+                             IntFunction<T> compactedAt, Function<UploadInboxItem, T> mutableAs) {
+            this.compacted = items.compacted;
+            this.compactedAt = compactedAt;
+            this.mutableAs = mutableAs;
+            this.mutable = items.mutable.tailMap(fromSeqNo, true).values().iterator();
+            this.compactedIndex = compacted.indexFrom(fromSeqNo);
+            this.nextMutable = mutable.hasNext() ? mutable.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextMutable != null || compactedIndex < compacted.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextMutable != null
+                    && (compactedIndex >= compacted.size() || nextMutable.getSeqNo() < compacted.seqNoAt(compactedIndex))) {
+                UploadInboxItem item = nextMutable;
+                nextMutable = mutable.hasNext() ? mutable.next() : null;
+                return mutableAs.apply(item);
+            }
+            return compactedAt.apply(compactedIndex++);
+        }
+    }
 }
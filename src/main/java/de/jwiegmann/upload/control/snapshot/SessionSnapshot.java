@@ -0,0 +1,13 @@
+package de.jwiegmann.upload.control.snapshot;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+
+import java.util.List;
+
+/**
+ * Inhalt einer gelesenen Snapshot-Datei: die Session (mit der Version, bei der der Snapshot begonnen hat),
+ * ihr Hash-Manifest (null, wenn keines registriert war) sowie die Items aufsteigend nach seqNo.
+ */
+record SessionSnapshot(UploadSession session, long[] manifest, List<UploadInboxItem> items) {
+}
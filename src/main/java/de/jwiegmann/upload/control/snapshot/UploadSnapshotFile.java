@@ -0,0 +1,239 @@
+package de.jwiegmann.upload.control.snapshot;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binärformat einer Snapshot-Datei (eine Datei je Session, big-endian):
+ * <pre>
+ * magic int, format byte
+ * Session: uploadId, status, createdAt, expiresAt, bewNr, vslNummer, expectedCount int, payloadBytes long, version long
+ * Manifest: Länge int (-1 = keins), je seqNo ein long
+ * Items: je Item seqNo int (&gt; 0), status, payloadHash long, retryCount int, errorMessage, createdAt, updatedAt, payload
+ * Ende: seqNo 0, magic int
+ * </pre>
+ * Strings sind als Länge int (-1 = null) plus UTF-8 Bytes abgelegt, Zeitstempel als Epoch-Sekunde long plus Nanos int
+ * ({@link Long#MIN_VALUE} = null). Geschrieben wird in eine temporäre Datei, die erst nach {@code fsync} atomar an die
+ * Stelle der bisherigen Datei verschoben wird; eine Datei ohne Endmarke gilt beim Lesen als defekt.
+ */
+final class UploadSnapshotFile {
+
+    static final String SUFFIX = ".snap";
+    static final String TMP_SUFFIX = SUFFIX + ".tmp";
+
+    private static final int MAGIC = 0x55534E50; // "USNP"
+    private static final byte FORMAT = 1;
+
+    private UploadSnapshotFile() {
+    }
+
+    /**
+     * Öffnet die temporäre Datei einer Session; {@link Writer#commit()} ersetzt damit deren Snapshot-Datei.
+     */
+    static Writer create(Path dir, String uploadId) throws IOException {
+        return new Writer(dir.resolve(uploadId + SUFFIX), dir.resolve(uploadId + TMP_SUFFIX));
+    }
+
+    /**
+     * Liest eine Snapshot-Datei über ein Memory-Mapping.
+     *
+     * @throws IOException wenn die Datei unvollständig ist, ein anderes Format hat oder größer als 2 GB ist
+     */
+    static SessionSnapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("snapshot too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("corrupt snapshot: " + file, e);
+        }
+    }
+
+    private static SessionSnapshot read(ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC || in.get() != FORMAT) {
+            throw new IOException("unknown snapshot format");
+        }
+
+        String uploadId = readString(in);
+        String status = readString(in);
+        UploadSession session = UploadSession.builder()
+                .uploadId(uploadId)
+                .status(status != null ? UploadSessionStatus.valueOf(status) : null)
+                .createdAt(readDateTime(in))
+                .expiresAt(readDateTime(in))
+                .bewNr(readString(in))
+                .vslNummer(readString(in))
+                .expectedCount(in.getInt())
+                .payloadBytes(in.getLong())
+                .version(in.getLong())
+                .build();
+
+        long[] manifest = null;
+        int manifestLength = in.getInt();
+        if (manifestLength >= 0) {
+            manifest = new long[manifestLength];
+            in.asLongBuffer().get(manifest);
+            in.position(in.position() + manifestLength * Long.BYTES);
+        }
+
+        List<UploadInboxItem> items = new ArrayList<>();
+        for (int seqNo = in.getInt(); seqNo != 0; seqNo = in.getInt()) {
+            String itemStatus = readString(in);
+            items.add(UploadInboxItem.builder()
+                    .uploadId(uploadId)
+                    .seqNo(seqNo)
+                    .status(itemStatus != null ? UploadItemStatus.valueOf(itemStatus) : null)
+                    .payloadHash(in.getLong())
+                    .retryCount(in.getInt())
+                    .errorMessage(readString(in))
+                    .createdAt(readDateTime(in))
+                    .updatedAt(readDateTime(in))
+                    .payload(readString(in))
+                    .build());
+        }
+
+        if (in.getInt() != MAGIC) {
+            throw new IOException("snapshot end marker missing");
+        }
+        return new SessionSnapshot(session, manifest, items);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        int nanos = in.getInt();
+        return epochSecond != Long.MIN_VALUE
+                ? LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC)
+                : null;
+    }
+
+    /**
+     * Schreibt eine Session sequenziell: {@link #writeSession}, beliebig viele {@link #writeItem} aufsteigend nach
+     * seqNo, dann {@link #commit()}. Ohne commit verwirft {@link #close()} die temporäre Datei.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path tmp;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private boolean committed;
+
+        private Writer(Path target, Path tmp) throws IOException {
+            this.target = target;
+            this.tmp = tmp;
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        }
+
+        void writeSession(UploadSession session, long[] manifest) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT);
+            writeString(session.getUploadId());
+            writeString(session.getStatus() != null ? session.getStatus().name() : null);
+            writeDateTime(session.getCreatedAt());
+            writeDateTime(session.getExpiresAt());
+            writeString(session.getBewNr());
+            writeString(session.getVslNummer());
+            out.writeInt(session.getExpectedCount());
+            out.writeLong(session.getPayloadBytes());
+            out.writeLong(session.getVersion());
+
+            if (manifest == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(manifest.length);
+                for (long hash : manifest) {
+                    out.writeLong(hash);
+                }
+            }
+        }
+
+        /**
+         * @param item Kopie des Items mit geladenem Payload
+         */
+        void writeItem(UploadInboxItem item) throws IOException {
+            out.writeInt(item.getSeqNo());
+            writeString(item.getStatus() != null ? item.getStatus().name() : null);
+            out.writeLong(item.getPayloadHash());
+            out.writeInt(item.getRetryCount());
+            writeString(item.getErrorMessage());
+            writeDateTime(item.getCreatedAt());
+            writeDateTime(item.getUpdatedAt());
+            writeString(item.getResidentPayload());
+        }
+
+        void commit() throws IOException {
+            out.writeInt(0);
+            out.writeInt(MAGIC);
+            out.flush();
+            channel.force(true);
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeDateTime(LocalDateTime value) throws IOException {
+            if (value == null) {
+                out.writeLong(Long.MIN_VALUE);
+                out.writeInt(0);
+                return;
+            }
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+}
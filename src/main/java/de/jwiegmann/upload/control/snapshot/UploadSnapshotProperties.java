@@ -0,0 +1,27 @@
+package de.jwiegmann.upload.control.snapshot;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Periodische Snapshots der Sessions und Items für einen schnellen Neustart.
+ * <pre>
+ * upload.snapshot:
+ *   dir: /var/lib/upload/snapshots  # ohne Angabe keine Snapshots
+ *   interval: PT30S                 # Abstand der Läufe, geschrieben werden nur geänderte Sessions
+ *   load-parallelism: 8             # Threads beim Laden, Default Anzahl CPUs
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.snapshot")
+public class UploadSnapshotProperties {
+
+    private Path dir;
+    private Duration interval = Duration.ofSeconds(30);
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,267 @@
+package de.jwiegmann.upload.control.snapshot;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.aggregation.PayloadAggregationService;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import de.jwiegmann.upload.control.manifest.UploadManifestRegistry;
+import de.jwiegmann.upload.control.payload.ContentAddressedPayloadStore;
+import de.jwiegmann.upload.control.payload.SpilledPayload;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.watermark.CompletionWatermarkTracker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Schreibt periodisch je Session eine Snapshot-Datei (siehe {@link UploadSnapshotFile}) und stellt beim Start
+ * Sessions, Items und Hash-Manifeste daraus wieder her, bevor die Anwendung Requests annimmt.
+ * <p>
+ * Geschrieben wird ohne die Annahme anzuhalten: Die Version der Session zu Beginn eines Snapshots dient als Epoche,
+ * Sessions, deren Version seit dem letzten Snapshot unverändert ist, werden übersprungen. Jedes Item wird nur kurz
+ * unter seinem Monitor kopiert; parallel geänderte Items erhöhen die Version, sodass der nächste Lauf die Session
+ * erneut schreibt. Beim Laden werden die Dateien über Memory-Mapping parallel gelesen.
+ * <p>
+ * Nicht Teil des Snapshots sind Leases (PROCESSING-Items stehen nach dem Start wieder als PENDING bereit),
+ * geplante serverseitige Retries von ERROR-Items und die Kontrollsummen, die aus den Payloads neu berechnet werden.
+ */
+@Slf4j
+@Component
+@DependsOn("mappedPayloadSegmentStore") // der letzte Snapshot beim Herunterfahren liest noch ausgelagerte Payloads
+@RequiredArgsConstructor
+public class UploadSnapshotService {
+
+    private final UploadSnapshotProperties properties;
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+    private final UploadManifestRegistry manifests;
+    private final PayloadAggregationService payloadAggregation;
+    private final ContentAddressedPayloadStore payloadStore;
+    private final CompletionWatermarkTracker watermarks;
+    private final InboxLeaseService inboxLeaseService;
+
+    // uploadId → Version der Session beim zuletzt geschriebenen bzw. geladenen Snapshot
+    private final Map<String, Long> writtenVersions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (properties.getDir() == null) {
+            return;
+        }
+        Files.createDirectories(properties.getDir());
+        loadSnapshots();
+
+        long interval = properties.getInterval().toMillis();
+        writer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("upload-snapshot-writer").daemon().factory());
+        writer.scheduleWithFixedDelay(this::writeSnapshots, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown(); // kein Interrupt: ein unterbrochener FileChannel würde den laufenden Snapshot abbrechen
+        writeSnapshots();
+    }
+
+    /**
+     * Schreibt alle Sessions, die sich seit ihrem letzten Snapshot geändert haben.
+     *
+     * @return Anzahl geschriebener Sessions
+     */
+    public synchronized int writeSnapshots() {
+        int written = 0;
+        for (UploadSession session : uploadSessionRepository.findAll()) {
+            long epoch = session.getVersion();
+            Long writtenVersion = writtenVersions.get(session.getUploadId());
+            if (writtenVersion != null && writtenVersion == epoch) {
+                continue;
+            }
+            try {
+                writeSnapshot(session, epoch);
+                writtenVersions.put(session.getUploadId(), epoch);
+                written++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("snapshot failed for upload {}", session.getUploadId(), e);
+            }
+        }
+        return written;
+    }
+
+    private void writeSnapshot(UploadSession session, long epoch) throws IOException {
+        UploadSession header;
+        synchronized (session) {
+            header = UploadSession.builder()
+                    .uploadId(session.getUploadId())
+                    .status(session.getStatus())
+                    .createdAt(session.getCreatedAt())
+                    .expiresAt(session.getExpiresAt())
+                    .bewNr(session.getBewNr())
+                    .vslNummer(session.getVslNummer())
+                    .expectedCount(session.getExpectedCount())
+                    .payloadBytes(session.getPayloadBytes())
+                    .version(epoch)
+                    .build();
+        }
+
+        try (UploadSnapshotFile.Writer out = UploadSnapshotFile.create(properties.getDir(), session.getUploadId());
+             Stream<UploadInboxItem> items = inboxItemRepository.streamAll(session.getUploadId())) {
+            out.writeSession(header, manifests.find(session.getUploadId()).orElse(null));
+            for (Iterator<UploadInboxItem> it = items.iterator(); it.hasNext(); ) {
+                out.writeItem(copyOf(it.next()));
+            }
+            out.commit();
+        }
+    }
+
+    /**
+     * Kopiert das Item unter seinem Monitor; ein ausgelagerter Payload wird erst danach geladen.
+     */
+    private static UploadInboxItem copyOf(UploadInboxItem item) {
+        UploadInboxItem copy;
+        SpilledPayload spilled;
+        synchronized (item) {
+            copy = UploadInboxItem.builder()
+                    .uploadId(item.getUploadId())
+                    .seqNo(item.getSeqNo())
+                    .payload(item.getResidentPayload())
+                    .payloadHash(item.getPayloadHash())
+                    .status(item.getStatus())
+                    .errorMessage(item.getErrorMessage())
+                    .retryCount(item.getRetryCount())
+                    .createdAt(item.getCreatedAt())
+                    .updatedAt(item.getUpdatedAt())
+                    .build();
+            spilled = item.getSpilledPayload();
+        }
+        if (copy.getResidentPayload() == null && spilled != null) {
+            copy.setPayload(spilled.load());
+        }
+        return copy;
+    }
+
+    private void loadSnapshots() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(properties.getDir())) {
+            for (Path file : dir) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(UploadSnapshotFile.TMP_SUFFIX)) {
+                    Files.deleteIfExists(file); // beim Schreiben abgebrochen, die vorherige Datei ist noch gültig
+                } else if (name.endsWith(UploadSnapshotFile.SUFFIX)) {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        int parallelism = Math.max(1, Math.min(properties.getLoadParallelism(), files.size()));
+        ExecutorService loader = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("upload-snapshot-loader-", 0).factory());
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(loader.submit(() -> restore(file)));
+            }
+
+            int sessions = 0;
+            long items = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    items += results.get(i).get();
+                    sessions++;
+                } catch (ExecutionException e) {
+                    log.warn("could not restore snapshot {}", files.get(i), e.getCause());
+                }
+            }
+            log.info("restored {} sessions with {} items from snapshots in {} ms",
+                    sessions, items, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while restoring snapshots", e);
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    /**
+     * Stellt eine Session aus ihrer Snapshot-Datei wieder her.
+     *
+     * @return Anzahl wiederhergestellter Items
+     */
+    private int restore(Path file) {
+        SessionSnapshot snapshot;
+        try {
+            snapshot = UploadSnapshotFile.read(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        UploadSession session = snapshot.session();
+        String uploadId = session.getUploadId();
+
+        int done = 0;
+        for (UploadInboxItem item : snapshot.items()) {
+            if (item.getStatus() == UploadItemStatus.PROCESSING) {
+                item.setStatus(UploadItemStatus.PENDING); // das Lease ist mit dem Neustart verloren
+            }
+            if (item.getStatus() == UploadItemStatus.DONE) {
+                done++;
+            }
+            session.countItemTransition(item.getSeqNo(), null, item.getStatus());
+            String payload = item.getResidentPayload();
+            if (payload != null) {
+                item.setPayload(payloadStore.acquire(item.getPayloadHash(), payload));
+            }
+        }
+        // Zähler aus den Items, da sie beim Schreiben vor den Items und damit ggf. älter gelesen wurden
+        session.setReceivedCount(snapshot.items().size());
+        session.setDoneCount(done);
+
+        if (snapshot.manifest() != null && !session.getStatus().isEnded()) {
+            manifests.register(uploadId, snapshot.manifest());
+        }
+        inboxItemRepository.restore(uploadId, snapshot.items());
+        uploadSessionRepository.save(session);
+        payloadAggregation.rebuild(uploadId);
+        if (session.getStatus().isEnded()) {
+            payloadAggregation.sessionEnded(uploadId); // Endstand festhalten wie beim Beenden im Betrieb
+        }
+
+        for (UploadInboxItem item : snapshot.items()) {
+            watermarks.markReceived(uploadId, item.getSeqNo());
+            if (item.getStatus() == UploadItemStatus.DONE) {
+                watermarks.markDone(uploadId, item.getSeqNo());
+            } else if (item.getStatus() == UploadItemStatus.PENDING) {
+                inboxLeaseService.offer(item);
+            }
+        }
+        writtenVersions.put(uploadId, session.getVersion());
+        return snapshot.items().size();
+    }
+}
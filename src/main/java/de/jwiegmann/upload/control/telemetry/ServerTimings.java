@@ -0,0 +1,88 @@
+package de.jwiegmann.upload.control.telemetry;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Sammelt Phasendauern des aktuellen Requests für den {@code Server-Timing}-Header.
+ * Erfasst wird nur auf Threads, für die {@link #begin()} aufgerufen wurde (Request-Threads);
+ * Aufrufe aus Hintergrund-Threads (z.B. asynchrone Annahme) sind wirkungslos. Teilaufgaben eines Requests auf
+ * anderen Threads (Parallel-Streams) sammeln ihre Phasen per {@link #capture} und übertragen sie nach dem Join.
+ */
+public final class ServerTimings {
+
+    private static final ThreadLocal<Map<String, Long>> PHASES = new ThreadLocal<>();
+
+    private ServerTimings() {
+    }
+
+    public static void begin() {
+        PHASES.set(new LinkedHashMap<>());
+    }
+
+    public static void end() {
+        PHASES.remove();
+    }
+
+    /**
+     * Addiert die Dauer einer Phase; mehrfach erfasste Phasen (z.B. mehrere Sessions) werden summiert.
+     */
+    public static void record(String phase, long nanos) {
+        Map<String, Long> phases = PHASES.get();
+        if (phases != null) {
+            phases.merge(phase, nanos, Long::sum);
+        }
+    }
+
+    /**
+     * Führt eine Teilaufgabe aus und sammelt ihre Phasen getrennt vom Thread, auf dem sie läuft (z.B. im
+     * ForkJoin-Pool eines Parallel-Streams). Ein bereits laufendes Sammeln des Threads bleibt unberührt.
+     *
+     * @return Ergebnis samt Phasen, per {@link Captured#recordAndGet()} auf dem Request-Thread zu übernehmen
+     */
+    public static <T> Captured<T> capture(Supplier<T> task) {
+        Map<String, Long> outer = PHASES.get();
+        Map<String, Long> phases = new LinkedHashMap<>();
+        PHASES.set(phases);
+        try {
+            return new Captured<>(task.get(), phases);
+        } finally {
+            if (outer != null) {
+                PHASES.set(outer);
+            } else {
+                PHASES.remove();
+            }
+        }
+    }
+
+    /**
+     * Liefert die bisher erfassten Phasen als Header-Wert, z.B. {@code validate;dur=0.120, process;dur=3.412},
+     * oder null, wenn nichts erfasst wurde.
+     */
+    public static String headerValue() {
+        Map<String, Long> phases = PHASES.get();
+        if (phases == null || phases.isEmpty()) {
+            return null;
+        }
+        return phases.entrySet().stream()
+                .map(e -> String.format(Locale.ROOT, "%s;dur=%.3f", e.getKey(), e.getValue() / 1_000_000.0))
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Ergebnis einer Teilaufgabe mit den dabei erfassten Phasen.
+     */
+    public record Captured<T>(T result, Map<String, Long> phases) {
+
+        /**
+         * Addiert die Phasen auf dem aufrufenden Thread und liefert das Ergebnis.
+         */
+        public T recordAndGet() {
+            phases.forEach(ServerTimings::record);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.jwiegmann.upload.control.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-Event für einen verarbeiteten Batch-Upload. Die Event-Dauer reicht von der Annahme bis zur
+ * aktualisierten Session; die Phasen sind zusätzlich einzeln erfasst.
+ */
+@Name("de.jwiegmann.upload.Batch")
+@Label("Upload Batch")
+@Description("Batch-Upload einer Session mit Ergebniszählern und Phasendauern")
+@Category({"Upload", "Batch"})
+@StackTrace(false)
+public class UploadBatchEvent extends Event {
+
+    @Label("Upload ID")
+    public String uploadId;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    @Label("Accepted")
+    public int accepted;
+
+    @Label("Reuploaded")
+    public int reuploaded;
+
+    @Label("Conflict")
+    public int conflict;
+
+    @Label("Invalid")
+    public int invalid;
+
+    @Label("Validation Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long validationDuration;
+
+    @Label("Processing Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long processingDuration;
+
+    @Label("Session Update Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sessionUpdateDuration;
+}
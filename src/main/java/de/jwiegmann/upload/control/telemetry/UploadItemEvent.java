@@ -0,0 +1,33 @@
+package de.jwiegmann.upload.control.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR-Event für die Verarbeitung eines einzelnen Items. Standardmäßig aus, da pro Item ausgelöst;
+ * bei Bedarf in der Recording-Konfiguration einschalten, dann nur Items ab 1 ms.
+ */
+@Name("de.jwiegmann.upload.Item")
+@Label("Upload Item")
+@Description("Verarbeitung eines einzelnen Items innerhalb eines Batch-Uploads")
+@Category({"Upload", "Batch"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public class UploadItemEvent extends Event {
+
+    @Label("Upload ID")
+    public String uploadId;
+
+    @Label("Sequence Number")
+    public int seqNo;
+
+    @Label("Result")
+    public String result;
+}
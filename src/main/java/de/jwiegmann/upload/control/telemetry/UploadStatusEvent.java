@@ -0,0 +1,28 @@
+package de.jwiegmann.upload.control.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Event für eine berechnete Status-Response (Statistiken und Sequenzen einer Session).
+ */
+@Name("de.jwiegmann.upload.Status")
+@Label("Upload Status")
+@Description("Berechnung des Upload-Status einer Session")
+@Category({"Upload", "Status"})
+@StackTrace(false)
+public class UploadStatusEvent extends Event {
+
+    @Label("Upload ID")
+    public String uploadId;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Sequence Format")
+    public String format;
+}
@@ -0,0 +1,121 @@
+package de.jwiegmann.upload.control.validation;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldRule;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldType;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Einmal beim Start kompilierter, thread-sicherer Regelsatz für Item-Payloads.
+ * Pointer und Patterns werden vorab aufgelöst; die Prüfung greift nur auf die konfigurierten Felder
+ * des bereits deserialisierten Payloads zu, ohne ihn zu kopieren oder erneut zu parsen.
+ */
+public final class CompiledPayloadValidator {
+
+    static final CompiledPayloadValidator ACCEPT_ALL = new CompiledPayloadValidator(new Rule[0]);
+
+    private final Rule[] rules;
+
+    private CompiledPayloadValidator(Rule[] rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Kompiliert die Feldregeln eines Profils.
+     *
+     * @throws IllegalArgumentException bei ungültigem Pointer, Pattern oder widersprüchlicher Regel
+     */
+    public static CompiledPayloadValidator compile(List<FieldRule> fieldRules) {
+        return new CompiledPayloadValidator(fieldRules.stream().map(Rule::compile).toArray(Rule[]::new));
+    }
+
+    /**
+     * Prüft einen Payload gegen alle Regeln und liefert die erste Verletzung.
+     *
+     * @param payload Item-Payload, null wenn nicht mitgeschickt
+     * @return Verletzung oder null wenn der Payload gültig ist
+     */
+    public PayloadViolation validate(JsonNode payload) {
+        if (rules.length == 0) {
+            return null;
+        }
+        if (payload == null || payload.isNull()) {
+            return new PayloadViolation("", "payload missing");
+        }
+        for (Rule rule : rules) {
+            String reason = rule.check(payload.at(rule.pointer));
+            if (reason != null) {
+                return new PayloadViolation(rule.field, reason);
+            }
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    /**
+     * Verletzte Regel: betroffenes Feld (JSON Pointer) und Grund.
+     */
+    public record PayloadViolation(String field, String reason) {
+    }
+
+    private record Rule(String field, JsonPointer pointer, FieldType type, boolean required,
+                        Pattern pattern, Double min, Double max, Integer maxLength) {
+
+        static Rule compile(FieldRule r) {
+            if (r.getField() == null) {
+                throw new IllegalArgumentException("validation rule without field");
+            }
+            if (r.getPattern() != null && r.getType() != FieldType.STRING) {
+                throw new IllegalArgumentException("pattern requires type STRING: " + r.getField());
+            }
+            return new Rule(r.getField(), JsonPointer.compile(r.getField()), r.getType(), r.isRequired(),
+                    r.getPattern() != null ? Pattern.compile(r.getPattern()) : null,
+                    r.getMin(), r.getMax(), r.getMaxLength());
+        }
+
+        String check(JsonNode value) {
+            if (value.isMissingNode() || value.isNull()) {
+                return required ? "required" : null;
+            }
+            if (type != null && !hasType(value)) {
+                return "expected " + type;
+            }
+            if (value.isNumber()) {
+                double number = value.asDouble();
+                if (min != null && number < min) {
+                    return "must be >= " + min;
+                }
+                if (max != null && number > max) {
+                    return "must be <= " + max;
+                }
+            }
+            if (value.isTextual()) {
+                String text = value.textValue();
+                if (maxLength != null && text.length() > maxLength) {
+                    return "longer than " + maxLength;
+                }
+                if (pattern != null && !pattern.matcher(text).matches()) {
+                    return "does not match " + pattern.pattern();
+                }
+            }
+            return null;
+        }
+
+        private boolean hasType(JsonNode value) {
+            return switch (type) {
+                case STRING -> value.isTextual();
+                case NUMBER -> value.isNumber();
+                case INTEGER -> value.isIntegralNumber();
+                case BOOLEAN -> value.isBoolean();
+                case OBJECT -> value.isObject();
+                case ARRAY -> value.isArray();
+            };
+        }
+    }
+}
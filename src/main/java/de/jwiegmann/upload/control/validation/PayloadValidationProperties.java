@@ -0,0 +1,53 @@
+package de.jwiegmann.upload.control.validation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Konfiguration der Payload-Validierung je bewNr/vslNummer.
+ * <pre>
+ * upload.validation.profiles:
+ *   - bewNr: "123456789"          # optional, fehlt = alle
+ *     rules:
+ *       - field: /betrag
+ *         type: NUMBER
+ *         required: true
+ *         min: 0
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.validation")
+public class PayloadValidationProperties {
+
+    // Ab dieser Batch-Größe werden Payloads parallel validiert (unter upload.max-items-per-request, Default 100)
+    private int parallelThreshold = 64;
+
+    private List<Profile> profiles = new ArrayList<>();
+
+    @Data
+    public static class Profile {
+        private String bewNr;
+        private String vslNummer;
+        private List<FieldRule> rules = new ArrayList<>();
+    }
+
+    @Data
+    public static class FieldRule {
+        private String field;          // JSON Pointer, z.B. /empfaenger/iban
+        private FieldType type;
+        private boolean required;
+        private String pattern;        // nur für STRING, muss den ganzen Wert matchen
+        private Double min;            // nur für NUMBER/INTEGER
+        private Double max;
+        private Integer maxLength;     // nur für STRING
+    }
+
+    public enum FieldType {
+        STRING, NUMBER, INTEGER, BOOLEAN, OBJECT, ARRAY
+    }
+}
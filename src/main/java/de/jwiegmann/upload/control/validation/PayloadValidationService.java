@@ -0,0 +1,89 @@
+package de.jwiegmann.upload.control.validation;
+
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.control.UploadErrorFactory;
+import de.jwiegmann.upload.control.validation.CompiledPayloadValidator.PayloadViolation;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Validierungsstufe für Item-Payloads beim Upload.
+ * Die konfigurierten Profile werden beim Start kompiliert; pro Batch wird der Regelsatz einmal über
+ * bewNr/vslNummer der Session aufgelöst (exakt vor bewNr vor vslNummer vor Default).
+ * Große Batches werden parallel geprüft.
+ */
+@Component
+@RequiredArgsConstructor
+public class PayloadValidationService {
+
+    private static final String ANY = "*";
+
+    private final PayloadValidationProperties properties;
+
+    private final Map<String, CompiledPayloadValidator> validators = new HashMap<>();
+
+    @PostConstruct
+    void compileProfiles() {
+        for (PayloadValidationProperties.Profile profile : properties.getProfiles()) {
+            String key = key(orAny(profile.getBewNr()), orAny(profile.getVslNummer()));
+            if (validators.put(key, CompiledPayloadValidator.compile(profile.getRules())) != null) {
+                throw new IllegalStateException("duplicate validation profile " + key);
+            }
+        }
+    }
+
+    /**
+     * Prüft die Payloads eines Batches.
+     *
+     * @param session Session, deren bewNr/vslNummer den Regelsatz bestimmt
+     * @param batch   Items des Batches
+     * @return Fehler je Batch-Position, null-Einträge für gültige Items; null wenn kein Regelsatz greift
+     */
+    public UploadError[] validate(UploadSession session, List<ItemUploadRequest> batch) {
+        CompiledPayloadValidator validator = validatorFor(session);
+        if (validator.isEmpty()) {
+            return null;
+        }
+
+        UploadError[] errors = new UploadError[batch.size()];
+        IntStream positions = IntStream.range(0, batch.size());
+        if (batch.size() >= properties.getParallelThreshold()) {
+            positions = positions.parallel();
+        }
+        positions.forEach(i -> {
+            ItemUploadRequest item = batch.get(i);
+            PayloadViolation violation = validator.validate(item.getPayload());
+            if (violation != null) {
+                errors[i] = UploadErrorFactory.invalidPayload(item.getSeqNo(), violation.field(), violation.reason());
+            }
+        });
+        return errors;
+    }
+
+    CompiledPayloadValidator validatorFor(UploadSession session) {
+        String bewNr = session.getBewNr();
+        String vslNummer = session.getVslNummer();
+
+        CompiledPayloadValidator validator = validators.get(key(bewNr, vslNummer));
+        if (validator == null) validator = validators.get(key(bewNr, ANY));
+        if (validator == null) validator = validators.get(key(ANY, vslNummer));
+        if (validator == null) validator = validators.get(key(ANY, ANY));
+        return validator != null ? validator : CompiledPayloadValidator.ACCEPT_ALL;
+    }
+
+    private static String orAny(String value) {
+        return value == null || value.isBlank() ? ANY : value;
+    }
+
+    private static String key(String bewNr, String vslNummer) {
+        return bewNr + "|" + vslNummer;
+    }
+}
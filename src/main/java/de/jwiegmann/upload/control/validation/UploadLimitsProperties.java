@@ -0,0 +1,27 @@
+package de.jwiegmann.upload.control.validation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Byte- und Tiefenlimits für Batch-Uploads.
+ * <pre>
+ * upload.limits:
+ *   max-item-bytes: 1MB        # ein Item im Request-Body, größere werden INVALID ohne eingelesen zu werden
+ *   max-batch-bytes: 32MB      # gesamter Request-Body, darüber 413
+ *   max-session-bytes: 1GB     # Summe der angenommenen Payloads einer Session
+ *   max-depth: 32              # Verschachtelungstiefe eines Payloads
+ * </pre>
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "upload.limits")
+public class UploadLimitsProperties {
+
+    private DataSize maxItemBytes = DataSize.ofMegabytes(1);
+    private DataSize maxBatchBytes = DataSize.ofMegabytes(32);
+    private DataSize maxSessionBytes = DataSize.ofGigabytes(1);
+    private int maxDepth = 32;
+}
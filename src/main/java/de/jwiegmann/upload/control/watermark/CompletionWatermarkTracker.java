@@ -0,0 +1,110 @@
+package de.jwiegmann.upload.control.watermark;
+
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.UploadSessionEndListener;
+import de.jwiegmann.upload.control.dto.InboxItemMetadata;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Führt je Session zwei Low-Watermarks: die höchste seqNo N, bis zu der alle Items 1..N angekommen sind,
+ * und die höchste, bis zu der alle Items DONE sind. Beide steigen nur, da Items weder gelöscht werden noch
+ * DONE wieder verlassen. Nachgelagerte Verarbeitung kann damit den fertigen Anfang einer Session lesen,
+ * bevor die Session versiegelt ist. Mit dem Ende der Session werden ihre Watermarks verworfen; danach ergeben
+ * sie sich bei COMPLETED aus expectedCount und bei ABORTED aus einem Durchlauf über die Items.
+ */
+@Component
+@RequiredArgsConstructor
+public class CompletionWatermarkTracker implements UploadSessionEndListener {
+
+    private final InMemoryUploadSessionRepository uploadSessionRepository;
+    private final InMemoryUploadInboxItemRepository inboxItemRepository;
+
+    private final Map<String, Watermarks> sessions = new ConcurrentHashMap<>();
+
+    public void markReceived(String uploadId, int seqNo) {
+        Watermarks watermarks = watermarksOf(uploadId);
+        if (watermarks != null) {
+            watermarks.received.mark(seqNo);
+        }
+    }
+
+    public void markDone(String uploadId, int seqNo) {
+        Watermarks watermarks = watermarksOf(uploadId);
+        if (watermarks != null) {
+            watermarks.done.mark(seqNo);
+        }
+    }
+
+    /**
+     * @return Höchste seqNo N mit allen Items 1..N angekommen, 0 wenn seqNo 1 fehlt oder die Session unbekannt ist
+     */
+    public int receivedWatermark(String uploadId) {
+        Watermarks watermarks = watermarksOf(uploadId);
+        return watermarks != null ? watermarks.received.get() : endedWatermark(uploadId, false);
+    }
+
+    /**
+     * @return Höchste seqNo N mit allen Items 1..N DONE, 0 wenn seqNo 1 nicht DONE oder die Session unbekannt ist
+     */
+    public int doneWatermark(String uploadId) {
+        Watermarks watermarks = watermarksOf(uploadId);
+        return watermarks != null ? watermarks.done.get() : endedWatermark(uploadId, true);
+    }
+
+    @Override
+    public void sessionEnded(String uploadId) {
+        sessions.remove(uploadId);
+    }
+
+    /**
+     * @return die Watermarks einer laufenden Session, null für unbekannte und beendete Sessions
+     */
+    private Watermarks watermarksOf(String uploadId) {
+        Watermarks watermarks = sessions.get(uploadId);
+        if (watermarks != null) {
+            return watermarks;
+        }
+        return uploadSessionRepository.find(uploadId)
+                .filter(session -> !session.getStatus().isEnded()) // verspätete Acks legen keinen Zustand mehr an
+                .map(session -> sessions.computeIfAbsent(uploadId, id -> new Watermarks(session.getExpectedCount())))
+                .orElse(null);
+    }
+
+    private int endedWatermark(String uploadId, boolean done) {
+        UploadSession session = uploadSessionRepository.find(uploadId).orElse(null);
+        if (session == null) {
+            return 0;
+        }
+        if (session.getStatus() == UploadSessionStatus.COMPLETED) {
+            return session.getExpectedCount();
+        }
+        int watermark = 0;
+        try (Stream<InboxItemMetadata> items = inboxItemRepository.streamMetadata(uploadId)) {
+            for (Iterator<InboxItemMetadata> it = items.iterator(); it.hasNext(); ) {
+                InboxItemMetadata item = it.next();
+                if (item.seqNo() != watermark + 1 || (done && item.status() != UploadItemStatus.DONE)) {
+                    break;
+                }
+                watermark++;
+            }
+        }
+        return watermark;
+    }
+
+    private record Watermarks(ContiguousWatermark received, ContiguousWatermark done) {
+
+        Watermarks(int expectedCount) {
+            this(new ContiguousWatermark(expectedCount), new ContiguousWatermark(expectedCount));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.jwiegmann.upload.control.watermark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Höchste seqNo N, bis zu der alle seqNos 1..N markiert sind, bei beliebiger Reihenfolge der Markierungen.
+ * Markierungen landen per CAS in einer Bitmap; wer eine Markierung setzt, schiebt die Marke anschließend selbst
+ * über die zusammenhängend markierten seqNos hinweg (ebenfalls per CAS, ohne Lock). Findet ein Thread die
+ * nächste seqNo noch unmarkiert vor, übernimmt das Weiterschieben der Thread, der sie später markiert.
+ */
+final class ContiguousWatermark {
+
+    private final int capacity;
+    private final AtomicLongArray bits;
+    private final AtomicInteger watermark = new AtomicInteger();
+
+    ContiguousWatermark(int capacity) {
+        this.capacity = capacity;
+        this.bits = new AtomicLongArray((capacity >>> 6) + 1);
+    }
+
+    /**
+     * Markiert eine seqNo (1..capacity); wiederholtes Markieren und seqNos außerhalb werden ignoriert.
+     */
+    void mark(int seqNo) {
+        if (seqNo < 1 || seqNo > capacity) {
+            return;
+        }
+        int word = seqNo >>> 6;
+        long bit = 1L << seqNo; // Shift-Distanz wird modulo 64 genommen
+        long current = bits.get(word);
+        while ((current & bit) == 0) {
+            long witness = bits.compareAndExchange(word, current, current | bit);
+            if (witness == current) {
+                break;
+            }
+            current = witness;
+        }
+        advance();
+    }
+
+    int get() {
+        return watermark.get();
+    }
+
+    private void advance() {
+        int current = watermark.get();
+        while (current < capacity && isMarked(current + 1)) {
+            int end = contiguousEnd(current + 1);
+            current = watermark.compareAndSet(current, end) ? end : watermark.get();
+        }
+    }
+
+    private boolean isMarked(int seqNo) {
+        return (bits.get(seqNo >>> 6) & (1L << seqNo)) != 0;
+    }
+
+    /**
+     * Letzte seqNo des ab {@code from} zusammenhängend markierten Bereichs; {@code from} selbst ist markiert.
+     */
+    private int contiguousEnd(int from) {
+        int word = from >>> 6;
+        long unmarked = ~bits.get(word) & (-1L << from);
+        while (unmarked == 0) {
+            if (++word == bits.length()) {
+                return capacity;
+            }
+            unmarked = ~bits.get(word);
+        }
+        return Math.min((word << 6) + Long.numberOfTrailingZeros(unmarked) - 1, capacity);
+    }
+}
@@ -0,0 +1,394 @@
+package de.jwiegmann.upload.boundary;
+
+import com.jayway.jsonpath.JsonPath;
+import de.jwiegmann.upload.boundary.dto.inbox.ClaimedInboxItem;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.UploadSessionManager;
+import de.jwiegmann.upload.control.feed.InboxChangeEvent;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.watermark.CompletionWatermarkTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Eigener Context: Claims entnehmen Items aller Sessions aus der gemeinsamen Warteschlange
+@SpringBootTest(properties = {
+        "upload.inbox.reap-interval=PT0.05S",
+        "upload.retry.initial-delay=PT0.05S",
+        "upload.retry.max-attempts=2"
+})
+@AutoConfigureMockMvc
+class InboxLeaseIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private InboxLeaseService leaseService;
+
+    @Autowired
+    private InMemoryUploadSessionRepository sessionRepo;
+
+    @Autowired
+    private InMemoryUploadInboxItemRepository inboxRepo;
+
+    @Autowired
+    private InboxChangeFeed changeFeed;
+
+    @Autowired
+    private UploadSessionManager sessionManager;
+
+    @Autowired
+    private CompletionWatermarkTracker watermarks;
+
+    @Test
+    void claim_ack_and_expired_lease_complete_session() throws Exception {
+        String uploadId = initAndUpload(2);
+
+        String claimResp = mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/claim")
+                        .param("max", "1000")
+                        .param("visibilityTimeout", "200ms"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<String> leases = JsonPath.read(claimResp, "$.items[?(@.uploadId=='" + uploadId + "')].leaseId");
+        List<Integer> betraege = JsonPath.read(claimResp, "$.items[?(@.uploadId=='" + uploadId + "')].payload.betrag");
+        assertThat(leases).hasSize(2);
+        assertThat(betraege).containsExactlyInAnyOrder(1, 2);
+        assertThat(inboxRepo.find(uploadId, 1).orElseThrow().getStatus()).isEqualTo(UploadItemStatus.PROCESSING);
+
+        // Lease läuft ab → Item wieder PENDING, verspätetes Ack wird verworfen
+        Thread.sleep(400);
+        assertThat(inboxRepo.find(uploadId, 1).orElseThrow().getStatus()).isEqualTo(UploadItemStatus.PENDING);
+        mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ack(uploadId, 1, leases.get(0), "DONE")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("LEASE_EXPIRED"));
+
+        List<ClaimedInboxItem> reclaimed = leaseService.claim(1000, Duration.ofMinutes(1)).stream()
+                .filter(i -> i.getUploadId().equals(uploadId))
+                .toList();
+        assertThat(reclaimed).hasSize(2);
+
+        String acks = reclaimed.stream()
+                .map(i -> ack(uploadId, i.getSeqNo(), i.getLeaseId(), "DONE").replaceAll("^\\[|]$", ""))
+                .collect(Collectors.joining(",", "[", "]"));
+        mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(acks))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("ACKED"))
+                .andExpect(jsonPath("$.results[1].status").value("ACKED"));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uploadStatus").value(UploadSessionStatus.COMPLETED.name()))
+                .andExpect(jsonPath("$.done").value(2));
+    }
+
+    @Test
+    void concurrent_claimers_never_receive_the_same_item() throws Exception {
+        int expected = 400;
+        String uploadId = initAndUpload(expected);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<List<ClaimedInboxItem>>> claimers = IntStream.range(0, 16)
+                    .<Callable<List<ClaimedInboxItem>>>mapToObj(i -> () -> {
+                        List<ClaimedInboxItem> mine = new ArrayList<>();
+                        List<ClaimedInboxItem> batch;
+                        while (!(batch = leaseService.claim(7, Duration.ofMinutes(5))).isEmpty()) {
+                            mine.addAll(batch);
+                        }
+                        return mine;
+                    })
+                    .toList();
+
+            List<Integer> claimedSeqNos = new ArrayList<>();
+            for (Future<List<ClaimedInboxItem>> f : pool.invokeAll(claimers)) {
+                f.get().stream()
+                        .filter(i -> i.getUploadId().equals(uploadId))
+                        .forEach(i -> claimedSeqNos.add(i.getSeqNo()));
+            }
+
+            assertThat(claimedSeqNos).hasSize(expected).doesNotHaveDuplicates();
+            assertThat(sessionRepo.find(uploadId).orElseThrow().getStatus()).isEqualTo(UploadSessionStatus.SEALED);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void done_watermark_advances_over_contiguous_acked_prefix() throws Exception {
+        String uploadId = initAndUpload(5);
+        Map<Integer, String> leases = leaseService.claim(1000, Duration.ofMinutes(5)).stream()
+                .filter(i -> i.getUploadId().equals(uploadId))
+                .collect(Collectors.toMap(ClaimedInboxItem::getSeqNo, ClaimedInboxItem::getLeaseId));
+        assertThat(leases).hasSize(5);
+
+        for (int seqNo : new int[]{1, 2, 4}) {
+            mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(ack(uploadId, seqNo, leases.get(seqNo), "DONE")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.receivedWatermark").value(5))
+                .andExpect(jsonPath("$.doneWatermark").value(2));
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId).param("ready", "done"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].seqNo").value(contains(1, 2)));
+
+        mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ack(uploadId, 3, leases.get(3), "DONE")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.doneWatermark").value(4));
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .param("ready", "done").param("fromSeq", "3"))
+                .andExpect(jsonPath("$.items[*].seqNo").value(contains(3, 4)));
+    }
+
+    @Test
+    void completed_session_drops_its_watermarks_and_still_reports_them() throws Exception {
+        String uploadId = initAndUpload(3);
+        String acks = leaseService.claim(1000, Duration.ofMinutes(5)).stream()
+                .filter(i -> i.getUploadId().equals(uploadId))
+                .map(i -> ack(uploadId, i.getSeqNo(), i.getLeaseId(), "DONE").replaceAll("^\\[|]$", ""))
+                .collect(Collectors.joining(",", "[", "]"));
+        mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(acks))
+                .andExpect(status().isOk());
+
+        assertThat(sessionRepo.find(uploadId).orElseThrow().getStatus()).isEqualTo(UploadSessionStatus.COMPLETED);
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(watermarks, "sessions")).doesNotContainKey(uploadId);
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.receivedWatermark").value(3))
+                .andExpect(jsonPath("$.doneWatermark").value(3));
+        assertThat((Map<?, ?>) ReflectionTestUtils.getField(watermarks, "sessions")).doesNotContainKey(uploadId);
+    }
+
+    @Test
+    void change_feed_publishes_item_and_session_transitions_in_order() throws Exception {
+        List<InboxChangeEvent> events = new CopyOnWriteArrayList<>();
+        try (InboxChangeFeed.Subscription ignored = changeFeed.subscribe("test", InboxChangeFeed.LATEST, events::addAll)) {
+            String uploadId = initAndUpload(2);
+
+            String acks = leaseService.claim(1000, Duration.ofMinutes(1)).stream()
+                    .filter(i -> i.getUploadId().equals(uploadId))
+                    .map(i -> ack(uploadId, i.getSeqNo(), i.getLeaseId(), "DONE").replaceAll("^\\[|]$", ""))
+                    .collect(Collectors.joining(",", "[", "]"));
+            mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(acks))
+                    .andExpect(status().isOk());
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (events.stream().noneMatch(e -> uploadId.equals(e.getUploadId())
+                    && e.getSessionStatus() == UploadSessionStatus.COMPLETED)) {
+                assertThat(System.nanoTime()).as("COMPLETED im Change-Feed").isLessThan(deadline);
+                Thread.sleep(10);
+            }
+
+            List<String> transitions = events.stream()
+                    .filter(e -> uploadId.equals(e.getUploadId()))
+                    .map(e -> e.getType() + " " + e.getSeqNo() + " "
+                            + (e.getItemStatus() != null ? e.getItemStatus() : e.getSessionStatus()))
+                    .toList();
+            assertThat(transitions).containsExactly(
+                    "SESSION_STATUS_CHANGED 0 ACTIVE",
+                    "ITEM_ACCEPTED 1 PENDING",
+                    "ITEM_ACCEPTED 2 PENDING",
+                    "SESSION_STATUS_CHANGED 0 SEALED",
+                    "ITEM_STATUS_CHANGED 1 PROCESSING",
+                    "ITEM_STATUS_CHANGED 2 PROCESSING",
+                    "ITEM_STATUS_CHANGED 1 DONE",
+                    "ITEM_STATUS_CHANGED 2 DONE",
+                    "SESSION_STATUS_CHANGED 0 COMPLETED");
+        }
+    }
+
+    @Test
+    void error_items_are_retried_from_stored_payload_until_attempts_are_used_up() throws Exception {
+        String uploadId = initAndUpload(2);
+
+        for (int attempt = 0; attempt <= 2; attempt++) {
+            List<ClaimedInboxItem> claimed = leaseService.claim(1000, Duration.ofMinutes(1)).stream()
+                    .filter(i -> i.getUploadId().equals(uploadId))
+                    .toList();
+            // seqNo 2 ist fachlich fehlerhaft: ohne Retry bestätigt, wird es nur im ersten Durchgang verleast
+            assertThat(claimed).extracting(ClaimedInboxItem::getSeqNo).containsExactly(attempt == 0 ? new Integer[]{1, 2} : new Integer[]{1});
+            assertThat(claimed.getFirst().getRetryCount()).isEqualTo(attempt);
+            assertThat(claimed.getFirst().getPayload()).isEqualTo("{\"betrag\":1}");
+
+            if (attempt == 0) {
+                mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[{\"uploadId\":\"" + uploadId + "\",\"seqNo\":2,\"leaseId\":\"" + claimed.get(1).getLeaseId()
+                                        + "\",\"status\":\"ERROR\",\"retryable\":false}]"))
+                        .andExpect(jsonPath("$.results[0].status").value("ACKED"))
+                        .andExpect(jsonPath("$.results[0].retryAt").doesNotExist());
+            }
+
+            mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(ack(uploadId, 1, claimed.getFirst().getLeaseId(), "ERROR")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.results[0].status").value("ACKED"))
+                    .andExpect(attempt < 2
+                            ? jsonPath("$.results[0].retryAt").exists()
+                            : jsonPath("$.results[0].retryAt").doesNotExist());
+
+            if (attempt < 2) {
+                awaitStatus(uploadId, 1, UploadItemStatus.PENDING);
+            }
+        }
+
+        Thread.sleep(300);
+        assertThat(inboxRepo.find(uploadId, 1).orElseThrow().getStatus()).isEqualTo(UploadItemStatus.ERROR);
+        assertThat(inboxRepo.find(uploadId, 1).orElseThrow().getRetryCount()).isEqualTo(2);
+        assertThat(inboxRepo.find(uploadId, 2).orElseThrow().getStatus()).isEqualTo(UploadItemStatus.ERROR);
+
+        // Re-Upload durch den Client setzt die Versuche zurück
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":10}}]"))
+                .andExpect(jsonPath("$.results[0].status").value("REUPLOADED"));
+        assertThat(inboxRepo.find(uploadId, 1).orElseThrow().getRetryCount()).isZero();
+    }
+
+    @Test
+    void item_acked_before_its_batch_seals_the_session_still_completes_it() throws Exception {
+        String uploadId = initAndUpload(1);
+        UploadSession session = sessionRepo.find(uploadId).orElseThrow();
+
+        // Stand innerhalb des Batches: Item schon claimbar, Session aber noch nicht versiegelt
+        synchronized (session) {
+            session.setStatus(UploadSessionStatus.ACTIVE);
+            session.setReceivedCount(0);
+        }
+        ClaimedInboxItem claimed = leaseService.claim(1000, Duration.ofMinutes(1)).stream()
+                .filter(i -> i.getUploadId().equals(uploadId))
+                .findFirst().orElseThrow();
+        mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(ack(uploadId, claimed.getSeqNo(), claimed.getLeaseId(), "DONE")))
+                .andExpect(jsonPath("$.results[0].status").value("ACKED"));
+        assertThat(session.getStatus()).isEqualTo(UploadSessionStatus.ACTIVE);
+
+        // Der Batch schließt ab und versiegelt die Session
+        sessionManager.updateAfterChanges(session, 1, LocalDateTime.now());
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.uploadStatus").value(UploadSessionStatus.COMPLETED.name()))
+                .andExpect(jsonPath("$.done").value(1));
+    }
+
+    @Test
+    void events_stream_sends_progress_and_ends_when_session_completes() throws Exception {
+        String uploadId = initAndUpload(2);
+
+        MvcResult events = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/events", uploadId)
+                        .param("minInterval", "0ms"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        List<ClaimedInboxItem> claimed = leaseService.claim(1000, Duration.ofMinutes(1)).stream()
+                .filter(i -> i.getUploadId().equals(uploadId))
+                .toList();
+        for (ClaimedInboxItem item : claimed) {
+            mockMvc.perform(post("/zahlungsdaten-api/v1/inbox/ack")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(ack(uploadId, item.getSeqNo(), item.getLeaseId(), "DONE")))
+                    .andExpect(status().isOk());
+        }
+
+        events.getAsyncResult(5000); // wirft, wenn der Stream nicht beendet wird
+        String stream = events.getResponse().getContentAsString();
+        assertThat(stream).startsWith("id:").contains("event:progress");
+        assertThat(stream).contains("\"uploadStatus\":\"SEALED\"", "\"received\":2");
+        String lastEvent = stream.substring(stream.trim().lastIndexOf("data:"));
+        assertThat(lastEvent).contains("\"uploadStatus\":\"COMPLETED\"");
+    }
+
+    @Test
+    void events_stream_ends_when_session_is_aborted() throws Exception {
+        String openId = JsonPath.read(mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":2}"))
+                .andReturn().getResponse().getContentAsString(), "$.uploadId");
+        MvcResult events = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/events", openId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        sessionRepo.find(openId).orElseThrow().setExpiresAt(LocalDateTime.now().minusSeconds(1));
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", openId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}}]"));
+
+        events.getAsyncResult(5000);
+        assertThat(events.getResponse().getContentAsString()).contains("\"uploadStatus\":\"ABORTED\"");
+    }
+
+    private void awaitStatus(String uploadId, int seqNo, UploadItemStatus expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (inboxRepo.find(uploadId, seqNo).orElseThrow().getStatus() != expected) {
+            assertThat(System.nanoTime()).as("seqNo %d wird %s", seqNo, expected).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private String initAndUpload(int count) throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":" + count + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        for (int from = 1; from <= count; from += 100) {
+            String batch = IntStream.rangeClosed(from, Math.min(from + 99, count))
+                    .mapToObj(seq -> "{\"seqNo\":" + seq + ",\"payload\":{\"betrag\":" + seq + "}}")
+                    .collect(Collectors.joining(",", "[", "]"));
+            mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(batch))
+                    .andExpect(status().isOk());
+        }
+        return uploadId;
+    }
+
+    private static String ack(String uploadId, int seqNo, String leaseId, String status) {
+        return "[{\"uploadId\":\"" + uploadId + "\",\"seqNo\":" + seqNo + ",\"leaseId\":\"" + leaseId + "\",\"status\":\"" + status + "\"}]";
+    }
+}
@@ -3,7 +3,20 @@ package de.jwiegmann.upload.boundary;
 import com.jayway.jsonpath.JsonPath;
 import de.jwiegmann.upload.boundary.dto.init.UploadSession;
 import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.UploadSessionManager;
+import de.jwiegmann.upload.control.compaction.SealedSessionCompactor;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.export.UploadExportService;
+import de.jwiegmann.upload.control.payload.PayloadSpiller;
+import de.jwiegmann.upload.control.payload.XxHash64;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
 import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import de.jwiegmann.upload.control.telemetry.UploadBatchEvent;
+import de.jwiegmann.upload.control.telemetry.UploadStatusEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -11,11 +24,25 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -29,6 +56,21 @@ class UploadApiIntegrationTest {
     @Autowired
     private InMemoryUploadSessionRepository sessionRepo;
 
+    @Autowired
+    private InMemoryUploadInboxItemRepository inboxRepo;
+
+    @Autowired
+    private PayloadSpiller payloadSpiller;
+
+    @Autowired
+    private UploadExportService exportService;
+
+    @Autowired
+    private SealedSessionCompactor compactor;
+
+    @Autowired
+    private UploadSessionManager sessionManager;
+
     @Test
     void fullFlow_singleAndAllStatus() throws Exception {
 
@@ -302,4 +344,750 @@ class UploadApiIntegrationTest {
                 .andExpect(jsonPath("$.missingSeq", hasItem(4)))
                 .andExpect(jsonPath("$.missingSeq", hasItem(5)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void idempotency_key_replays_init_and_batch_response() throws Exception {
+        String initBody = "{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":2}";
+
+        // Init zweimal mit demselben Key → identische Antwort, keine zweite Session
+        String first = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .header("Idempotency-Key", "init-key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(initBody))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        int sessionsAfterFirst = sessionRepo.findAll().size();
+
+        String second = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .header("Idempotency-Key", "init-key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(initBody))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(sessionRepo.findAll()).hasSize(sessionsAfterFirst);
+
+        // Gleicher Key mit anderem Body → 422
+        mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .header("Idempotency-Key", "init-key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A2\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":2}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        // Wiederholter Batch liefert weiterhin ACCEPTED statt CONFLICT
+        String uploadId = JsonPath.read(first, "$.uploadId");
+        String batch = "[{\"seqNo\":1,\"payload\":{}}]";
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                            .header("Idempotency-Key", "batch-key-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(batch))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"));
+        }
+        assertThat(sessionRepo.find(uploadId).orElseThrow().getReceivedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void upload_status_supports_range_and_bitmap_sequence_format() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":10}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{}},{\"seqNo\":4,\"payload\":{}},{\"seqNo\":5,\"payload\":{}}]"))
+                .andExpect(status().isOk());
+
+        // Fehlend: 2-3 und 6-10
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).param("seqFormat", "ranges"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.missingSeq").doesNotExist())
+                .andExpect(jsonPath("$.missingRanges.length()").value(2))
+                .andExpect(jsonPath("$.missingRanges[0][0]").value(2))
+                .andExpect(jsonPath("$.missingRanges[0][1]").value(3))
+                .andExpect(jsonPath("$.missingRanges[1][0]").value(6))
+                .andExpect(jsonPath("$.missingRanges[1][1]").value(10))
+                .andExpect(jsonPath("$.errorRanges.length()").value(0));
+
+        // Bits (LSB zuerst) für seqNo 2,3,6..10 → 0b11100110, 0b00000011
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).param("seqFormat", "bitmap"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.missingBitmap").value(java.util.Base64.getEncoder()
+                        .encodeToString(new byte[]{(byte) 0b11100110, 0b00000011})));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).param("seqFormat", "unknown"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void upload_status_supports_etag_and_long_poll() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        String etag = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.version").value(0))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Unverändert → 304
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // Long-Poll ohne Änderung läuft in den Timeout und liefert den unveränderten Stand
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId)
+                        .param("waitForChangeSince", "0")
+                        .param("timeout", "50ms"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(0));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{}}]"))
+                .andExpect(status().isOk());
+
+        // Nach Änderung: neues ETag, Long-Poll kehrt sofort zurück
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId)
+                        .param("waitForChangeSince", "0")
+                        .param("timeout", "30s"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(1));
+    }
+
+    @Test
+    void export_streams_done_items_in_seq_order_with_range_support() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":3,\"payload\":{\"betrag\":300}},{\"seqNo\":1,\"payload\":{\"betrag\":100}},{\"seqNo\":2,\"payload\":{\"betrag\":200}}]"))
+                .andExpect(status().isOk());
+
+        // Noch nicht verarbeitet → Export nicht möglich
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/export", uploadId))
+                .andExpect(status().isConflict());
+
+        inboxRepo.findAll(uploadId).forEach(i -> i.setStatus(UploadItemStatus.DONE));
+
+        String expected = "{\"betrag\":100}\n{\"betrag\":200}\n{\"betrag\":300}\n";
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/export", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().string(expected));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/export", uploadId).header("Range", "bytes=15-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 15-44/45"))
+                .andExpect(content().string(expected.substring(15)));
+    }
+
+    @Test
+    void outdated_export_is_deleted_only_after_its_last_reader() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":1}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":100}}]"))
+                .andExpect(status().isOk());
+        inboxRepo.findAll(uploadId).forEach(i -> i.setStatus(UploadItemStatus.DONE));
+
+        try (UploadExportService.ExportFile reading = exportService.export(uploadId)) {
+            Path outdated = reading.file();
+            sessionRepo.find(uploadId).orElseThrow().incrementVersion();
+
+            try (UploadExportService.ExportFile current = exportService.export(uploadId)) {
+                assertThat(current.file()).isNotEqualTo(outdated);
+                assertThat(Files.readString(current.file())).isEqualTo("{\"betrag\":100}\n");
+            }
+            // Die neue Version verdrängt die alte nicht, solange diese noch ausgeliefert wird
+            assertThat(Files.readString(outdated)).isEqualTo("{\"betrag\":100}\n");
+
+            reading.close();
+            assertThat(outdated).doesNotExist();
+        }
+    }
+
+    @Test
+    void item_query_pages_in_seq_order_with_cursor() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":5}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":4,\"payload\":{\"betrag\":4}},{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":2,\"payload\":{\"betrag\":2}}]"))
+                .andExpect(status().isOk());
+
+        var firstPage = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId).param("limit", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(firstPage))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].seqNo").value(1))
+                .andExpect(jsonPath("$.items[0].payload.betrag").value(1))
+                .andExpect(jsonPath("$.items[1].seqNo").value(2))
+                .andExpect(jsonPath("$.nextFromSeq").value(4));
+
+        var secondPage = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .param("fromSeq", "4")
+                        .param("limit", "2")
+                        .param("includePayload", "false"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(secondPage))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].seqNo").value(4))
+                .andExpect(jsonPath("$.items[0].status").value("PENDING"))
+                .andExpect(jsonPath("$.items[0].payload").doesNotExist())
+                .andExpect(jsonPath("$.nextFromSeq").isEmpty());
+    }
+
+    @Test
+    void chunked_item_upload_resumes_from_acknowledged_offset() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":2}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        byte[] payload = "{\"betrag\":4711,\"verwendungszweck\":\"gross\"}".getBytes(StandardCharsets.UTF_8);
+        int total = payload.length;
+        String content = "/zahlungsdaten-api/v1/upload/{uploadId}/items/{seqNo}/content";
+
+        mockMvc.perform(put(content, uploadId, 2)
+                        .header("Content-Range", "bytes 0-9/" + total)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(Arrays.copyOfRange(payload, 0, 10)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Range", "bytes=0-9"))
+                .andExpect(jsonPath("$.receivedBytes").value(10))
+                .andExpect(jsonPath("$.complete").value(false));
+
+        // Lücke → 409, Fortschrittsabfrage liefert den Offset zum Fortsetzen
+        mockMvc.perform(put(content, uploadId, 2)
+                        .header("Content-Range", "bytes 20-" + (total - 1) + "/" + total)
+                        .content(Arrays.copyOfRange(payload, 20, total)))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put(content, uploadId, 2).header("Content-Range", "bytes */" + total))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.receivedBytes").value(10));
+
+        // Offsets jenseits von long sind ein fehlerhafter Header, kein Serverfehler
+        mockMvc.perform(put(content, uploadId, 2).header("Content-Range", "bytes 0-99999999999999999999/" + total))
+                .andExpect(status().isBadRequest());
+
+        // Überlappender Rest-Chunk wird ab Offset 10 übernommen
+        mockMvc.perform(put(content, uploadId, 2)
+                        .header("Content-Range", "bytes 5-" + (total - 1) + "/" + total)
+                        .content(Arrays.copyOfRange(payload, 5, total)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.complete").value(true))
+                .andExpect(jsonPath("$.result.seqNo").value(2))
+                .andExpect(jsonPath("$.result.status").value("ACCEPTED"));
+
+        assertThat(inboxRepo.find(uploadId, 2)).hasValueSatisfying(item -> {
+            assertThat(item.getStatus()).isEqualTo(UploadItemStatus.PENDING);
+            assertThat(item.getPayload()).contains("\"betrag\":4711");
+        });
+    }
+
+    @Test
+    void batch_rejects_payloads_violating_configured_rules() throws Exception {
+        // Regeln für bewNr VALIDATED stehen in src/test/resources/application.yaml
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"VALIDATED\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"seqNo":1,"payload":{"betrag":100,"iban":"DE12345678901234567890"}},
+                                  {"seqNo":2,"payload":{"betrag":-5}},
+                                  {"seqNo":3,"payload":{"betrag":7,"iban":"XX1"}}
+                                ]
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[1].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[1].error.code").value("INVALID_PAYLOAD"))
+                .andExpect(jsonPath("$.results[1].error.details.field").value("/betrag"))
+                .andExpect(jsonPath("$.results[2].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[2].error.details.field").value("/iban"));
+
+        assertThat(inboxRepo.find(uploadId, 2)).isEmpty();
+        assertThat(inboxRepo.find(uploadId, 3)).isEmpty();
+        assertThat(sessionRepo.find(uploadId)).hasValueSatisfying(s -> assertThat(s.getReceivedCount()).isEqualTo(1));
+    }
+
+    @Test
+    void batch_get_returns_statuses_in_request_order_and_reports_unknown_ids() throws Exception {
+        List<String> uploadIds = new ArrayList<>();
+        for (int expected : new int[]{2, 3}) {
+            String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":" + expected + "}"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            uploadIds.add(JsonPath.read(initResp, "$.uploadId"));
+        }
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadIds.get(1))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":2,\"payload\":{\"betrag\":2}}]"))
+                .andExpect(status().isOk());
+
+        String body = "{\"uploadIds\":[\"" + uploadIds.get(1) + "\",\"unknown\",\"" + uploadIds.get(0) + "\"],\"seqFormat\":\"none\"}";
+        mockMvc.perform(post("/zahlungsdaten-api/v1/upload/status:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].uploadId").value(uploadIds.get(1)))
+                .andExpect(jsonPath("$.items[0].received").value(1))
+                .andExpect(jsonPath("$.items[0].missingSeq").doesNotExist())
+                .andExpect(jsonPath("$.items[1].uploadId").value(uploadIds.get(0)))
+                .andExpect(jsonPath("$.notFound[0]").value("unknown"));
+
+        mockMvc.perform(post("/zahlungsdaten-api/v1/upload/status:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"uploadIds\":[\"" + uploadIds.get(1) + "\"],\"seqFormat\":\"ranges\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].missingRanges[0][0]").value(1))
+                .andExpect(jsonPath("$.items[0].missingRanges[1][0]").value(3));
+
+        mockMvc.perform(post("/zahlungsdaten-api/v1/upload/status:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"uploadIds\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void multi_session_upload_isolates_session_failures() throws Exception {
+        List<String> uploadIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":2}"))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            uploadIds.add(JsonPath.read(initResp, "$.uploadId"));
+        }
+        // Zweite Session ist abgelaufen
+        sessionRepo.find(uploadIds.get(1)).orElseThrow().setExpiresAt(LocalDateTime.now().minusMinutes(1));
+
+        String body = """
+                [
+                  {"uploadId":"%s","items":[{"seqNo":1,"payload":{"betrag":1}},{"seqNo":2,"payload":{"betrag":2}}]},
+                  {"uploadId":"unknown","items":[{"seqNo":1,"payload":{"betrag":1}}]},
+                  {"uploadId":"%s","items":[{"seqNo":1,"payload":{"betrag":1}}]}
+                ]
+                """.formatted(uploadIds.get(0), uploadIds.get(1));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/items")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions.length()").value(3))
+                .andExpect(jsonPath("$.sessions[0].uploadId").value(uploadIds.get(0)))
+                .andExpect(jsonPath("$.sessions[0].results[*].status", everyItem(is("ACCEPTED"))))
+                .andExpect(jsonPath("$.sessions[0].error").doesNotExist())
+                .andExpect(jsonPath("$.sessions[1].error.code").value("UPLOAD_NOT_FOUND"))
+                .andExpect(jsonPath("$.sessions[2].results[0].status").value("INVALID"))
+                .andExpect(jsonPath("$.sessions[2].results[0].error.message", containsString("expired")));
+
+        assertThat(sessionRepo.find(uploadIds.get(0)).orElseThrow().getStatus()).isEqualTo(UploadSessionStatus.SEALED);
+    }
+
+    @Test
+    void expiry_does_not_abort_a_completed_session() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":1}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+        UploadSession session = sessionRepo.find(uploadId).orElseThrow();
+        session.setStatus(UploadSessionStatus.COMPLETED);
+        session.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}}]"))
+                .andExpect(jsonPath("$.results[0].status").value("INVALID"));
+
+        assertThat(session.getStatus()).isEqualTo(UploadSessionStatus.COMPLETED);
+    }
+
+    @Test
+    void async_batch_is_accepted_with_receipt_and_processed_in_background() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        // Rahmenfehler werden wie im synchronen Pfad geprüft, aber vor der Quittung abgewiesen
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":1,\"payload\":{\"betrag\":1}}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":4,\"payload\":{\"betrag\":4}}]"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(IntStream.rangeClosed(1, 101)
+                                .mapToObj(seq -> "{\"seqNo\":1,\"payload\":{}}")
+                                .collect(Collectors.joining(",", "[", "]"))))
+                .andExpect(status().isBadRequest());
+
+        String receiptResp = mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":3,\"payload\":{\"betrag\":3}},{\"seqNo\":2,\"payload\":{\"betrag\":2}}]"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", containsString("/upload/" + uploadId + "/batches/")))
+                .andExpect(jsonPath("$.uploadId").value(uploadId))
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andReturn().getResponse().getContentAsString();
+        String receiptId = JsonPath.read(receiptResp, "$.receiptId");
+
+        String receipt = receiptResp;
+        for (int i = 0; i < 100 && "QUEUED".equals(JsonPath.read(receipt, "$.status")); i++) {
+            Thread.sleep(20);
+            receipt = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/batches/{receiptId}", uploadId, receiptId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+        }
+
+        String receiptStatus = JsonPath.read(receipt, "$.status");
+        List<String> itemStatuses = JsonPath.read(receipt, "$.results[*].status");
+        assertThat(receiptStatus).isEqualTo("PROCESSED");
+        assertThat(itemStatuses).containsExactly("ACCEPTED", "ACCEPTED", "ACCEPTED");
+        assertThat(inboxRepo.find(uploadId, 2)).isPresent();
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/batches/{receiptId}", "other", receiptId))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", "unknown")
+                        .header("Prefer", "respond-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{}}]"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void spilled_payloads_are_read_back_transparently() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1,\"text\":\"Größe\"}},{\"seqNo\":2,\"payload\":{\"betrag\":2}}]"))
+                .andExpect(status().isOk());
+
+        assertThat(payloadSpiller.spillSession(uploadId)).isPositive();
+        assertThat(inboxRepo.find(uploadId, 1)).hasValueSatisfying(item -> {
+            assertThat(item.isSpilled()).isTrue();
+            assertThat(item.getResidentPayload()).isNull();
+            assertThat(item.getPayload()).isEqualTo("{\"betrag\":1,\"text\":\"Größe\"}");
+        });
+
+        var page = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(page))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].payload.text").value("Größe"))
+                .andExpect(jsonPath("$.items[1].payload.betrag").value(2));
+
+        // Re-Upload eines ERROR-Items holt den neuen Payload wieder auf den Heap
+        inboxRepo.find(uploadId, 2).orElseThrow().setStatus(UploadItemStatus.ERROR);
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":2,\"payload\":{\"betrag\":22}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("REUPLOADED"));
+        assertThat(inboxRepo.find(uploadId, 2)).hasValueSatisfying(item -> {
+            assertThat(item.isSpilled()).isFalse();
+            assertThat(item.getPayload()).isEqualTo("{\"betrag\":22}");
+        });
+    }
+
+    @Test
+    void compacted_session_serves_reads_and_error_reuploads() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":2,\"payload\":{\"betrag\":2}},{\"seqNo\":3,\"payload\":{\"betrag\":3}}]"))
+                .andExpect(status().isOk());
+        payloadSpiller.spillSession(uploadId);
+        // Statuswechsel wie durch die Worker, damit Zähler und Sequenzmengen der Session sie sehen
+        inboxRepo.findAll(uploadId).forEach(i -> {
+            UploadItemStatus previous = i.getStatus();
+            i.setStatus(i.getSeqNo() == 2 ? UploadItemStatus.ERROR : UploadItemStatus.DONE);
+            sessionManager.itemStatusChanged(i, previous);
+        });
+        sessionManager.updateAfterProcessing(sessionRepo.find(uploadId).orElseThrow(), 2);
+
+        assertThat(compactor.compact(uploadId)).isEqualTo(2);
+        assertThat(inboxRepo.findMutable(uploadId)).extracting(UploadInboxItem::getSeqNo).containsExactly(2);
+        assertThat(inboxRepo.find(uploadId, 3)).hasValueSatisfying(item -> {
+            assertThat(item.getStatus()).isEqualTo(UploadItemStatus.DONE);
+            assertThat(item.getPayload()).isEqualTo("{\"betrag\":3}");
+        });
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId).param("seqFormat", "ranges"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.done").value(2))
+                .andExpect(jsonPath("$.errorRanges[0][0]").value(2));
+
+        // ERROR-Item bleibt veränderlich und kann erneut hochgeladen werden
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":2,\"payload\":{\"betrag\":22}},{\"seqNo\":3,\"payload\":{\"betrag\":3}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("REUPLOADED"))
+                .andExpect(jsonPath("$.results[1].status").value("CONFLICT"));
+
+        inboxRepo.find(uploadId, 2).orElseThrow().setStatus(UploadItemStatus.DONE);
+        assertThat(compactor.compact(uploadId)).isEqualTo(1);
+        assertThat(inboxRepo.findMutable(uploadId)).isEmpty();
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/export", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"betrag\":1}\n{\"betrag\":22}\n{\"betrag\":3}\n"));
+    }
+
+    @Test
+    void batch_and_status_report_server_timing_and_jfr_events() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":3}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        Path dump = Files.createTempFile("upload-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(UploadBatchEvent.class);
+            recording.enable(UploadStatusEvent.class);
+            recording.start();
+
+            mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":2,\"payload\":{\"betrag\":2}}]"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Server-Timing",
+                            matchesPattern("validate;dur=\\d+\\.\\d{3}, process;dur=\\d+\\.\\d{3}, session;dur=\\d+\\.\\d{3}")));
+            mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Server-Timing", matchesPattern("status;dur=\\d+\\.\\d{3}")));
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // Parallel berechnete Status melden ihre Dauer ebenfalls, auch wenn sie im ForkJoin-Pool liefen
+        mockMvc.perform(post("/zahlungsdaten-api/v1/upload/status:batchGet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"uploadIds\":[\"" + uploadId + "\",\"unknown\"],\"seqFormat\":\"none\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", matchesPattern("status;dur=\\d+\\.\\d{3}")));
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> uploadId.equals(e.getString("uploadId")))
+                .toList();
+        Files.deleteIfExists(dump);
+
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("de.jwiegmann.upload.Batch"))
+                .singleElement()
+                .satisfies(e -> {
+                    assertThat(e.getInt("batchSize")).isEqualTo(3);
+                    assertThat(e.getInt("accepted")).isEqualTo(2);
+                    assertThat(e.getInt("invalid")).isEqualTo(1);
+                });
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("de.jwiegmann.upload.Status"))
+                .singleElement()
+                .satisfies(e -> assertThat(e.getInt("itemCount")).isEqualTo(2));
+    }
+
+    @Test
+    void status_reports_payload_aggregates_maintained_on_accept_and_reupload() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":4}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":10}},{\"seqNo\":2,\"payload\":{\"betrag\":20.5}},"
+                                + "{\"seqNo\":3,\"payload\":{\"betrag\":5}},{\"seqNo\":4,\"payload\":{\"text\":\"ohne Betrag\"}}]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.aggregates.betrag.count").value(3))
+                .andExpect(jsonPath("$.aggregates.betrag.sum").value(35.5))
+                .andExpect(jsonPath("$.aggregates.betrag.min").value(5))
+                .andExpect(jsonPath("$.aggregates.betrag.max").value(20.5));
+
+        // Re-Upload ersetzt den Beitrag des bisherigen Payloads, auch wenn dieser das Minimum war
+        inboxRepo.find(uploadId, 3).orElseThrow().setStatus(UploadItemStatus.ERROR);
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":3,\"payload\":{\"betrag\":7}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("REUPLOADED"));
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.aggregates.betrag.count").value(3))
+                .andExpect(jsonPath("$.aggregates.betrag.sum").value(37.5))
+                .andExpect(jsonPath("$.aggregates.betrag.min").value(7))
+                .andExpect(jsonPath("$.aggregates.betrag.max").value(20.5));
+    }
+
+    @Test
+    void received_watermark_tracks_contiguous_prefix_and_limits_ready_read() throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":5}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":4,\"payload\":{\"betrag\":4}},{\"seqNo\":2,\"payload\":{\"betrag\":2}},{\"seqNo\":1,\"payload\":{\"betrag\":1}}]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedWatermark").value(2))
+                .andExpect(jsonPath("$.doneWatermark").value(0));
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId).param("ready", "received"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].seqNo").value(contains(1, 2)));
+
+        // Lücke 3 schließt sich → Watermark springt über die bereits vorhandene 4
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":3,\"payload\":{\"betrag\":3}}]"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.receivedWatermark").value(4));
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .param("ready", "received").param("fromSeq", "3"))
+                .andExpect(jsonPath("$.items[*].seqNo").value(contains(3, 4)));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId).param("ready", "soon"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void manifest_verifies_payload_hashes_and_reports_received_and_verified_bitmaps() throws Exception {
+        long hash1 = XxHash64.hash("{\"betrag\":1}");
+        long hash3 = XxHash64.hash("{\"betrag\":3}");
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":4,"
+                                + "\"payloadHashes\":[\"" + Long.toHexString(hash1) + "\",null,\"" + Long.toHexString(hash3) + "\",\"\"]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String uploadId = JsonPath.read(initResp, "$.uploadId");
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},{\"seqNo\":2,\"payload\":{\"betrag\":2}},"
+                                + "{\"seqNo\":3,\"payload\":{\"betrag\":99}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[1].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[2].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[2].error.code").value("MANIFEST_MISMATCH"))
+                .andExpect(jsonPath("$.results[2].error.details.expectedHash").value(Long.toHexString(hash3)));
+
+        // Empfangen: 1, 2 – verifiziert: nur 1 (2 hat keinen Hash im Manifest)
+        byte[] bitmaps = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/manifest", uploadId))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(bitmaps).containsExactly(0b0011, 0b0001);
+
+        // Manifest später ersetzen: seqNo 2 bekommt einen Hash, seqNo 3 keinen mehr
+        byte[] manifest = ByteBuffer.allocate(4 * Long.BYTES)
+                .putLong(hash1)
+                .putLong(XxHash64.hash("{\"betrag\":2}"))
+                .array();
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/manifest", uploadId)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(manifest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hashes").value(2))
+                .andExpect(jsonPath("$.verified").value(2))
+                .andExpect(jsonPath("$.mismatched").value(0));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":3,\"payload\":{\"betrag\":99}}]"))
+                .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"));
+        bitmaps = mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/manifest", uploadId))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(bitmaps).containsExactly(0b0111, 0b0011);
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/manifest", uploadId)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[3 * Long.BYTES]))
+                .andExpect(status().isBadRequest());
+
+        // Nach dem Ende der Session ist das Manifest verworfen, eine leere Verifikations-Bitmap wäre irreführend
+        sessionRepo.find(uploadId).orElseThrow().setStatus(UploadSessionStatus.COMPLETED);
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}/manifest", uploadId))
+                .andExpect(status().isConflict());
+    }
+}
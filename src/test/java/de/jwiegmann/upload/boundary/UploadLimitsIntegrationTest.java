@@ -0,0 +1,142 @@
+package de.jwiegmann.upload.boundary;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Eigener Context: kleine Limits, damit sie mit handlichen Requests erreicht werden
+@SpringBootTest(properties = {
+        "upload.limits.max-item-bytes=256B",
+        "upload.limits.max-batch-bytes=4KB",
+        "upload.limits.max-session-bytes=1KB",
+        "upload.limits.max-depth=3"
+})
+@AutoConfigureMockMvc
+class UploadLimitsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void oversized_and_too_deep_items_are_invalid_without_failing_the_batch() throws Exception {
+        String uploadId = init(5);
+        String big = "x".repeat(1000);
+
+        // seqNo nach dem Payload: wird beim Überlesen trotzdem erkannt
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}},"
+                                + "{\"payload\":{\"text\":\"" + big + "\"},\"seqNo\":2},"
+                                + "{\"seqNo\":3,\"payload\":{\"a\":{\"b\":{\"c\":{\"d\":1}}}}},"
+                                + "{\"seqNo\":4,\"payload\":{\"a\":{\"b\":{\"c\":\"}}}\"}}}}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[1].seqNo").value(2))
+                .andExpect(jsonPath("$.results[1].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[1].error.code").value("PAYLOAD_TOO_LARGE"))
+                .andExpect(jsonPath("$.results[2].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[2].error.code").value("PAYLOAD_TOO_DEEP"))
+                .andExpect(jsonPath("$.results[3].status").value("ACCEPTED"));
+
+        mockMvc.perform(get("/zahlungsdaten-api/v1/upload/{uploadId}", uploadId))
+                .andExpect(jsonPath("$.received").value(2));
+    }
+
+    @Test
+    void batch_over_byte_limit_is_rejected_while_reading() throws Exception {
+        String uploadId = init(50);
+        String batch = IntStream.rangeClosed(1, 50)
+                .mapToObj(seq -> "{\"seqNo\":" + seq + ",\"payload\":{\"text\":\"" + "y".repeat(100) + "\"}}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isPayloadTooLarge());
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"seqNo\":1,\"payload\":{\"betrag\":1}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void session_byte_budget_rejects_further_items() throws Exception {
+        String uploadId = init(6);
+        String batch = IntStream.rangeClosed(1, 6)
+                .mapToObj(seq -> "{\"seqNo\":" + seq + ",\"payload\":{\"text\":\"" + "z".repeat(180) + "\"}}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[4].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[5].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[5].error.code").value("SESSION_BYTES_EXCEEDED"));
+    }
+
+    @Test
+    void session_byte_budget_counts_utf8_bytes() throws Exception {
+        String uploadId = init(5);
+        // 111 Zeichen, aber 211 UTF-8 Bytes je Payload: das fünfte Item überschreitet 1 KB
+        String batch = IntStream.rangeClosed(1, 5)
+                .mapToObj(seq -> "{\"seqNo\":" + seq + ",\"payload\":{\"text\":\"" + "ä".repeat(100) + "\"}}")
+                .collect(Collectors.joining(",", "[", "]"));
+
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/{uploadId}/items", uploadId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[3].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.results[4].status").value("INVALID"))
+                .andExpect(jsonPath("$.results[4].error.code").value("SESSION_BYTES_EXCEEDED"));
+    }
+
+    @Test
+    void multi_session_batch_is_read_with_the_same_limits() throws Exception {
+        String first = init(2);
+        String second = init(1);
+
+        // Unbekannte Felder werden überlesen, auch mit Klammern in Strings
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/items")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"uploadId\":\"" + first + "\",\"note\":{\"x\":[1,\"]}\"]},\"items\":["
+                                + "{\"seqNo\":1,\"payload\":{\"betrag\":1}},"
+                                + "{\"seqNo\":2,\"payload\":{\"a\":{\"b\":{\"c\":{\"d\":1}}}}}]},"
+                                + "{\"items\":[{\"seqNo\":1,\"payload\":{\"text\":\"" + "x".repeat(1000) + "\"}}],"
+                                + "\"uploadId\":\"" + second + "\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sessions[0].results[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.sessions[0].results[1].error.code").value("PAYLOAD_TOO_DEEP"))
+                .andExpect(jsonPath("$.sessions[1].uploadId").value(second))
+                .andExpect(jsonPath("$.sessions[1].results[0].error.code").value("PAYLOAD_TOO_LARGE"));
+
+        String items = IntStream.rangeClosed(1, 50)
+                .mapToObj(seq -> "{\"seqNo\":" + seq + ",\"payload\":{\"text\":\"" + "y".repeat(100) + "\"}}")
+                .collect(Collectors.joining(",", "[", "]"));
+        mockMvc.perform(put("/zahlungsdaten-api/v1/upload/items")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"uploadId\":\"" + first + "\",\"items\":" + items + "}]"))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    private String init(int count) throws Exception {
+        String initResp = mockMvc.perform(post("/zahlungsdaten-api/v1/upload")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bewNr\":\"A1\",\"vslNummer\":\"VSL-1\",\"anzahlDatensaetzeInsgesamt\":" + count + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(initResp, "$.uploadId");
+    }
+}
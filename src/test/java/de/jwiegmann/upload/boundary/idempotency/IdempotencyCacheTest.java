@@ -0,0 +1,111 @@
+package de.jwiegmann.upload.boundary.idempotency;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void overflow_keeps_in_flight_and_just_inserted_entries() throws Exception {
+        IdempotencyCache cache = cache(1);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<CachedResponse> slow = CompletableFuture.supplyAsync(() -> cache.execute("A", digest("a"), () -> {
+            executions.incrementAndGet();
+            started.countDown();
+            await(release);
+            return response("a");
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Überlauf, während A noch läuft: weder A noch das neue B dürfen verdrängt werden
+        cache.execute("B", digest("b"), () -> response("b"));
+        CompletableFuture<CachedResponse> duplicate = CompletableFuture.supplyAsync(
+                () -> cache.execute("A", digest("a"), () -> {
+                    executions.incrementAndGet();
+                    return response("duplicate");
+                }));
+        assertThat(cache.execute("B", digest("b"), () -> response("again")).getBody())
+                .isEqualTo("b".getBytes(StandardCharsets.UTF_8));
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("a".getBytes(StandardCharsets.UTF_8));
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("a".getBytes(StandardCharsets.UTF_8));
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void reused_key_with_different_digest_is_rejected() {
+        IdempotencyCache cache = cache(10);
+        cache.execute("A", digest("a"), () -> response("a"));
+
+        assertThatThrownBy(() -> cache.execute("A", digest("b"), () -> response("b")))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("422");
+    }
+
+    @Test
+    void error_in_action_releases_the_key_for_waiting_duplicates_and_retries() throws Exception {
+        IdempotencyCache cache = cache(10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<CachedResponse> failing = CompletableFuture.supplyAsync(() -> cache.execute("A", digest("a"), () -> {
+            started.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CachedResponse> duplicate = CompletableFuture.supplyAsync(
+                () -> cache.execute("A", digest("a"), () -> response("duplicate")));
+
+        release.countDown();
+        assertThatThrownBy(() -> failing.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(StackOverflowError.class);
+        // Das Duplikat endet mit dem Error oder, falls es erst danach ankam, mit eigener Ausführung
+        assertThat(duplicate.handle((response, error) -> true).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cache.execute("A", digest("a"), () -> response("retry")).getBody())
+                .isEqualTo("retry".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static IdempotencyCache cache(int maxEntries) {
+        IdempotencyCache cache = new IdempotencyCache();
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        return cache;
+    }
+
+    private static byte[] digest(String body) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CachedResponse response(String body) {
+        return new CachedResponse(200, null, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
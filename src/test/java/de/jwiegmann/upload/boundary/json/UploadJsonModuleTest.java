@@ -0,0 +1,71 @@
+package de.jwiegmann.upload.boundary.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitResponse;
+import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.boundary.dto.status.PayloadAggregate;
+import de.jwiegmann.upload.boundary.dto.status.UploadStatusResponse;
+import de.jwiegmann.upload.control.UploadErrorFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadJsonModuleTest {
+
+    private final ObjectMapper reflective = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper tuned = Jackson2ObjectMapperBuilder.json().modulesToInstall(new UploadJsonModule()).build();
+
+    @Test
+    void batch_and_init_responses_match_default_serialization() throws Exception {
+        BatchUploadResponse batch = BatchUploadResponse.builder()
+                .uploadId("u-1")
+                .results(List.of(
+                        BatchUploadResult.builder().seqNo(1).status(BatchUploadResultStatus.ACCEPTED).build(),
+                        BatchUploadResult.builder().seqNo(2).status(BatchUploadResultStatus.INVALID)
+                                .error(UploadErrorFactory.invalidPayload(2, "/betrag", "required")).build()))
+                .build();
+        assertSameJson(batch);
+        assertSameJson(BatchUploadResponse.builder()
+                .uploadId("u-2")
+                .results(List.of())
+                .error(UploadErrorFactory.uploadNotFound("u-2"))
+                .build());
+
+        assertSameJson(UploadInitResponse.builder()
+                .uploadId("u-1")
+                .status(UploadSessionStatus.ACTIVE)
+                .createdAt(LocalDateTime.of(2025, 9, 10, 14, 30, 45, 123_456_000))
+                .expiresAt(LocalDateTime.of(2025, 9, 10, 16, 30))
+                .vslNummer("vsl00001")
+                .expected(3)
+                .build());
+    }
+
+    @Test
+    void status_response_matches_default_serialization_for_each_sequence_format() throws Exception {
+        UploadStatusResponse.UploadStatusResponseBuilder status = UploadStatusResponse.builder()
+                .uploadId("u-1").uploadStatus("ACTIVE").version(7)
+                .expected(10).received(6).pending(2).processing(1).done(2).error(1);
+
+        assertSameJson(status.missingSequence(List.of(7, 8, 9, 10)).errorSequence(List.of(3)).build());
+        assertSameJson(status.missingSequence(null).errorSequence(null)
+                .missingRanges(List.of(new int[]{7, 10})).errorRanges(List.of(new int[]{3, 3})).build());
+        assertSameJson(status.missingRanges(null).errorRanges(null)
+                .missingBitmap("wAM=").errorBitmap("BA==").build());
+        assertSameJson(status.aggregates(Map.of("betrag", PayloadAggregate.builder()
+                .count(6).sum(new BigDecimal("123.45")).min(BigDecimal.ONE).max(new BigDecimal("99.5")).build())).build());
+    }
+
+    private void assertSameJson(Object value) throws Exception {
+        assertThat(tuned.writeValueAsString(value)).isEqualTo(reflective.writeValueAsString(value));
+    }
+}
@@ -0,0 +1,306 @@
+package de.jwiegmann.upload.control;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResponse;
+import de.jwiegmann.upload.boundary.dto.batch.BatchUploadResult;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadSessionStatus;
+import de.jwiegmann.upload.control.compaction.SealedSessionCompactor;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.payload.PayloadSpiller;
+import de.jwiegmann.upload.control.repository.InMemoryUploadInboxItemRepository;
+import de.jwiegmann.upload.control.repository.InMemoryUploadSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stresstest für parallele Batch-Uploads auf dieselben Sessions mit überlappenden seqNo-Bereichen.
+ * Prüft nach jedem Lauf die Invarianten (genau ein ACCEPTED je seqNo, receivedCount = Anzahl Items,
+ * Versiegeln genau bei expectedCount, genau ein REUPLOADED je ERROR-Item) und gibt den Durchsatz je
+ * Thread-Anzahl im Log aus. Größe per System-Properties, z.B.
+ * {@code mvn test -Dtest=UploadConcurrencyStressTest -Dstress.threads=1,2,4,8,16 -Dstress.items=20000}.
+ */
+// Eigener Context: erhöhtes Batch-Limit, keine Hintergrund-Jobs, die Items zwischendurch verändern
+@SpringBootTest(properties = {
+        "upload.max-items-per-request=1000",
+        "upload.storage.spill-interval=PT1H",
+        "upload.compaction.interval=PT1H"
+})
+class UploadConcurrencyStressTest {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadConcurrencyStressTest.class);
+
+    private static final int[] THREADS = Arrays.stream(System.getProperty("stress.threads", "1,2,4,8").split(","))
+            .mapToInt(t -> Integer.parseInt(t.trim()))
+            .toArray();
+    private static final int SESSIONS = Integer.getInteger("stress.sessions", 2);
+    private static final int ITEMS = Integer.getInteger("stress.items", 2_000);
+    private static final int BATCH_SIZE = Integer.getInteger("stress.batch-size", 50);
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private InMemoryUploadSessionRepository sessionRepo;
+
+    @Autowired
+    private InMemoryUploadInboxItemRepository inboxRepo;
+
+    @Autowired
+    private SealedSessionCompactor compactor;
+
+    @Autowired
+    private PayloadSpiller payloadSpiller;
+
+    @Test
+    void parallel_overlapping_uploads_keep_session_invariants() throws Exception {
+        List<String> curve = new ArrayList<>();
+
+        for (int threads : THREADS) {
+            List<String> uploadIds = IntStream.range(0, SESSIONS).mapToObj(i -> init()).toList();
+            List<AtomicIntegerArray> accepted = uploadIds.stream().map(id -> new AtomicIntegerArray(ITEMS + 1)).toList();
+            ConcurrentLinkedQueue<String> violations = new ConcurrentLinkedQueue<>();
+
+            // Jeder Thread lädt alle seqNos aller Sessions hoch, in eigener Reihenfolge → maximale Überlappung
+            List<Callable<Long>> uploaders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                uploaders.add(() -> {
+                    long calls = 0;
+                    for (List<ItemUploadRequest> batch : shuffledBatches(new Random(seed))) {
+                        for (int s = 0; s < uploadIds.size(); s++) {
+                            BatchUploadResponse response = uploadService.uploadBatch(uploadIds.get(s), batch);
+                            for (BatchUploadResult result : response.getResults()) {
+                                if (result.getStatus() == BatchUploadResultStatus.ACCEPTED) {
+                                    accepted.get(s).incrementAndGet(result.getSeqNo());
+                                } else if (result.getStatus() != BatchUploadResultStatus.CONFLICT) {
+                                    violations.add(uploadIds.get(s) + "/" + result.getSeqNo() + ": " + result.getStatus());
+                                }
+                            }
+                            calls++;
+                        }
+                    }
+                    return calls;
+                });
+            }
+
+            long elapsedNanos = runWithObserver(threads, uploaders, uploadIds, violations);
+
+            assertThat(violations).isEmpty();
+            for (int s = 0; s < uploadIds.size(); s++) {
+                String uploadId = uploadIds.get(s);
+                for (int seqNo = 1; seqNo <= ITEMS; seqNo++) {
+                    assertThat(accepted.get(s).get(seqNo)).as("ACCEPTED für seqNo %d", seqNo).isEqualTo(1);
+                }
+                UploadSession session = sessionRepo.find(uploadId).orElseThrow();
+                assertThat(session.getStatus()).isEqualTo(UploadSessionStatus.SEALED);
+                assertThat(session.getReceivedCount()).isEqualTo(ITEMS);
+                assertThat(inboxRepo.findAll(uploadId)).hasSize(ITEMS);
+            }
+
+            long offered = (long) threads * ITEMS * SESSIONS;
+            curve.add(String.format("threads=%2d items/s=%,12.0f accepted=%d offered=%d",
+                    threads, offered / (elapsedNanos / 1e9), (long) ITEMS * SESSIONS, offered));
+
+            reuploadErrorItemsConcurrently(threads, uploadIds.get(0));
+        }
+
+        log.info("{} Sessions x {} Items, Batch {}:\n  {}", SESSIONS, ITEMS, BATCH_SIZE, String.join("\n  ", curve));
+    }
+
+    /**
+     * Kompaktiert eine Session in mehreren Runden, während parallel ihre Payloads ausgelagert werden:
+     * jedes gepackte Item muss danach seinen Payload behalten, egal ob als Bytes oder als Segment-Referenz.
+     */
+    @Test
+    void compaction_and_spilling_in_parallel_keep_every_payload() throws Exception {
+        String uploadId = init();
+        for (List<ItemUploadRequest> batch : shuffledBatches(new Random(42))) {
+            uploadService.uploadBatch(uploadId, batch);
+        }
+
+        int rounds = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                int remainder = round;
+                inboxRepo.findMutable(uploadId).stream()
+                        .filter(item -> item.getSeqNo() % rounds == remainder)
+                        .forEach(item -> item.setStatus(UploadItemStatus.DONE));
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Integer> compaction = pool.submit(() -> {
+                    start.await();
+                    return compactor.compact(uploadId);
+                });
+                Future<Long> spilling = pool.submit(() -> {
+                    start.await();
+                    return payloadSpiller.spillSession(uploadId);
+                });
+                start.countDown();
+                compaction.get();
+                spilling.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(inboxRepo.findMutable(uploadId)).isEmpty();
+        for (UploadInboxItem item : inboxRepo.findAll(uploadId)) {
+            assertThat(item.getPayload()).as("Payload für seqNo %d", item.getSeqNo())
+                    .isEqualTo("{\"betrag\":" + item.getSeqNo() + "}");
+        }
+    }
+
+    /**
+     * Startet die Uploader gleichzeitig und beobachtet parallel den Session-Zustand: receivedCount darf nie
+     * kleiner werden, nie über expectedCount steigen, und SEALED erst bei vollständigem receivedCount gelten.
+     */
+    private long runWithObserver(int threads, List<Callable<Long>> uploaders, List<String> uploadIds,
+                                 ConcurrentLinkedQueue<String> violations) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?> observer = pool.submit(() -> {
+                int[] lastSeen = new int[uploadIds.size()];
+                while (running.get()) {
+                    for (int s = 0; s < uploadIds.size(); s++) {
+                        UploadSession session = sessionRepo.find(uploadIds.get(s)).orElseThrow();
+                        int received;
+                        UploadSessionStatus status;
+                        synchronized (session) {
+                            received = session.getReceivedCount();
+                            status = session.getStatus();
+                        }
+                        if (received < lastSeen[s] || received > ITEMS
+                                || (status == UploadSessionStatus.SEALED && received != ITEMS)) {
+                            violations.add(uploadIds.get(s) + ": received=" + received + " status=" + status);
+                        }
+                        lastSeen[s] = received;
+                    }
+                    Thread.onSpinWait();
+                }
+            });
+
+            List<Callable<Long>> gated = uploaders.stream().<Callable<Long>>map(u -> () -> {
+                start.await();
+                return u.call();
+            }).toList();
+            List<Future<Long>> futures = gated.stream().map(pool::submit).toList();
+
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<Long> f : futures) {
+                f.get();
+            }
+            long elapsed = System.nanoTime() - begin;
+
+            running.set(false);
+            observer.get();
+            return elapsed;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Setzt jedes zehnte Item auf ERROR und lädt alle Items aus mehreren Threads gleichzeitig erneut hoch:
+     * Pro ERROR-Item darf genau ein Re-Upload gewinnen, alle übrigen Items bleiben CONFLICT.
+     */
+    private void reuploadErrorItemsConcurrently(int threads, String uploadId) throws Exception {
+        List<Integer> errorSeqNos = new ArrayList<>();
+        for (UploadInboxItem item : inboxRepo.findAll(uploadId)) {
+            if (item.getSeqNo() % 10 == 0) {
+                item.setStatus(UploadItemStatus.ERROR);
+                errorSeqNos.add(item.getSeqNo());
+            }
+        }
+
+        AtomicIntegerArray reuploaded = new AtomicIntegerArray(ITEMS + 1);
+        AtomicLong unexpected = new AtomicLong();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < Math.max(2, threads); t++) {
+            long seed = 1000L + t;
+            tasks.add(() -> {
+                for (List<ItemUploadRequest> batch : shuffledBatches(new Random(seed))) {
+                    for (BatchUploadResult result : uploadService.uploadBatch(uploadId, batch).getResults()) {
+                        if (result.getStatus() == BatchUploadResultStatus.REUPLOADED) {
+                            reuploaded.incrementAndGet(result.getSeqNo());
+                        } else if (result.getStatus() != BatchUploadResultStatus.CONFLICT) {
+                            unexpected.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(unexpected.get()).isZero();
+        for (int seqNo = 1; seqNo <= ITEMS; seqNo++) {
+            assertThat(reuploaded.get(seqNo)).as("REUPLOADED für seqNo %d", seqNo)
+                    .isEqualTo(errorSeqNos.contains(seqNo) ? 1 : 0);
+        }
+        assertThat(inboxRepo.findByStatus(uploadId, UploadItemStatus.PENDING)).hasSize(errorSeqNos.size());
+        assertThat(sessionRepo.find(uploadId).orElseThrow().getReceivedCount()).isEqualTo(ITEMS);
+    }
+
+    private String init() {
+        return uploadService.initUpload(UploadInitRequest.builder()
+                .bewNr("BEW-STRESS")
+                .vslNummer("VSL-STRESS")
+                .anzahlDatensaetzeInsgesamt(ITEMS)
+                .erstellungsdatum(LocalDateTime.now())
+                .build()).getUploadId();
+    }
+
+    private static List<List<ItemUploadRequest>> shuffledBatches(Random random) {
+        List<Integer> seqNos = new ArrayList<>(IntStream.rangeClosed(1, ITEMS).boxed().toList());
+        Collections.shuffle(seqNos, random);
+
+        List<List<ItemUploadRequest>> batches = new ArrayList<>();
+        for (int from = 0; from < seqNos.size(); from += BATCH_SIZE) {
+            batches.add(seqNos.subList(from, Math.min(from + BATCH_SIZE, seqNos.size())).stream()
+                    .map(seqNo -> ItemUploadRequest.builder()
+                            .seqNo(seqNo)
+                            .payload(JsonNodeFactory.instance.objectNode().put("betrag", seqNo))
+                            .build())
+                    .toList());
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,173 @@
+package de.jwiegmann.upload.control;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.events.UploadProgressEvent;
+import de.jwiegmann.upload.boundary.dto.inbox.ClaimedInboxItem;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAck;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Eigener Context: Claims entnehmen Items aller Sessions aus der gemeinsamen Warteschlange
+@SpringBootTest(properties = "upload.events.tick=PT0.01S")
+class UploadProgressBroadcasterTest {
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private InboxLeaseService leaseService;
+
+    @Autowired
+    private UploadProgressBroadcaster broadcaster;
+
+    @Test
+    void first_event_is_complete_and_changes_within_min_interval_are_coalesced() throws Exception {
+        String uploadId = init(5);
+        BlockingQueue<UploadProgressEvent> events = new LinkedBlockingQueue<>();
+        Runnable unsubscribe = broadcaster.subscribe(uploadId, Duration.ofMillis(500), events::add);
+        try {
+            UploadProgressEvent initial = events.poll(5, TimeUnit.SECONDS);
+            assertThat(initial).isNotNull();
+            assertThat(initial.getUploadStatus()).isEqualTo("ACTIVE");
+            assertThat(initial.getReceived()).isZero();
+            assertThat(initial.getPending()).isZero();
+            assertThat(initial.getDone()).isZero();
+            assertThat(initial.getError()).isZero();
+
+            for (int seqNo = 1; seqNo <= 3; seqNo++) {
+                upload(uploadId, seqNo);
+            }
+
+            // Drei Batches innerhalb des Mindestintervalls ergeben ein einziges Delta
+            UploadProgressEvent delta = events.poll(5, TimeUnit.SECONDS);
+            assertThat(delta).isNotNull();
+            assertThat(delta.getReceived()).isEqualTo(3);
+            assertThat(delta.getPending()).isEqualTo(3);
+            assertThat(delta.getUploadStatus()).isNull();
+            assertThat(delta.getDone()).isNull();
+            assertThat(delta.getVersion()).isEqualTo(uploadService.getVersion(uploadId));
+            assertThat(events.poll(700, TimeUnit.MILLISECONDS)).isNull();
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    @Test
+    void failed_items_are_reported_once_and_in_the_first_event_of_late_subscribers() throws Exception {
+        String uploadId = init(2);
+        upload(uploadId, 1);
+        upload(uploadId, 2);
+        BlockingQueue<UploadProgressEvent> events = new LinkedBlockingQueue<>();
+        Runnable unsubscribe = broadcaster.subscribe(uploadId, Duration.ZERO, events::add);
+        try {
+            assertThat(events.poll(5, TimeUnit.SECONDS).getPending()).isEqualTo(2);
+
+            List<ClaimedInboxItem> claimed = leaseService.claim(100, Duration.ofMinutes(5)).stream()
+                    .filter(i -> i.getUploadId().equals(uploadId))
+                    .toList();
+            assertThat(claimed).hasSize(2);
+            leaseService.ack(claimed.stream()
+                    .map(i -> InboxAck.builder()
+                            .uploadId(uploadId)
+                            .seqNo(i.getSeqNo())
+                            .leaseId(i.getLeaseId())
+                            .status(i.getSeqNo() == 1 ? UploadItemStatus.ERROR : UploadItemStatus.DONE)
+                            .retryable(false)
+                            .build())
+                    .toList());
+
+            // Zähler und neue Fehler können auf zwei Events verteilt sein, jeder Fehler kommt genau einmal
+            List<Integer> newErrors = new ArrayList<>();
+            UploadProgressEvent event;
+            do {
+                event = awaitEvent(events, e -> true);
+                if (event.getNewErrorSeq() != null) {
+                    newErrors.addAll(event.getNewErrorSeq());
+                }
+            } while (!Integer.valueOf(1).equals(event.getDone()));
+            while ((event = events.poll(200, TimeUnit.MILLISECONDS)) != null) {
+                if (event.getNewErrorSeq() != null) {
+                    newErrors.addAll(event.getNewErrorSeq());
+                }
+            }
+            assertThat(newErrors).containsExactly(1);
+
+            BlockingQueue<UploadProgressEvent> late = new LinkedBlockingQueue<>();
+            Runnable unsubscribeLate = broadcaster.subscribe(uploadId, Duration.ZERO, late::add);
+            try {
+                UploadProgressEvent first = late.poll(5, TimeUnit.SECONDS);
+                assertThat(first.getNewErrorSeq()).containsExactly(1);
+                assertThat(first.getDone()).isEqualTo(1);
+                assertThat(first.getPending()).isZero();
+            } finally {
+                unsubscribeLate.run();
+            }
+        } finally {
+            unsubscribe.run();
+        }
+    }
+
+    @Test
+    void slow_subscriber_does_not_delay_others() throws Exception {
+        String uploadId = init(3);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable unsubscribeSlow = broadcaster.subscribe(uploadId, Duration.ZERO, event -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        BlockingQueue<UploadProgressEvent> events = new LinkedBlockingQueue<>();
+        Runnable unsubscribe = broadcaster.subscribe(uploadId, Duration.ZERO, events::add);
+        try {
+            assertThat(events.poll(5, TimeUnit.SECONDS)).isNotNull();
+            upload(uploadId, 1);
+            assertThat(awaitEvent(events, e -> e.getReceived() != null).getReceived()).isEqualTo(1);
+            upload(uploadId, 2);
+            assertThat(awaitEvent(events, e -> e.getReceived() != null).getReceived()).isEqualTo(2);
+        } finally {
+            release.countDown();
+            unsubscribe.run();
+            unsubscribeSlow.run();
+        }
+    }
+
+    private String init(int expected) {
+        return uploadService.initUpload(UploadInitRequest.builder()
+                .bewNr("A1").vslNummer("VSL-1").anzahlDatensaetzeInsgesamt(expected).build()).getUploadId();
+    }
+
+    private void upload(String uploadId, int seqNo) {
+        uploadService.uploadBatch(uploadId, List.of(ItemUploadRequest.builder()
+                .seqNo(seqNo).payload(JsonNodeFactory.instance.objectNode().put("betrag", seqNo)).build()));
+    }
+
+    private static UploadProgressEvent awaitEvent(BlockingQueue<UploadProgressEvent> events,
+                                                  Predicate<UploadProgressEvent> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        UploadProgressEvent event;
+        while ((event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+            if (condition.test(event)) {
+                return event;
+            }
+        }
+        throw new AssertionError("no matching progress event within 5s");
+    }
+}
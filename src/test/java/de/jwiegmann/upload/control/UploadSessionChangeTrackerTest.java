@@ -0,0 +1,50 @@
+package de.jwiegmann.upload.control;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class UploadSessionChangeTrackerTest {
+
+    @Autowired
+    private UploadService uploadService;
+
+    @Autowired
+    private UploadSessionChangeTracker changeTracker;
+
+    @Test
+    void long_poll_is_woken_by_concurrent_change_and_leaves_no_signal_behind() throws Exception {
+        UploadSession session = uploadService.initUpload(UploadInitRequest.builder()
+                .bewNr("A1").vslNummer("VSL-1").anzahlDatensaetzeInsgesamt(2).build());
+
+        long started = System.nanoTime();
+        CompletableFuture<Long> poll = CompletableFuture.supplyAsync(
+                () -> changeTracker.awaitChange(session, 0, Duration.ofSeconds(30)));
+        while (changeTracker.waitingSessions() == 0 && !poll.isDone()) {
+            Thread.onSpinWait();
+        }
+
+        uploadService.uploadBatch(session.getUploadId(), List.of(ItemUploadRequest.builder()
+                .seqNo(1).payload(JsonNodeFactory.instance.objectNode()).build()));
+
+        assertThat(poll.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(30));
+        assertThat(changeTracker.waitingSessions()).isZero();
+
+        // Auch ein Long-Poll, der ohne Änderung in den Timeout läuft, räumt sein Signal weg
+        assertThat(changeTracker.awaitChange(session, 1, Duration.ofMillis(50))).isEqualTo(1);
+        assertThat(changeTracker.waitingSessions()).isZero();
+    }
+}
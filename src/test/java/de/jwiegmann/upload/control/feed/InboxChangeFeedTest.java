@@ -0,0 +1,175 @@
+package de.jwiegmann.upload.control.feed;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InboxChangeFeedTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @EnumSource(FeedWaitStrategy.class)
+    void every_subscriber_receives_all_events_in_sequence_order(FeedWaitStrategy waitStrategy) throws Exception {
+        InboxChangeFeedProperties properties = new InboxChangeFeedProperties();
+        properties.setWaitStrategy(waitStrategy);
+        properties.setMaxBatchSize(16);
+        InboxChangeFeed feed = start(properties);
+
+        List<InboxChangeEvent> first = new CopyOnWriteArrayList<>();
+        List<InboxChangeEvent> second = new CopyOnWriteArrayList<>();
+        AtomicLong largestBatch = new AtomicLong();
+        feed.subscribe("first", InboxChangeFeed.LATEST, events -> {
+            largestBatch.accumulateAndGet(events.size(), Math::max);
+            first.addAll(events);
+        });
+        feed.subscribe("second", InboxChangeFeed.LATEST, second::addAll);
+
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            producers.submit(() -> {
+                for (int seqNo = 1; seqNo <= 250; seqNo++) {
+                    feed.itemChanged(InboxChangeType.ITEM_ACCEPTED, item("U" + thread, seqNo));
+                }
+            });
+        }
+        producers.shutdown();
+        assertThat(producers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        awaitTrue(() -> first.size() == 1000 && second.size() == 1000);
+        assertThat(first).extracting(InboxChangeEvent::getSequence).containsExactlyElementsOf(LongStream.range(0, 1000).boxed().toList());
+        assertThat(second).extracting(InboxChangeEvent::getSequence).containsExactlyElementsOf(LongStream.range(0, 1000).boxed().toList());
+        assertThat(largestBatch.get()).isLessThanOrEqualTo(16);
+        feed.stop();
+    }
+
+    @Test
+    void overrun_subscriber_is_told_about_the_gap() throws Exception {
+        InboxChangeFeedProperties properties = new InboxChangeFeedProperties();
+        properties.setCapacity(8);
+        InboxChangeFeed feed = start(properties);
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        List<long[]> gaps = new CopyOnWriteArrayList<>();
+        feed.subscribe("slow", 0, slowListener(release, received, gaps));
+
+        publish(feed, 100);
+        release.countDown();
+
+        awaitTrue(() -> received.contains(99L));
+        assertThat(gaps).isNotEmpty();
+        long delivered = received.size() + gaps.stream().mapToLong(g -> g[1] - g[0]).sum();
+        assertThat(delivered).isEqualTo(100);
+        feed.stop();
+    }
+
+    @Test
+    void overrun_subscriber_catches_up_from_durable_tail() throws Exception {
+        InboxChangeFeedProperties properties = new InboxChangeFeedProperties();
+        properties.setCapacity(8);
+        properties.getDurableTail().setDir(dir);
+        InboxChangeFeed feed = start(properties);
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> received = new CopyOnWriteArrayList<>();
+        List<long[]> gaps = new CopyOnWriteArrayList<>();
+        feed.subscribe("slow", 0, slowListener(release, received, gaps));
+
+        // Langsam genug veröffentlichen, dass das Journal selbst nicht überholt wird
+        for (int i = 0; i < 100; i++) {
+            publish(feed, 1);
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        awaitTrue(() -> received.contains(99L));
+        assertThat(gaps).isEmpty();
+        assertThat(received).containsExactlyElementsOf(LongStream.range(0, 100).boxed().toList());
+        feed.stop();
+    }
+
+    @Test
+    void durable_tail_continues_sequences_and_replays_after_restart() throws Exception {
+        InboxChangeFeedProperties properties = new InboxChangeFeedProperties();
+        properties.getDurableTail().setDir(dir);
+
+        InboxChangeFeed before = start(properties);
+        publish(before, 10);
+        before.stop();
+
+        InboxChangeFeed after = start(properties);
+        assertThat(after.headSequence()).isEqualTo(10);
+
+        List<InboxChangeEvent> received = new CopyOnWriteArrayList<>();
+        after.subscribe("resumed", 3, received::addAll);
+        publish(after, 1);
+
+        awaitTrue(() -> received.size() == 8);
+        assertThat(received).extracting(InboxChangeEvent::getSequence).containsExactly(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(received.getFirst().getUploadId()).isEqualTo("U");
+        assertThat(received.getFirst().getItemStatus()).isEqualTo(UploadItemStatus.PENDING);
+        after.stop();
+    }
+
+    private static InboxChangeListener slowListener(CountDownLatch release, List<Long> received, List<long[]> gaps) {
+        return new InboxChangeListener() {
+            @Override
+            public void onEvents(List<InboxChangeEvent> events) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                events.forEach(e -> received.add(e.getSequence()));
+            }
+
+            @Override
+            public void onGap(long fromSequence, long toSequence) {
+                gaps.add(new long[]{fromSequence, toSequence});
+            }
+        };
+    }
+
+    private static InboxChangeFeed start(InboxChangeFeedProperties properties) throws Exception {
+        InboxChangeFeed feed = new InboxChangeFeed(properties);
+        feed.start();
+        return feed;
+    }
+
+    private static void publish(InboxChangeFeed feed, int count) {
+        for (int i = 0; i < count; i++) {
+            feed.itemChanged(InboxChangeType.ITEM_ACCEPTED, item("U", i + 1));
+        }
+    }
+
+    private static UploadInboxItem item(String uploadId, int seqNo) {
+        return UploadInboxItem.builder().uploadId(uploadId).seqNo(seqNo).status(UploadItemStatus.PENDING).build();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("Bedingung nicht rechtzeitig erfüllt").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
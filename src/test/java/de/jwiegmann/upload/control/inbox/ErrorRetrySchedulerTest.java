@@ -0,0 +1,84 @@
+package de.jwiegmann.upload.control.inbox;
+
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.control.dto.UploadInboxItem;
+import de.jwiegmann.upload.control.feed.InboxChangeFeed;
+import de.jwiegmann.upload.control.feed.InboxChangeFeedProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorRetrySchedulerTest {
+
+    @Test
+    void backoff_doubles_per_attempt_with_jitter_up_to_max_delay() {
+        ErrorRetryScheduler scheduler = scheduler(Duration.ofMillis(100), Duration.ofSeconds(1), 10, 1000);
+
+        long[] expectedMillis = {100, 200, 400, 800, 1000, 1000};
+        for (int retryCount = 0; retryCount < expectedMillis.length; retryCount++) {
+            UploadInboxItem item = errorItem(retryCount + 1, retryCount);
+            Duration delay = Duration.between(item.getUpdatedAt(), scheduler.schedule(item));
+            assertThat(delay.toMillis()).as("Versuch %d", retryCount)
+                    .isBetween(expectedMillis[retryCount] / 2, expectedMillis[retryCount]);
+        }
+        assertThat(scheduler.scheduledCount()).isEqualTo(expectedMillis.length);
+    }
+
+    @Test
+    void attempts_and_session_budget_limit_retries() {
+        ErrorRetryScheduler scheduler = scheduler(Duration.ofSeconds(10), Duration.ofMinutes(1), 2, 3);
+
+        assertThat(scheduler.schedule(errorItem(1, 2))).isNull(); // max-attempts erreicht
+        assertThat(scheduler.schedule(errorItem(2, 0))).isNotNull();
+        assertThat(scheduler.schedule(errorItem(3, 1))).isNotNull();
+        assertThat(scheduler.schedule(errorItem(4, 0))).isNotNull();
+        assertThat(scheduler.schedule(errorItem(5, 0))).isNull(); // Budget der Session aufgebraucht
+        assertThat(scheduler.usedBudget("U")).isEqualTo(3);
+
+        scheduler.sessionEnded("U");
+        assertThat(scheduler.usedBudget("U")).isZero();
+    }
+
+    @Test
+    void due_retries_requeue_unchanged_error_items_only() throws Exception {
+        ErrorRetryScheduler scheduler = scheduler(Duration.ofMillis(1), Duration.ofMillis(1), 5, 100);
+        UploadInboxItem unchanged = errorItem(1, 0);
+        UploadInboxItem reuploaded = errorItem(2, 0);
+        scheduler.schedule(unchanged);
+        scheduler.schedule(reuploaded);
+        reuploaded.setStatus(UploadItemStatus.PENDING);
+        reuploaded.setUpdatedAt(reuploaded.getUpdatedAt().plusSeconds(1));
+
+        Thread.sleep(20);
+        assertThat(scheduler.requeueDue(LocalDateTime.now())).containsExactly(unchanged);
+        assertThat(unchanged.getStatus()).isEqualTo(UploadItemStatus.PENDING);
+        assertThat(unchanged.getRetryCount()).isEqualTo(1);
+        assertThat(unchanged.getErrorMessage()).isNull();
+        assertThat(scheduler.scheduledCount()).isZero();
+    }
+
+    private static ErrorRetryScheduler scheduler(Duration initialDelay, Duration maxDelay, int maxAttempts, int sessionBudget) {
+        InboxRetryProperties properties = new InboxRetryProperties();
+        properties.setInitialDelay(initialDelay);
+        properties.setMaxDelay(maxDelay);
+        properties.setMaxAttempts(maxAttempts);
+        properties.setSessionBudget(sessionBudget);
+        InboxChangeFeedProperties feedProperties = new InboxChangeFeedProperties();
+        feedProperties.setEnabled(false);
+        return new ErrorRetryScheduler(properties, new InboxChangeFeed(feedProperties));
+    }
+
+    private static UploadInboxItem errorItem(int seqNo, int retryCount) {
+        return UploadInboxItem.builder()
+                .uploadId("U")
+                .seqNo(seqNo)
+                .status(UploadItemStatus.ERROR)
+                .errorMessage("downstream timeout")
+                .retryCount(retryCount)
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,58 @@
+package de.jwiegmann.upload.control.payload;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentAddressedPayloadStoreTest {
+
+    @Test
+    void keeps_identical_payloads_once() {
+        ContentAddressedPayloadStore store = new ContentAddressedPayloadStore();
+        String first = new String("{\"betrag\":100}");
+        String second = new String("{\"betrag\":100}");
+        long hash = XxHash64.hash(first);
+
+        assertThat(store.acquire(hash, first)).isSameAs(first);
+        assertThat(store.acquire(hash, second)).isSameAs(first);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.residentChars()).isEqualTo(first.length());
+
+        store.release(hash, second);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.residentChars()).isEqualTo(first.length());
+        store.release(hash, first);
+        assertThat(store.size()).isZero();
+        assertThat(store.residentChars()).isZero();
+    }
+
+    @Test
+    void release_counts_down_references_and_ignores_uncounted_payloads() {
+        ContentAddressedPayloadStore store = new ContentAddressedPayloadStore();
+        String payload = "{\"betrag\":1}";
+        String collision = "{\"betrag\":2}";
+        long hash = XxHash64.hash(payload);
+
+        for (int i = 0; i < 3; i++) {
+            store.acquire(hash, new String(payload));
+        }
+        // Abweichender Inhalt unter demselben Hash wird nicht dedupliziert und nicht gezählt
+        assertThat(store.acquire(hash, collision)).isSameAs(collision);
+        store.release(hash, collision);
+        store.release(hash + 1, payload); // unbekannter Hash
+        assertThat(store.size()).isEqualTo(1);
+
+        store.release(hash, payload);
+        store.release(hash, payload);
+        assertThat(store.size()).isEqualTo(1);
+        store.release(hash, payload);
+        assertThat(store.size()).isZero();
+        store.release(hash, payload); // überzähliges Release bleibt folgenlos
+        assertThat(store.size()).isZero();
+
+        // Nach dem Entfernen wird der nächste Payload wieder zur kanonischen Instanz
+        String fresh = new String(payload);
+        assertThat(store.acquire(hash, fresh)).isSameAs(fresh);
+        assertThat(store.size()).isEqualTo(1);
+    }
+}
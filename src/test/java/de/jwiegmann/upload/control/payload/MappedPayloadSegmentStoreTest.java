@@ -0,0 +1,61 @@
+package de.jwiegmann.upload.control.payload;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedPayloadSegmentStoreTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void full_segment_is_deleted_once_its_last_payload_is_released() throws Exception {
+        MappedPayloadSegmentStore store = new MappedPayloadSegmentStore();
+        ReflectionTestUtils.setField(store, "spillDir", spillDir);
+        ReflectionTestUtils.setField(store, "segmentSize", DataSize.ofBytes(16));
+        store.init();
+
+        SpilledPayload first = store.append("{\"betrag\":1}");
+        SpilledPayload second = store.append("{\"betrag\":2}"); // passt nicht mehr, neues Segment
+        Path full = first.segment().file();
+        assertThat(store.segmentCount()).isEqualTo(2);
+
+        store.release(first);
+        assertThat(Files.exists(full)).isFalse();
+        assertThat(store.segmentCount()).isEqualTo(1);
+
+        // Das aktuelle Segment bleibt trotz fehlender Referenzen bestehen, bis es voll ist
+        store.release(second);
+        assertThat(Files.exists(second.segment().file())).isTrue();
+        assertThat(store.append("{\"betrag\":3}").load()).isEqualTo("{\"betrag\":3}");
+        assertThat(Files.exists(second.segment().file())).isFalse();
+        assertThat(store.segmentCount()).isEqualTo(1);
+
+        // Ein Leser mit bereits freigegebener Referenz liest weiterhin über das Mapping
+        assertThat(first.load()).isEqualTo("{\"betrag\":1}");
+    }
+
+    @Test
+    void oversized_payload_segment_is_deleted_on_release() throws Exception {
+        MappedPayloadSegmentStore store = new MappedPayloadSegmentStore();
+        ReflectionTestUtils.setField(store, "spillDir", spillDir);
+        ReflectionTestUtils.setField(store, "segmentSize", DataSize.ofBytes(16));
+        store.init();
+
+        SpilledPayload small = store.append("{}");
+        SpilledPayload large = store.append("{\"text\":\"" + "x".repeat(64) + "\"}");
+        assertThat(store.segmentCount()).isEqualTo(2);
+
+        store.release(large);
+        assertThat(Files.exists(large.segment().file())).isFalse();
+        assertThat(small.load()).isEqualTo("{}");
+        assertThat(store.segmentCount()).isEqualTo(1);
+    }
+}
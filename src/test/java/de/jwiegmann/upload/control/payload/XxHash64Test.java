@@ -0,0 +1,25 @@
+package de.jwiegmann.upload.control.payload;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XxHash64Test {
+
+    @Test
+    void matches_reference_values() {
+        // Referenzwerte der xxHash-Implementierung (Seed 0)
+        assertThat(XxHash64.hash(new byte[0])).isEqualTo(0xEF46DB3751D8E999L);
+        assertThat(XxHash64.hash("a")).isEqualTo(0xD24EC4F1A98C6E5BL);
+        assertThat(XxHash64.hash("abc")).isEqualTo(0x44BC2CF5AD770999L);
+        assertThat(XxHash64.hash("Nobody inspects the spammish repetition")).isEqualTo(0xFBCEA83C8A378BF1L);
+    }
+
+    @Test
+    void respects_offset_and_length() {
+        byte[] padded = "xxabcxx".getBytes(StandardCharsets.UTF_8);
+        assertThat(XxHash64.hash(padded, 2, 3)).isEqualTo(XxHash64.hash("abc"));
+    }
+}
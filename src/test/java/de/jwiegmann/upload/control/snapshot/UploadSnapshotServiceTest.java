@@ -0,0 +1,106 @@
+package de.jwiegmann.upload.control.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.RestPhaseBasedUploadPocApplication;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.inbox.ClaimedInboxItem;
+import de.jwiegmann.upload.boundary.dto.inbox.InboxAck;
+import de.jwiegmann.upload.boundary.dto.init.UploadInitRequest;
+import de.jwiegmann.upload.boundary.dto.status.BatchUploadResultStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadItemStatus;
+import de.jwiegmann.upload.boundary.dto.status.UploadStatusResponse;
+import de.jwiegmann.upload.control.UploadService;
+import de.jwiegmann.upload.control.inbox.InboxLeaseService;
+import de.jwiegmann.upload.control.payload.XxHash64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadSnapshotServiceTest {
+
+    @TempDir
+    Path snapshotDir;
+
+    @Test
+    void sessions_items_and_manifest_survive_a_restart() throws Exception {
+        String uploadId;
+        long version;
+        try (ConfigurableApplicationContext context = start()) {
+            UploadService uploadService = context.getBean(UploadService.class);
+            InboxLeaseService leaseService = context.getBean(InboxLeaseService.class);
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+
+            uploadId = uploadService.initUpload(UploadInitRequest.builder()
+                    .bewNr("A1")
+                    .vslNummer("VSL-1")
+                    .anzahlDatensaetzeInsgesamt(4)
+                    .payloadHashes(List.of(Long.toHexString(XxHash64.hash("{\"betrag\":1}")), "", "",
+                            Long.toHexString(XxHash64.hash("{\"betrag\":4}"))))
+                    .build()).getUploadId();
+            uploadService.uploadBatch(uploadId, List.of(
+                    item(objectMapper, 1, "{\"betrag\":1}"),
+                    item(objectMapper, 2, "{\"betrag\":2}"),
+                    item(objectMapper, 3, "{\"betrag\":3}")));
+
+            // seqNo 1 DONE, seqNo 2 verleast (PROCESSING), seqNo 3 PENDING
+            List<ClaimedInboxItem> claimed = leaseService.claim(2, Duration.ofMinutes(5));
+            assertThat(claimed).extracting(ClaimedInboxItem::getSeqNo).containsExactly(1, 2);
+            leaseService.ack(List.of(InboxAck.builder()
+                    .uploadId(uploadId).seqNo(1).leaseId(claimed.get(0).getLeaseId()).status(UploadItemStatus.DONE)
+                    .build()));
+
+            UploadSnapshotService snapshots = context.getBean(UploadSnapshotService.class);
+            assertThat(snapshots.writeSnapshots()).isEqualTo(1);
+            assertThat(snapshots.writeSnapshots()).isZero(); // unverändert seit dem letzten Snapshot
+            version = uploadService.getVersion(uploadId);
+        }
+
+        try (ConfigurableApplicationContext context = start()) {
+            UploadService uploadService = context.getBean(UploadService.class);
+            InboxLeaseService leaseService = context.getBean(InboxLeaseService.class);
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+
+            UploadStatusResponse status = uploadService.getStatus(uploadId);
+            assertThat(status.getVersion()).isEqualTo(version);
+            assertThat(status.getReceived()).isEqualTo(3);
+            assertThat(status.getDone()).isEqualTo(1);
+            assertThat(status.getPending()).isEqualTo(2); // das Lease auf seqNo 2 ging mit dem Neustart verloren
+            assertThat(status.getProcessing()).isZero();
+            assertThat(status.getMissingSequence()).containsExactly(4);
+            assertThat(status.getReceivedWatermark()).isEqualTo(3);
+            assertThat(status.getDoneWatermark()).isEqualTo(1);
+            assertThat(status.getAggregates().get("betrag").getSum()).isEqualByComparingTo(new BigDecimal(6));
+
+            List<ClaimedInboxItem> claimed = leaseService.claim(10, Duration.ofMinutes(5));
+            assertThat(claimed).extracting(ClaimedInboxItem::getSeqNo).containsExactlyInAnyOrder(2, 3);
+            assertThat(claimed).extracting(ClaimedInboxItem::getPayload)
+                    .containsExactlyInAnyOrder("{\"betrag\":2}", "{\"betrag\":3}");
+
+            // Das wiederhergestellte Manifest gilt weiterhin
+            assertThat(uploadService.uploadBatch(uploadId, List.of(item(objectMapper, 4, "{\"betrag\":5}")))
+                    .getResults().get(0).getStatus()).isEqualTo(BatchUploadResultStatus.INVALID);
+            assertThat(uploadService.uploadBatch(uploadId, List.of(item(objectMapper, 4, "{\"betrag\":4}")))
+                    .getResults().get(0).getStatus()).isEqualTo(BatchUploadResultStatus.ACCEPTED);
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(RestPhaseBasedUploadPocApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("upload.snapshot.dir=" + snapshotDir, "upload.snapshot.interval=PT1H")
+                .run();
+    }
+
+    private static ItemUploadRequest item(ObjectMapper objectMapper, int seqNo, String payload) throws Exception {
+        return ItemUploadRequest.builder().seqNo(seqNo).payload(objectMapper.readTree(payload)).build();
+    }
+}
@@ -0,0 +1,53 @@
+package de.jwiegmann.upload.control.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jwiegmann.upload.control.validation.CompiledPayloadValidator.PayloadViolation;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldRule;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledPayloadValidatorTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void reports_first_violated_rule_with_field() throws Exception {
+        CompiledPayloadValidator validator = CompiledPayloadValidator.compile(List.of(
+                rule("/betrag", FieldType.INTEGER, true, null, 0.0),
+                rule("/empfaenger/name", FieldType.STRING, true, "[A-Z].*", null)));
+
+        assertThat(validator.validate(mapper.readTree("{\"betrag\":5,\"empfaenger\":{\"name\":\"Meier\"}}"))).isNull();
+        assertThat(validator.validate(mapper.readTree("{\"betrag\":-1}")))
+                .isEqualTo(new PayloadViolation("/betrag", "must be >= 0.0"));
+        assertThat(validator.validate(mapper.readTree("{\"betrag\":1.5}")))
+                .isEqualTo(new PayloadViolation("/betrag", "expected INTEGER"));
+        assertThat(validator.validate(mapper.readTree("{\"betrag\":1,\"empfaenger\":{\"name\":\"meier\"}}")))
+                .isEqualTo(new PayloadViolation("/empfaenger/name", "does not match [A-Z].*"));
+        assertThat(validator.validate(mapper.readTree("{\"betrag\":1}")))
+                .isEqualTo(new PayloadViolation("/empfaenger/name", "required"));
+        assertThat(validator.validate(null)).isEqualTo(new PayloadViolation("", "payload missing"));
+    }
+
+    @Test
+    void rejects_inconsistent_rules_at_compile_time() {
+        assertThatThrownBy(() -> CompiledPayloadValidator.compile(List.of(rule("/betrag", FieldType.NUMBER, false, "\\d+", null))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompiledPayloadValidator.compile(List.of(rule("betrag", null, false, null, null))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static FieldRule rule(String field, FieldType type, boolean required, String pattern, Double min) {
+        FieldRule rule = new FieldRule();
+        rule.setField(field);
+        rule.setType(type);
+        rule.setRequired(required);
+        rule.setPattern(pattern);
+        rule.setMin(min);
+        return rule;
+    }
+}
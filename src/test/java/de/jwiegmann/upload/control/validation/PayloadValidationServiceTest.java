@@ -0,0 +1,57 @@
+package de.jwiegmann.upload.control.validation;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import de.jwiegmann.upload.boundary.dto.batch.ItemUploadRequest;
+import de.jwiegmann.upload.boundary.dto.error.UploadError;
+import de.jwiegmann.upload.boundary.dto.init.UploadSession;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldRule;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.FieldType;
+import de.jwiegmann.upload.control.validation.PayloadValidationProperties.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadValidationServiceTest {
+
+    private static final int DEFAULT_MAX_ITEMS_PER_REQUEST = 100;
+
+    @Test
+    void full_batch_is_validated_in_parallel_with_errors_at_their_positions() {
+        PayloadValidationProperties properties = new PayloadValidationProperties();
+        assertThat(properties.getParallelThreshold()).isLessThanOrEqualTo(DEFAULT_MAX_ITEMS_PER_REQUEST);
+
+        FieldRule rule = new FieldRule();
+        rule.setField("/betrag");
+        rule.setType(FieldType.INTEGER);
+        rule.setRequired(true);
+        rule.setMin(0.0);
+        Profile profile = new Profile();
+        profile.setRules(List.of(rule));
+        properties.setProfiles(List.of(profile));
+        PayloadValidationService service = new PayloadValidationService(properties);
+        service.compileProfiles();
+
+        // Jedes siebte Item ist negativ
+        List<ItemUploadRequest> batch = IntStream.rangeClosed(1, DEFAULT_MAX_ITEMS_PER_REQUEST)
+                .mapToObj(seqNo -> ItemUploadRequest.builder()
+                        .seqNo(seqNo)
+                        .payload(JsonNodeFactory.instance.objectNode().put("betrag", seqNo % 7 == 0 ? -seqNo : seqNo))
+                        .build())
+                .toList();
+        UploadError[] errors = service.validate(UploadSession.builder().bewNr("A1").vslNummer("VSL-1").build(), batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            int seqNo = batch.get(i).getSeqNo();
+            if (seqNo % 7 == 0) {
+                assertThat(errors[i].getCode()).isEqualTo("INVALID_PAYLOAD");
+                assertThat(errors[i].getDetails()).isEqualTo(Map.of("seqNo", seqNo, "field", "/betrag", "reason", "must be >= 0.0"));
+            } else {
+                assertThat(errors[i]).as("seqNo %d", seqNo).isNull();
+            }
+        }
+    }
+}
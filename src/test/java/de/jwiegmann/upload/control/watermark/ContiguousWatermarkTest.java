@@ -0,0 +1,79 @@
+package de.jwiegmann.upload.control.watermark;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContiguousWatermarkTest {
+
+    @Test
+    void advances_only_over_contiguous_prefix() {
+        ContiguousWatermark watermark = new ContiguousWatermark(200);
+
+        watermark.mark(2);
+        watermark.mark(3);
+        assertThat(watermark.get()).isZero();
+
+        watermark.mark(1);
+        assertThat(watermark.get()).isEqualTo(3);
+
+        // Über Wortgrenzen (64, 128) hinweg
+        IntStream.rangeClosed(5, 150).forEach(watermark::mark);
+        assertThat(watermark.get()).isEqualTo(3);
+        watermark.mark(4);
+        assertThat(watermark.get()).isEqualTo(150);
+
+        watermark.mark(0);
+        watermark.mark(201);
+        watermark.mark(150);
+        IntStream.rangeClosed(151, 200).forEach(watermark::mark);
+        assertThat(watermark.get()).isEqualTo(200);
+    }
+
+    @Test
+    void full_last_word_ends_at_capacity() {
+        ContiguousWatermark watermark = new ContiguousWatermark(63);
+        IntStream.rangeClosed(1, 63).forEach(watermark::mark);
+        assertThat(watermark.get()).isEqualTo(63);
+    }
+
+    @Test
+    void concurrent_out_of_order_marks_reach_capacity() throws Exception {
+        int capacity = 100_000;
+        int threads = 8;
+        ContiguousWatermark watermark = new ContiguousWatermark(capacity);
+
+        List<Integer> seqNos = new ArrayList<>(IntStream.rangeClosed(1, capacity).boxed().toList());
+        Collections.shuffle(seqNos, new Random(42));
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<Integer> slice = seqNos.subList(t * capacity / threads, (t + 1) * capacity / threads);
+            tasks.add(() -> {
+                slice.forEach(watermark::mark);
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(watermark.get()).isEqualTo(capacity);
+    }
+}